@@ -18,6 +18,7 @@ package com.google.cloud.tools.maven;
 
 import com.google.cloud.tools.appengine.api.deploy.DeployConfiguration;
 import com.google.cloud.tools.appengine.api.deploy.DeployProjectConfigurationConfiguration;
+import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
@@ -67,6 +68,19 @@ public abstract class AbstractDeployMojo extends AbstractStageMojo
   @Parameter(alias = "deploy.project", property = "app.deploy.project")
   private String project;
 
+  /**
+   * A directory in which to record the SHA-1 digest of every deployed file, per project and
+   * service. Each deployment logs which files changed since the last successful deployment of the
+   * same service. Set it to an empty value, like {@code -Dapp.deploy.manifestDirectory=}, to not
+   * record or compare deployments.
+   */
+  @Parameter(
+    alias = "deploy.manifestDirectory",
+    property = "app.deploy.manifestDirectory",
+    defaultValue = "${project.build.directory}/appengine-deploy-manifests"
+  )
+  private File manifestDirectory;
+
   @Override
   public List<File> getDeployables() {
     return deployables;
@@ -118,4 +132,16 @@ public abstract class AbstractDeployMojo extends AbstractStageMojo
   public void setDeployables(List<File> deployables) {
     this.deployables = deployables;
   }
+
+  /** Returns the directory of deployment manifests, or null if they are disabled. */
+  public File getManifestDirectory() {
+    return manifestDirectory == null || manifestDirectory.getPath().isEmpty()
+        ? null
+        : manifestDirectory;
+  }
+
+  @VisibleForTesting
+  public void setManifestDirectory(File manifestDirectory) {
+    this.manifestDirectory = manifestDirectory;
+  }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Saves or restores a snapshot of the datastore of a stopped Dev App Server, configured like the
+ * run goal.
+ */
+public abstract class AbstractSnapshotMojo extends CloudSdkMojo {
+
+  /**
+   * Version of the dev app server whose datastore is saved or restored. Supported values are "1"
+   * and "2-alpha". (default: "1")
+   */
+  @Parameter(
+    alias = "devserver.version",
+    property = "app.devserver.version",
+    required = true,
+    defaultValue = "1"
+  )
+  protected String devserverVersion;
+
+  /**
+   * The services of the server. Defaults to <code>${project.build.directory}/${project.build.
+   * finalName}</code>.
+   */
+  @Parameter(alias = "devserver.services", property = "app.devserver.services")
+  protected List<File> services;
+
+  /** Path to the data (datastore, blobstore, etc.) associated with the application. */
+  @Parameter(alias = "devserver.storagePath", property = "app.devserver.storagePath")
+  protected File storagePath;
+
+  /** Path to a file used to store datastore contents. */
+  @Parameter(alias = "devserver.datastorePath", property = "app.devserver.datastorePath")
+  protected File datastorePath;
+
+  /** Name of the snapshot, saved under dev-appserver-out/snapshots. */
+  @Parameter(
+    alias = "devserver.snapshot",
+    property = "app.devserver.snapshot",
+    defaultValue = "default"
+  )
+  protected String snapshot;
+
+  protected DatastoreSnapshot getSnapshot() {
+    return new DatastoreSnapshot(
+        DatastoreSnapshot.getDirectory(
+            Paths.get(getMavenProject().getBuild().getDirectory()), snapshot));
+  }
+
+  /** Returns the paths the server stores its data to, by snapshot entry. */
+  protected Map<String, Path> getDatastorePaths() throws MojoExecutionException {
+    SupportedDevServerVersion version;
+    try {
+      version = SupportedDevServerVersion.parse(devserverVersion);
+    } catch (IllegalArgumentException ex) {
+      throw new MojoExecutionException("Invalid version", ex);
+    }
+    List<File> servicesOrDefault = services;
+    if (servicesOrDefault == null || servicesOrDefault.isEmpty()) {
+      Build build = getMavenProject().getBuild();
+      servicesOrDefault =
+          Collections.singletonList(
+              new File(build.getDirectory()).toPath().resolve(build.getFinalName()).toFile());
+    }
+    Map<String, Path> paths =
+        DatastoreSnapshot.getPaths(version, servicesOrDefault, datastorePath, storagePath);
+    if (paths.isEmpty()) {
+      throw new MojoExecutionException(
+          "Set storagePath or datastorePath to snapshot the datastore of Dev App Server "
+              + devserverVersion);
+    }
+    return paths;
+  }
+}
@@ -21,6 +21,7 @@ import com.google.cloud.tools.appengine.api.deploy.StageStandardConfiguration;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
 import java.nio.file.Files;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
 
 /**
@@ -42,6 +43,27 @@ public abstract class AbstractStageMojo extends CloudSdkMojo
   )
   private File stagingDirectory;
 
+  /**
+   * A directory in which to keep a content-addressed cache of staging output, shared by every
+   * module and build that configures the same directory. When the staging inputs of a module match
+   * a cached entry, the staging directory is populated with hard links to the cached files instead
+   * of being staged again, or with copies of them for incremental staging, which modifies the
+   * staging directory. Caching is disabled when no directory is configured.
+   */
+  @Parameter(alias = "stage.cacheDirectory", property = "app.stage.cacheDirectory")
+  private File cacheDirectory;
+
+  /**
+   * The maximum size of the staging cache, in megabytes. The least recently used files are evicted
+   * once the cache grows larger.
+   */
+  @Parameter(
+    defaultValue = "2048",
+    alias = "stage.cacheMaxSize",
+    property = "app.stage.cacheMaxSize"
+  )
+  private long cacheMaxSize;
+
   ///////////////////////////////////
   // Standard-only params
   ///////////////////////////////////
@@ -78,13 +100,25 @@ public abstract class AbstractStageMojo extends CloudSdkMojo
   private boolean enableQuickstart;
 
   /**
-   * Split large jar files (bigger than 10M) into smaller fragments.
+   * Split large jar files (bigger than {@code jarSplittingThreshold}) into smaller fragments.
    *
    * <p>Applies to App Engine standard environment only.
    */
   @Parameter(alias = "stage.enableJarSplitting", property = "app.stage.enableJarSplitting")
   private boolean enableJarSplitting;
 
+  /**
+   * The size, in megabytes, above which jar files are split when {@code enableJarSplitting} is set.
+   *
+   * <p>Applies to App Engine standard environment only.
+   */
+  @Parameter(
+    defaultValue = "10",
+    alias = "stage.jarSplittingThreshold",
+    property = "app.stage.jarSplittingThreshold"
+  )
+  private long jarSplittingThreshold;
+
   /**
    * Files that match the list of comma separated SUFFIXES will be excluded from all jars.
    *
@@ -125,6 +159,30 @@ public abstract class AbstractStageMojo extends CloudSdkMojo
   @Parameter(alias = "stage.enableJarClasses", property = "app.stage.enableJarClasses")
   private boolean enableJarClasses;
 
+  /**
+   * Reuse the output of the previous staging run and only copy or delete the files of
+   * WEB-INF/classes and WEB-INF/lib that changed since then, and recompile the JSPs affected by
+   * changes to existing pages, fragments and tag files. Any other change triggers a full restage.
+   *
+   * <p>Applies to App Engine standard environment only.
+   */
+  @Parameter(alias = "stage.incremental", property = "app.stage.incremental")
+  private boolean incremental;
+
+  /**
+   * How incremental staging brings changed files to the staging directory: <code>copy</code> copies
+   * them, and <code>link</code> hard-links them to the source files, falling back to a copy when
+   * the source and staging directories are on different file systems.
+   *
+   * <p>Applies to App Engine standard environment only.
+   */
+  @Parameter(
+    defaultValue = "copy",
+    alias = "stage.copyStrategy",
+    property = "app.stage.copyStrategy"
+  )
+  private String copyStrategy;
+
   // always disable update check and do not expose this as a parameter
   private boolean disableUpdateCheck = true;
 
@@ -199,6 +257,16 @@ public abstract class AbstractStageMojo extends CloudSdkMojo
     return enableJarSplitting;
   }
 
+  public long getJarSplittingThreshold() {
+    return jarSplittingThreshold;
+  }
+
+  @VisibleForTesting
+  public void setJarSplitting(boolean enableJarSplitting, long jarSplittingThreshold) {
+    this.enableJarSplitting = enableJarSplitting;
+    this.jarSplittingThreshold = jarSplittingThreshold;
+  }
+
   @Override
   public String getJarSplittingExcludes() {
     return jarSplittingExcludes;
@@ -219,6 +287,11 @@ public abstract class AbstractStageMojo extends CloudSdkMojo
     return enableJarClasses;
   }
 
+  @VisibleForTesting
+  public void setEnableJarClasses(boolean enableJarClasses) {
+    this.enableJarClasses = enableJarClasses;
+  }
+
   /**
    * The directory that contains app.yaml and other supported App Engine configuration files.
    *
@@ -250,6 +323,58 @@ public abstract class AbstractStageMojo extends CloudSdkMojo
     return runtime;
   }
 
+  /** Returns the staging cache, or null if no cache directory is configured. */
+  public StagingCache getStagingCache() {
+    if (cacheDirectory == null) {
+      return null;
+    }
+    // incremental staging modifies the staging directory, which must not share files with the cache
+    return new StagingCache(cacheDirectory.toPath(), cacheMaxSize * 1024 * 1024, !incremental);
+  }
+
+  @VisibleForTesting
+  public void setCacheDirectory(File cacheDirectory, long cacheMaxSize) {
+    this.cacheDirectory = cacheDirectory;
+    this.cacheMaxSize = cacheMaxSize;
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  @VisibleForTesting
+  public void setDisableJarJsps(boolean disableJarJsps) {
+    this.disableJarJsps = disableJarJsps;
+  }
+
+  @VisibleForTesting
+  public void setEnableQuickstart(boolean enableQuickstart) {
+    this.enableQuickstart = enableQuickstart;
+  }
+
+  @VisibleForTesting
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /** Returns the copier for the configured copy strategy. */
+  public StagingCopier getStagingCopier() throws MojoExecutionException {
+    if (copyStrategy == null) {
+      return new StagingCopier(StagingCopier.Strategy.COPY);
+    }
+    try {
+      return StagingCopier.forName(copyStrategy);
+    } catch (IllegalArgumentException ex) {
+      throw new MojoExecutionException(
+          "Unknown copy strategy '" + copyStrategy + "', must be copy or link", ex);
+    }
+  }
+
+  @VisibleForTesting
+  public void setCopyStrategy(String copyStrategy) {
+    this.copyStrategy = copyStrategy;
+  }
+
   @VisibleForTesting
   public void setStagingDirectory(File stagingDirectory) {
     this.stagingDirectory = stagingDirectory;
@@ -36,6 +36,12 @@ public interface AppEngineDeployer {
 
   void deployAll() throws MojoExecutionException;
 
+  /** Stages the application and collects the deployables for {@link #deployAll}. */
+  void prepareDeployAll() throws MojoExecutionException;
+
+  /** Deploys the deployables collected by {@link #prepareDeployAll}. */
+  void deployPrepared() throws MojoExecutionException;
+
   void deployCron() throws MojoExecutionException;
 
   void deployDispatch() throws MojoExecutionException;
@@ -43,18 +43,30 @@ public class AppEngineFlexibleDeployer implements AppEngineDeployer {
 
   @Override
   public void deploy() throws MojoExecutionException {
+    deployMojo.getAppEngineFactory().warmUp();
     stager.stage();
     deployMojo.setDeployables(ImmutableList.of(deployMojo.getStagingDirectory()));
 
-    try {
+    DeploymentManifest manifest = DeploymentManifest.scan(deployMojo);
+    try (TimingReport.Span span = deployMojo.startSpan("upload")) {
       deployMojo.getAppEngineFactory().deployment().deploy(deployMojo);
     } catch (AppEngineException ex) {
       throw new MojoExecutionException("Flexible application deployment failed", ex);
     }
+    if (manifest != null) {
+      manifest.record();
+    }
   }
 
   @Override
   public void deployAll() throws MojoExecutionException {
+    prepareDeployAll();
+    deployPrepared();
+  }
+
+  @Override
+  public void prepareDeployAll() throws MojoExecutionException {
+    deployMojo.getAppEngineFactory().warmUp();
     stager.stage();
     ImmutableList.Builder<File> flexDeployables = ImmutableList.builder();
 
@@ -81,12 +93,19 @@ public class AppEngineFlexibleDeployer implements AppEngineDeployer {
     }
 
     deployMojo.setDeployables(flexDeployables.build());
+  }
 
-    try {
+  @Override
+  public void deployPrepared() throws MojoExecutionException {
+    DeploymentManifest manifest = DeploymentManifest.scan(deployMojo);
+    try (TimingReport.Span span = deployMojo.startSpan("upload")) {
       deployMojo.getAppEngineFactory().deployment().deploy(deployMojo);
     } catch (AppEngineException ex) {
       throw new MojoExecutionException("Failed to deploy", ex);
     }
+    if (manifest != null) {
+      manifest.record();
+    }
   }
 
   @Override
@@ -17,8 +17,15 @@
 package com.google.cloud.tools.maven;
 
 import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 
@@ -44,6 +51,45 @@ public class AppEngineFlexibleStager implements AppEngineStager {
       return;
     }
 
+    try (TimingReport.Span span = stageMojo.startSpan("stage")) {
+      stageArtifact();
+    }
+  }
+
+  private void stageArtifact() throws MojoExecutionException {
+    deleteStagingDirectory();
+
+    StagingCache cache = stageMojo.getStagingCache();
+    String cacheKey = null;
+    if (cache != null && stageMojo.getArtifact().isFile()) {
+      try {
+        cacheKey = getCacheKey();
+        if (cache.restore(cacheKey, stageMojo.getStagingDirectory().toPath())) {
+          stageMojo.getLog().info("Restored the staging directory from the staging cache.");
+          return;
+        }
+      } catch (IOException ex) {
+        stageMojo.getLog().warn("Unable to restore the staging directory from the cache: " + ex);
+        deleteStagingDirectory();
+      }
+    }
+
+    try (TimingReport.Span span = stageMojo.startSpan("appengine-staging")) {
+      stageMojo.getAppEngineFactory().flexibleStaging().stageFlexible(stageMojo);
+    } catch (AppEngineException ex) {
+      throw new RuntimeException(ex);
+    }
+
+    if (cacheKey != null) {
+      try {
+        cache.store(cacheKey, stageMojo.getStagingDirectory().toPath());
+      } catch (IOException ex) {
+        stageMojo.getLog().warn("Unable to add the staging output to the cache: " + ex);
+      }
+    }
+  }
+
+  private void deleteStagingDirectory() throws MojoExecutionException {
     // delete staging directory if it exists
     if (stageMojo.getStagingDirectory().exists()) {
       stageMojo.getLog().info("Deleting the staging directory: " + stageMojo.getStagingDirectory());
@@ -56,12 +102,23 @@ public class AppEngineFlexibleStager implements AppEngineStager {
     if (!stageMojo.getStagingDirectory().mkdir()) {
       throw new MojoExecutionException("Unable to create staging directory");
     }
+  }
 
-    try {
-      stageMojo.getAppEngineFactory().flexibleStaging().stageFlexible(stageMojo);
-    } catch (AppEngineException ex) {
-      throw new RuntimeException(ex);
+  /** Digests everything flexible staging copies into the staging directory. */
+  private String getCacheKey() throws IOException {
+    List<String> inputs = new ArrayList<>();
+    inputs.add(stageMojo.getArtifact().getName());
+    inputs.add(StagingManifest.hash(stageMojo.getArtifact().toPath()));
+    for (File directory :
+        Arrays.asList(stageMojo.getAppEngineDirectory(), stageMojo.getDockerDirectory())) {
+      if (directory != null && directory.isDirectory()) {
+        inputs.add(StagingManifest.scan(directory.toPath(), "", null).getDigest());
+      } else {
+        inputs.add("");
+      }
     }
+    return "flexible-"
+        + Hashing.sha256().hashString(Joiner.on(',').join(inputs), StandardCharsets.UTF_8);
   }
 
   @Override
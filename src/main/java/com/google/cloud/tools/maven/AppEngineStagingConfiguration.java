@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.appengine.api.deploy.StageStandardConfiguration;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+
+/**
+ * Configuration App Engine staging is called with: the options of a stage mojo, without the steps
+ * that the plugin does itself once App Engine staging is done.
+ */
+class AppEngineStagingConfiguration implements StageStandardConfiguration {
+
+  private final AbstractStageMojo stageMojo;
+
+  AppEngineStagingConfiguration(AbstractStageMojo stageMojo) {
+    this.stageMojo = stageMojo;
+  }
+
+  @VisibleForTesting
+  AbstractStageMojo getStageMojo() {
+    return stageMojo;
+  }
+
+  @Override
+  public File getSourceDirectory() {
+    return stageMojo.getSourceDirectory();
+  }
+
+  @Override
+  public File getStagingDirectory() {
+    return stageMojo.getStagingDirectory();
+  }
+
+  @Override
+  public File getDockerfile() {
+    return stageMojo.getDockerfile();
+  }
+
+  @Override
+  public Boolean getEnableQuickstart() {
+    return stageMojo.getEnableQuickstart();
+  }
+
+  @Override
+  public Boolean getDisableUpdateCheck() {
+    return stageMojo.getDisableUpdateCheck();
+  }
+
+  /** Always false, since jars are split by {@link JarSplitter} once staging is done. */
+  @Override
+  public Boolean getEnableJarSplitting() {
+    return false;
+  }
+
+  @Override
+  public String getJarSplittingExcludes() {
+    return stageMojo.getJarSplittingExcludes();
+  }
+
+  @Override
+  public String getCompileEncoding() {
+    return stageMojo.getCompileEncoding();
+  }
+
+  @Override
+  public Boolean getDeleteJsps() {
+    return stageMojo.getDeleteJsps();
+  }
+
+  /** Always false, since WEB-INF/classes is jarred by the plugin once staging is done. */
+  @Override
+  public Boolean getEnableJarClasses() {
+    return false;
+  }
+
+  @Override
+  public Boolean getDisableJarJsps() {
+    return stageMojo.getDisableJarJsps();
+  }
+
+  @Override
+  public String getRuntime() {
+    return stageMojo.getRuntime();
+  }
+}
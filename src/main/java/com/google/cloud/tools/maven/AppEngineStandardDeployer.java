@@ -47,18 +47,30 @@ public class AppEngineStandardDeployer implements AppEngineDeployer {
 
   @Override
   public void deploy() throws MojoExecutionException {
+    deployMojo.getAppEngineFactory().warmUp();
     stager.stage();
     deployMojo.setDeployables(ImmutableList.of(deployMojo.getStagingDirectory()));
 
-    try {
+    DeploymentManifest manifest = DeploymentManifest.scan(deployMojo);
+    try (TimingReport.Span span = deployMojo.startSpan("upload")) {
       deployMojo.getAppEngineFactory().deployment().deploy(deployMojo);
     } catch (AppEngineException ex) {
       throw new MojoExecutionException("Standard application deployment failed", ex);
     }
+    if (manifest != null) {
+      manifest.record();
+    }
   }
 
   @Override
   public void deployAll() throws MojoExecutionException {
+    prepareDeployAll();
+    deployPrepared();
+  }
+
+  @Override
+  public void prepareDeployAll() throws MojoExecutionException {
+    deployMojo.getAppEngineFactory().warmUp();
     stager.stage();
     ImmutableList.Builder<File> standardDeployables = ImmutableList.builder();
 
@@ -83,17 +95,24 @@ public class AppEngineStandardDeployer implements AppEngineDeployer {
     }
 
     deployMojo.setDeployables(standardDeployables.build());
+  }
 
-    try {
+  @Override
+  public void deployPrepared() throws MojoExecutionException {
+    DeploymentManifest manifest = DeploymentManifest.scan(deployMojo);
+    try (TimingReport.Span span = deployMojo.startSpan("upload")) {
       deployMojo.getAppEngineFactory().deployment().deploy(deployMojo);
     } catch (AppEngineException ex) {
       throw new MojoExecutionException("Failed to deploy", ex);
     }
+    if (manifest != null) {
+      manifest.record();
+    }
   }
 
   @Override
   public void deployCron() throws MojoExecutionException {
-    stager.stage();
+    stager.stageConfiguration();
     try {
       deployMojo.getAppEngineFactory().deployment().deployCron(deployMojo);
     } catch (AppEngineException ex) {
@@ -103,7 +122,7 @@ public class AppEngineStandardDeployer implements AppEngineDeployer {
 
   @Override
   public void deployDispatch() throws MojoExecutionException {
-    stager.stage();
+    stager.stageConfiguration();
     try {
       deployMojo.getAppEngineFactory().deployment().deployDispatch(deployMojo);
     } catch (AppEngineException ex) {
@@ -113,7 +132,7 @@ public class AppEngineStandardDeployer implements AppEngineDeployer {
 
   @Override
   public void deployDos() throws MojoExecutionException {
-    stager.stage();
+    stager.stageConfiguration();
     try {
       deployMojo.getAppEngineFactory().deployment().deployDos(deployMojo);
     } catch (AppEngineException ex) {
@@ -123,7 +142,7 @@ public class AppEngineStandardDeployer implements AppEngineDeployer {
 
   @Override
   public void deployIndex() throws MojoExecutionException {
-    stager.stage();
+    stager.stageConfiguration();
     try {
       deployMojo.getAppEngineFactory().deployment().deployIndex(deployMojo);
     } catch (AppEngineException ex) {
@@ -133,7 +152,7 @@ public class AppEngineStandardDeployer implements AppEngineDeployer {
 
   @Override
   public void deployQueue() throws MojoExecutionException {
-    stager.stage();
+    stager.stageConfiguration();
     try {
       deployMojo.getAppEngineFactory().deployment().deployQueue(deployMojo);
     } catch (AppEngineException ex) {
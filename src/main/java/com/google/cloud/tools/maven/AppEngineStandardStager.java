@@ -17,9 +17,31 @@
 package com.google.cloud.tools.maven;
 
 import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
@@ -29,10 +51,19 @@ import javax.xml.xpath.XPathFactory;
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 public class AppEngineStandardStager implements AppEngineStager {
 
+  // the name App Engine staging gives to the jar of WEB-INF/classes
+  private static final String CLASSES_JAR = "WEB-INF/lib/_ah_webinf_classes-0000.jar";
+
+  private static final String[] CONFIGURATION_FILES = {
+    "cron.yaml", "dispatch.yaml", "dos.yaml", "index.yaml", "queue.yaml"
+  };
+
   private final AbstractStageMojo stageMojo;
   private boolean configured = false;
 
@@ -48,19 +79,105 @@ public class AppEngineStandardStager implements AppEngineStager {
     stageMojo.getLog().info("Staging the application to: " + stageMojo.getStagingDirectory());
     stageMojo.getLog().info("Detected App Engine standard environment application.");
 
-    // delete staging directory if it exists
-    if (stageMojo.getStagingDirectory().exists()) {
-      stageMojo.getLog().info("Deleting the staging directory: " + stageMojo.getStagingDirectory());
+    try (TimingReport.Span span = stageMojo.startSpan("stage")) {
+      resolveDefaults();
+      String fingerprint = getFingerprint();
+      stageSources();
+      writeFingerprint(fingerprint);
+    }
+  }
+
+  /**
+   * Generates the configuration files deployed by the cron, dispatch, dos, index and queue goals
+   * into {@code WEB-INF/appengine-generated} of the staging directory. Only the XML descriptors of
+   * {@code WEB-INF} and {@code WEB-INF/appengine-generated} are staged, so jars are not copied and
+   * JSPs are not compiled. Nothing is done if the staging directory is already up to date.
+   */
+  public void stageConfiguration() throws MojoExecutionException {
+    Preconditions.checkState(configured, "Must call overrideAppEngineDirectory first");
+
+    resolveDefaults();
+    if (isUpToDate(getFingerprintFile(), getFingerprint())) {
+      return;
+    }
+
+    stageMojo
+        .getLog()
+        .info("Staging the configuration files to: " + stageMojo.getAppEngineDirectory());
+    Path descriptors = null;
+    Path output = null;
+    try {
+      descriptors = Files.createTempDirectory("appengine-descriptors");
+      output = Files.createTempDirectory("appengine-configuration");
+      Path source = stageMojo.getSourceDirectory().toPath();
+      copyDescriptors(source.resolve("WEB-INF"), descriptors.resolve("WEB-INF"));
+      copyDescriptors(
+          source.resolve("WEB-INF").resolve("appengine-generated"),
+          descriptors.resolve("WEB-INF").resolve("appengine-generated"));
+
+      String fingerprint = StagingManifest.fingerprint(descriptors, getOptions());
+      Path configurationFingerprintFile = getConfigurationFingerprintFile();
+      if (isUpToDate(configurationFingerprintFile, fingerprint)) {
+        return;
+      }
+
       try {
-        FileUtils.deleteDirectory(stageMojo.getStagingDirectory());
-      } catch (IOException ex) {
-        throw new MojoExecutionException("Unable to delete staging directory.", ex);
+        stageMojo
+            .getAppEngineFactory()
+            .standardStaging()
+            .stageStandard(new PartialStageConfiguration(stageMojo, descriptors, output, true));
+      } catch (AppEngineException ex) {
+        throw new RuntimeException(ex);
       }
+
+      // replace every configuration file, since the ones of a previous staging may be stale
+      Path generated = stageMojo.getAppEngineDirectory().toPath();
+      Files.createDirectories(generated);
+      for (String yaml : CONFIGURATION_FILES) {
+        Files.deleteIfExists(generated.resolve(yaml));
+        Path staged = output.resolve("WEB-INF").resolve("appengine-generated").resolve(yaml);
+        if (Files.exists(staged)) {
+          Files.copy(staged, generated.resolve(yaml));
+        }
+      }
+      Files.write(configurationFingerprintFile, fingerprint.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unable to stage the configuration files.", ex);
+    } finally {
+      FileUtils.deleteQuietly(descriptors == null ? null : descriptors.toFile());
+      FileUtils.deleteQuietly(output == null ? null : output.toFile());
     }
-    if (!stageMojo.getStagingDirectory().mkdir()) {
-      throw new MojoExecutionException("Unable to create staging directory");
+  }
+
+  private static void copyDescriptors(Path from, Path to) throws IOException {
+    Files.createDirectories(to);
+    if (!Files.isDirectory(from)) {
+      return;
+    }
+    try (DirectoryStream<Path> xmlFiles = Files.newDirectoryStream(from, "*.xml")) {
+      for (Path xmlFile : xmlFiles) {
+        Files.copy(xmlFile, to.resolve(xmlFile.getFileName()), StandardCopyOption.COPY_ATTRIBUTES);
+      }
+    }
+  }
+
+  private boolean isUpToDate(Path fingerprintFile, String fingerprint) {
+    try {
+      if (Files.isRegularFile(fingerprintFile)
+          && fingerprint.equals(
+              new String(Files.readAllBytes(fingerprintFile), StandardCharsets.UTF_8))) {
+        stageMojo
+            .getLog()
+            .info("The staging directory is up to date: " + stageMojo.getStagingDirectory());
+        return true;
+      }
+    } catch (IOException ex) {
+      stageMojo.getLog().warn("Unable to read the staging fingerprint: " + ex);
     }
+    return false;
+  }
 
+  private void resolveDefaults() throws MojoExecutionException {
     // force runtime to 'java' for compat projects using Java version >1.7
     File appengineWebXml =
         new File(
@@ -84,12 +201,546 @@ public class AppEngineStandardStager implements AppEngineStager {
         stageMojo.dockerfile = stageMojo.dockerfileSecondaryDefaultLocation;
       }
     }
+  }
+
+  private void stageSources() throws MojoExecutionException {
+    Path manifestFile = getManifestFile();
+    StagingCache cache = stageMojo.getStagingCache();
+    StagingManifest manifest = null;
+    try {
+      if (stageMojo.isIncremental() || cache != null) {
+        StagingManifest previous = StagingManifest.load(manifestFile);
+        manifest =
+            StagingManifest.scan(stageMojo.getSourceDirectory().toPath(), getOptions(), previous);
+        if (stageMojo.isIncremental()
+            && stageIncrementally(previous, manifest, stageMojo.getStagingCopier())) {
+          manifest.save(manifestFile);
+          return;
+        }
+      } else {
+        // a manifest left by an incremental run no longer describes the staging directory
+        Files.deleteIfExists(manifestFile);
+      }
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unable to compare with the previous staging run.", ex);
+    }
 
     try {
-      stageMojo.getAppEngineFactory().standardStaging().stageStandard(stageMojo);
-    } catch (AppEngineException ex) {
-      throw new RuntimeException(ex);
+      // saved again once the full restage succeeds, a failed one must not be patched next time
+      Files.deleteIfExists(manifestFile);
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unable to delete the staging manifest.", ex);
+    }
+    deleteStagingDirectory();
+    Future<Void> quickstartScan = startQuickstartScan(manifest);
+
+    String cacheKey = manifest == null ? null : "standard-" + manifest.getDigest();
+    if (cache == null || !restoreFromCache(cache, cacheKey)) {
+      // App Engine staging compiles the JSPs
+      try (TimingReport.Span span = stageMojo.startSpan("appengine-staging")) {
+        stageMojo
+            .getAppEngineFactory()
+            .standardStaging()
+            .stageStandard(new AppEngineStagingConfiguration(stageMojo));
+      } catch (AppEngineException ex) {
+        throw new RuntimeException(ex);
+      }
+      jarClasses();
+      splitJars();
+      if (cache != null) {
+        try {
+          cache.store(cacheKey, stageMojo.getStagingDirectory().toPath());
+        } catch (IOException ex) {
+          stageMojo.getLog().warn("Unable to add the staging output to the cache: " + ex);
+        }
+      }
+    }
+
+    finishQuickstartScan(quickstartScan);
+    if (manifest != null) {
+      try {
+        manifest.save(manifestFile);
+      } catch (IOException ex) {
+        throw new MojoExecutionException("Unable to write the staging manifest.", ex);
+      }
+    }
+  }
+
+  private String getFingerprint() throws MojoExecutionException {
+    try {
+      return StagingManifest.fingerprint(stageMojo.getSourceDirectory().toPath(), getOptions());
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unable to fingerprint the source directory.", ex);
+    }
+  }
+
+  private void writeFingerprint(String fingerprint) throws MojoExecutionException {
+    Path fingerprintFile = getFingerprintFile();
+    try {
+      Files.createDirectories(fingerprintFile.getParent());
+      Files.write(fingerprintFile, fingerprint.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unable to write the staging fingerprint.", ex);
+    }
+  }
+
+  /**
+   * The fingerprint is kept with the generated configuration files, where it is never served, and
+   * is deleted along with the rest of the staging directory.
+   */
+  @VisibleForTesting
+  Path getConfigurationFingerprintFile() {
+    return getFingerprintFile().resolveSibling(".configuration-fingerprint");
+  }
+
+  @VisibleForTesting
+  Path getFingerprintFile() {
+    return stageMojo
+        .getStagingDirectory()
+        .toPath()
+        .resolve("WEB-INF")
+        .resolve("appengine-generated")
+        .resolve(".staging-fingerprint");
+  }
+
+  private void deleteStagingDirectory() throws MojoExecutionException {
+    // delete staging directory if it exists
+    if (stageMojo.getStagingDirectory().exists()) {
+      stageMojo.getLog().info("Deleting the staging directory: " + stageMojo.getStagingDirectory());
+      try {
+        FileUtils.deleteDirectory(stageMojo.getStagingDirectory());
+      } catch (IOException ex) {
+        throw new MojoExecutionException("Unable to delete staging directory.", ex);
+      }
+    }
+    if (!stageMojo.getStagingDirectory().mkdir()) {
+      throw new MojoExecutionException("Unable to create staging directory");
+    }
+  }
+
+  /** Populates the empty staging directory from the cache, if it has the output for our inputs. */
+  private boolean restoreFromCache(StagingCache cache, String cacheKey)
+      throws MojoExecutionException {
+    try {
+      if (cache.restore(cacheKey, stageMojo.getStagingDirectory().toPath())) {
+        stageMojo.getLog().info("Restored the staging directory from the staging cache.");
+        return true;
+      }
+    } catch (IOException ex) {
+      stageMojo.getLog().warn("Unable to restore the staging directory from the cache: " + ex);
+      deleteStagingDirectory();
+    }
+    return false;
+  }
+
+  /**
+   * Brings the staging directory up to date by copying the changed files and deleting the removed
+   * ones, provided that every change is to a file that App Engine staging copies verbatim or to a
+   * JSP source whose pages can be recompiled and, with quickstart, that no change affects the
+   * generated quickstart-web.xml.
+   *
+   * @return false if a full restage is needed
+   */
+  private boolean stageIncrementally(
+      StagingManifest previous, StagingManifest current, StagingCopier copier) throws IOException {
+    if (previous == null
+        || !previous.getOptions().equals(current.getOptions())
+        || !stageMojo.getStagingDirectory().isDirectory()) {
+      return false;
+    }
+
+    SortedSet<String> changed = current.getChangedSince(previous);
+    SortedSet<String> removed = current.getRemovedSince(previous);
+    SortedSet<String> jspSources = new TreeSet<>();
+    for (String path : Iterables.concat(changed, removed)) {
+      if (isRecompiledJspSource(path, previous, current)) {
+        jspSources.add(path);
+      } else if (!isCopiedVerbatim(path, current)) {
+        stageMojo.getLog().info("Changes to " + path + " require a full restage.");
+        return false;
+      }
+    }
+
+    if (stageMojo.getEnableQuickstart() && affectsQuickstart(previous, current)) {
+      return false;
+    }
+    if (!jspSources.isEmpty()) {
+      try (TimingReport.Span span = stageMojo.startSpan("jsp-compile")) {
+        if (!new IncrementalJspCompiler(stageMojo).recompile(current, jspSources)) {
+          return false;
+        }
+      }
     }
+
+    stageMojo
+        .getLog()
+        .info(
+            "Incrementally staging "
+                + changed.size()
+                + " changed and "
+                + removed.size()
+                + " removed files.");
+    Path source = stageMojo.getSourceDirectory().toPath();
+    Path staging = stageMojo.getStagingDirectory().toPath();
+    List<Path> jarsToSplit = new ArrayList<>();
+    for (String path : changed) {
+      if (isSplitJar(path)) {
+        deleteFragments(path);
+        jarsToSplit.add(staging.resolve(path));
+      }
+    }
+    List<String> copied = new ArrayList<>();
+    boolean classesChanged = false;
+    for (String path : changed) {
+      if (stageMojo.getEnableJarClasses() && path.startsWith("WEB-INF/classes/")) {
+        classesChanged = true;
+      } else if (!(stageMojo.getDeleteJsps() && IncrementalJspCompiler.isPage(path))) {
+        copied.add(path);
+      }
+    }
+    copier.copyAll(source, staging, copied);
+    for (String path : removed) {
+      classesChanged |= stageMojo.getEnableJarClasses() && path.startsWith("WEB-INF/classes/");
+      if (isSplitJar(path)) {
+        deleteFragments(path);
+      }
+      Files.deleteIfExists(staging.resolve(path));
+    }
+    if (classesChanged) {
+      if (stageMojo.getEnableJarSplitting()) {
+        deleteFragments(CLASSES_JAR);
+        jarsToSplit.add(staging.resolve(CLASSES_JAR));
+      }
+      writeClassesJar();
+    }
+    if (stageMojo.getEnableJarSplitting()) {
+      newJarSplitter().splitAll(jarsToSplit);
+    }
+    return true;
+  }
+
+  /**
+   * Jars the WEB-INF/classes content of the source directory, and deletes the staged copies of the
+   * jarred files. Classes that App Engine staging adds, such as compiled JSPs, are left in place.
+   */
+  private void jarClasses() throws MojoExecutionException {
+    if (!stageMojo.getEnableJarClasses()) {
+      return;
+    }
+    Path classes = stageMojo.getSourceDirectory().toPath().resolve("WEB-INF").resolve("classes");
+    Path stagedClasses =
+        stageMojo.getStagingDirectory().toPath().resolve("WEB-INF").resolve("classes");
+    try {
+      if (!writeClassesJar()) {
+        return;
+      }
+      Files.walkFileTree(
+          classes,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                throws IOException {
+              Files.deleteIfExists(stagedClasses.resolve(classes.relativize(file).toString()));
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+              Path staged = stagedClasses.resolve(classes.relativize(dir).toString());
+              if (Files.isDirectory(staged)) {
+                try (DirectoryStream<Path> children = Files.newDirectoryStream(staged)) {
+                  if (!children.iterator().hasNext()) {
+                    Files.delete(staged);
+                  }
+                }
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unable to jar WEB-INF/classes.", ex);
+    }
+  }
+
+  /** @return false if the source directory has no WEB-INF/classes */
+  private boolean writeClassesJar() throws IOException {
+    Path classes = stageMojo.getSourceDirectory().toPath().resolve("WEB-INF").resolve("classes");
+    Path jar = stageMojo.getStagingDirectory().toPath().resolve(CLASSES_JAR);
+    Files.deleteIfExists(jar);
+    if (!Files.isDirectory(classes)) {
+      return false;
+    }
+    Files.createDirectories(jar.getParent());
+    new DeterministicJarWriter().write(classes, jar);
+    return true;
+  }
+
+  /**
+   * Whether the changes between two runs may change the quickstart-web.xml generated by App Engine
+   * staging. Quickstart needs to be regenerated when a changed class or jar has annotations or web
+   * resources before or after the change, or when any jar has a ServletContainerInitializer, since
+   * its @HandlesTypes may match any class. Only the web resources of the jars that the absolute
+   * ordering of web.xml excludes are taken into account.
+   */
+  private boolean affectsQuickstart(StagingManifest previous, StagingManifest current)
+      throws IOException {
+    QuickstartScanner scanner = new QuickstartScanner(getQuickstartCacheFile());
+    scanner.scan(stageMojo.getSourceDirectory().toPath(), current);
+    Document webXml = readWebXml();
+    boolean metadataComplete =
+        webXml != null
+            && "true".equals(webXml.getDocumentElement().getAttribute("metadata-complete"));
+    Set<String> ordering = getAbsoluteOrdering(webXml);
+
+    for (Map.Entry<String, StagingManifest.Entry> entry : current.getEntries().entrySet()) {
+      Set<QuickstartScanner.Feature> features =
+          scanner.getFeatures(entry.getKey(), entry.getValue().getHash());
+      if (features != null
+          && features.contains(QuickstartScanner.Feature.CONTAINER_INITIALIZER)
+          && !isExcluded(scanner, entry.getKey(), entry.getValue(), ordering)) {
+        stageMojo
+            .getLog()
+            .info(
+                "The ServletContainerInitializer of "
+                    + entry.getKey()
+                    + " requires a full restage.");
+        return true;
+      }
+    }
+
+    for (String path :
+        Iterables.concat(current.getChangedSince(previous), current.getRemovedSince(previous))) {
+      StagingManifest.Entry before = previous.getEntries().get(path);
+      StagingManifest.Entry after = current.getEntries().get(path);
+      if ((before != null && affectsQuickstart(scanner, path, before, metadataComplete, ordering))
+          || (after != null
+              && affectsQuickstart(scanner, path, after, metadataComplete, ordering))) {
+        stageMojo.getLog().info("Changes to " + path + " require a new quickstart-web.xml.");
+        return true;
+      }
+    }
+
+    scanner.save(current);
+    return false;
+  }
+
+  private static boolean affectsQuickstart(
+      QuickstartScanner scanner,
+      String path,
+      StagingManifest.Entry entry,
+      boolean metadataComplete,
+      Set<String> ordering) {
+    Set<QuickstartScanner.Feature> features = scanner.getFeatures(path, entry.getHash());
+    if (features == null) {
+      // never scanned, for instance a file removed since a run that did not scan
+      return true;
+    }
+    if (isExcluded(scanner, path, entry, ordering)) {
+      return features.contains(QuickstartScanner.Feature.WEB_RESOURCES);
+    }
+    return features.contains(QuickstartScanner.Feature.CONTAINER_INITIALIZER)
+        || features.contains(QuickstartScanner.Feature.WEB_RESOURCES)
+        || features.contains(QuickstartScanner.Feature.WEB_FRAGMENT)
+        || (!metadataComplete && features.contains(QuickstartScanner.Feature.ANNOTATIONS));
+  }
+
+  /**
+   * Whether {@code path} is a jar that the absolute ordering of web.xml leaves out, in which case
+   * its annotations, initializers and web fragment are not processed.
+   *
+   * @param ordering the fragment names of the absolute ordering, or null if every jar is included
+   */
+  private static boolean isExcluded(
+      QuickstartScanner scanner, String path, StagingManifest.Entry entry, Set<String> ordering) {
+    if (ordering == null || !path.startsWith("WEB-INF/lib/")) {
+      return false;
+    }
+    String fragmentName = scanner.getFragmentName(entry.getHash());
+    return fragmentName == null || !ordering.contains(fragmentName);
+  }
+
+  /** Returns the parsed web.xml, or null if there is none or it cannot be parsed. */
+  private Document readWebXml() {
+    File webXml =
+        stageMojo.getSourceDirectory().toPath().resolve("WEB-INF").resolve("web.xml").toFile();
+    if (!webXml.isFile()) {
+      return null;
+    }
+    try {
+      return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(webXml);
+    } catch (SAXException | IOException | ParserConfigurationException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the fragment names listed by the absolute ordering of {@code webXml}, or null if it has
+   * none or it includes the other jars.
+   */
+  private static Set<String> getAbsoluteOrdering(Document webXml) {
+    if (webXml == null) {
+      return null;
+    }
+    NodeList orderings = webXml.getDocumentElement().getElementsByTagName("absolute-ordering");
+    if (orderings.getLength() == 0) {
+      return null;
+    }
+    Set<String> names = new HashSet<>();
+    for (Node child = orderings.item(0).getFirstChild();
+        child != null;
+        child = child.getNextSibling()) {
+      if (child.getNodeName().equals("others")) {
+        return null;
+      }
+      if (child.getNodeName().equals("name")) {
+        names.add(child.getTextContent().trim());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Scans the classes and jars for quickstart in the background, while App Engine staging runs, so
+   * that the next incremental run knows their features.
+   *
+   * @return null if no scan is needed
+   */
+  private Future<Void> startQuickstartScan(StagingManifest manifest) {
+    if (manifest == null || !stageMojo.isIncremental() || !stageMojo.getEnableQuickstart()) {
+      return null;
+    }
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      return executor.submit(
+          () -> {
+            QuickstartScanner scanner = new QuickstartScanner(getQuickstartCacheFile());
+            scanner.scan(stageMojo.getSourceDirectory().toPath(), manifest);
+            scanner.save(manifest);
+            return null;
+          });
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void finishQuickstartScan(Future<Void> quickstartScan) {
+    if (quickstartScan == null) {
+      return;
+    }
+    try {
+      quickstartScan.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ex) {
+      // the next incremental run does a full restage instead
+      stageMojo.getLog().warn("Unable to scan the application for quickstart: " + ex.getCause());
+    }
+  }
+
+  /** The quickstart scan results are kept next to the staging directory, like the manifest. */
+  @VisibleForTesting
+  Path getQuickstartCacheFile() {
+    File stagingDirectory = stageMojo.getStagingDirectory().getAbsoluteFile();
+    return stagingDirectory.toPath().resolveSibling(stagingDirectory.getName() + ".quickstart");
+  }
+
+  private boolean isSplitJar(String path) {
+    return stageMojo.getEnableJarSplitting()
+        && path.startsWith("WEB-INF/lib/")
+        && path.endsWith(".jar")
+        && path.indexOf('/', "WEB-INF/lib/".length()) == -1;
+  }
+
+  /** Deletes the staged fragments of a jar, unless they are jars of the source directory. */
+  private void deleteFragments(String path) throws IOException {
+    Path source = stageMojo.getSourceDirectory().toPath();
+    Path staging = stageMojo.getStagingDirectory().toPath();
+    for (Path fragment : JarSplitter.findFragments(staging.resolve(path))) {
+      if (!Files.exists(source.resolve(staging.relativize(fragment)))) {
+        Files.delete(fragment);
+      }
+    }
+  }
+
+  private void splitJars() throws MojoExecutionException {
+    if (!stageMojo.getEnableJarSplitting()) {
+      return;
+    }
+    try {
+      newJarSplitter()
+          .splitAll(stageMojo.getStagingDirectory().toPath().resolve("WEB-INF").resolve("lib"));
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Unable to split the jars.", ex);
+    }
+  }
+
+  private JarSplitter newJarSplitter() {
+    return new JarSplitter(
+        stageMojo.getJarSplittingThreshold() * 1024 * 1024, stageMojo.getJarSplittingExcludes());
+  }
+
+  /**
+   * Whether a change to {@code path} is handled by recompiling the affected JSPs. Adding or
+   * removing a page changes the servlet mappings of the staged web.xml, so it is not.
+   */
+  private static boolean isRecompiledJspSource(
+      String path, StagingManifest previous, StagingManifest current) {
+    if (!IncrementalJspCompiler.isJspSource(path)) {
+      return false;
+    }
+    return !IncrementalJspCompiler.isPage(path)
+        || (previous.getEntries().containsKey(path) && current.getEntries().containsKey(path));
+  }
+
+  /**
+   * Whether App Engine staging copies {@code path} unmodified from the source directory, without
+   * using it for anything else.
+   */
+  private static boolean isCopiedVerbatim(String path, StagingManifest current) {
+    if (path.startsWith("WEB-INF/classes/")) {
+      // with enableJarClasses, the jar is rebuilt by the plugin
+      return true;
+    }
+    if (path.startsWith("WEB-INF/lib/")) {
+      // jars are split by the plugin, not by App Engine staging, but their TLDs and tag files are
+      // used to precompile the JSPs
+      return !hasJspPages(current);
+    }
+    return false;
+  }
+
+  private static boolean hasJspPages(StagingManifest manifest) {
+    for (String path : manifest.getEntries().keySet()) {
+      if (IncrementalJspCompiler.isPage(path)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Describes the options which affect the staging output for the same source directory. */
+  private String getOptions() {
+    return Joiner.on(',')
+        .useForNull("")
+        .join(
+            stageMojo.getEnableQuickstart(),
+            stageMojo.getEnableJarSplitting(),
+            stageMojo.getJarSplittingThreshold(),
+            stageMojo.getJarSplittingExcludes(),
+            stageMojo.getCompileEncoding(),
+            stageMojo.getDeleteJsps(),
+            stageMojo.getDisableJarJsps(),
+            stageMojo.getEnableJarClasses(),
+            stageMojo.getRuntime(),
+            stageMojo.getDockerfile(),
+            stageMojo.getCloudSdkVersion());
+  }
+
+  /** The manifest is kept next to the staging directory so that it is never deployed. */
+  @VisibleForTesting
+  Path getManifestFile() {
+    File stagingDirectory = stageMojo.getStagingDirectory().getAbsoluteFile();
+    return stagingDirectory.toPath().resolveSibling(stagingDirectory.getName() + ".manifest");
   }
 
   @Override
@@ -35,20 +35,24 @@ import com.google.cloud.tools.appengine.cloudsdk.LocalRun;
 import com.google.cloud.tools.appengine.cloudsdk.process.LegacyProcessHandler;
 import com.google.cloud.tools.appengine.cloudsdk.process.NonZeroExceptionExitListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
-import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
-import java.io.File;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandlerException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import org.apache.maven.plugin.logging.Log;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.maven.execution.MavenSession;
 
 /** Factory for App Engine dependencies. */
 public class CloudSdkAppEngineFactory {
 
   private final CloudSdkMojo mojo;
+  private final CloudSdkOperationsFactory cloudSdkOperationsFactory;
+  // used when the mojo runs outside of a Maven session
+  private final CloudSdkRegistry localRegistry = new CloudSdkRegistry();
 
   /** Supported dev app server versions. */
   public enum SupportedDevServerVersion {
@@ -71,7 +75,23 @@ public class CloudSdkAppEngineFactory {
   }
 
   public CloudSdkAppEngineFactory(CloudSdkMojo mojo) {
+    this(mojo, new CloudSdkOperationsFactory());
+  }
+
+  @VisibleForTesting
+  CloudSdkAppEngineFactory(CloudSdkMojo mojo, CloudSdkOperationsFactory cloudSdkOperationsFactory) {
     this.mojo = mojo;
+    this.cloudSdkOperationsFactory = cloudSdkOperationsFactory;
+  }
+
+  /**
+   * Starts resolving the Cloud SDK in the background, installing or updating it if needed, so that
+   * it is ready by the time the first operation needs it. A failure is thrown by that operation.
+   */
+  public void warmUp() {
+    getRegistry()
+        .resolveInBackground(
+            CloudSdkRegistry.key(mojo), () -> defaultCloudSdk(mojo, cloudSdkOperationsFactory));
   }
 
   /** Constructs an object used for auth */
@@ -111,11 +131,45 @@ public class CloudSdkAppEngineFactory {
     }
   }
 
-  /** Constructs a dev server in async mode */
+  /**
+   * Constructs a dev server in async mode
+   *
+   * @param logRotation when to rotate the dev server log file
+   */
   public AppEngineDevServer devServerRunAsync(
-      int startSuccessTimeout, SupportedDevServerVersion version) {
+      int startSuccessTimeout,
+      SupportedDevServerVersion version,
+      DevServerLogWriter.Rotation logRotation) {
+    return devServerRunAsync(
+        startSuccessTimeout,
+        version,
+        logRotation,
+        DevServerLogWriter.getLogFile(Paths.get(mojo.getMavenProject().getBuild().getDirectory())));
+  }
 
-    ProcessHandler ph = newDevAppServerAsyncHandler(startSuccessTimeout);
+  /** Constructs a dev server in async mode writing its output to {@code logFile}. */
+  public AppEngineDevServer devServerRunAsync(
+      int startSuccessTimeout,
+      SupportedDevServerVersion version,
+      DevServerLogWriter.Rotation logRotation,
+      Path logFile) {
+    return devServerRunAsync(startSuccessTimeout, version, logRotation, logFile, null);
+  }
+
+  /**
+   * Constructs a dev server in async mode writing its output to {@code logFile}.
+   *
+   * @param processListener receives the server process as soon as it is started, or null
+   */
+  public AppEngineDevServer devServerRunAsync(
+      int startSuccessTimeout,
+      SupportedDevServerVersion version,
+      DevServerLogWriter.Rotation logRotation,
+      Path logFile,
+      Consumer<Process> processListener) {
+
+    ProcessHandler ph =
+        newDevAppServerAsyncHandler(startSuccessTimeout, logRotation, logFile, processListener);
     return createDevServerForVersion(version, ph);
   }
 
@@ -129,18 +183,52 @@ public class CloudSdkAppEngineFactory {
     return getGcloud().newGenRepoInfo(newDefaultProcessHandler());
   }
 
+  /**
+   * Returns the Cloud SDK, resolved once and shared by every mojo of the Maven session that is
+   * configured with the same Cloud SDK settings.
+   */
   private CloudSdk getCloudSdk() {
-    return defaultCloudSdk(mojo, new CloudSdkOperationsFactory());
+    try (TimingReport.Span span = mojo.startSpan("cloud-sdk-resolution")) {
+      return getRegistry()
+          .resolve(
+              CloudSdkRegistry.key(mojo), () -> defaultCloudSdk(mojo, cloudSdkOperationsFactory));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(ex);
+    } catch (ExecutionException ex) {
+      Throwables.throwIfUnchecked(ex.getCause());
+      throw new RuntimeException(ex.getCause());
+    }
+  }
+
+  private CloudSdkRegistry getRegistry() {
+    MavenSession session = mojo.getSession();
+    return session == null ? localRegistry : CloudSdkRegistry.forSession(session);
   }
 
   static CloudSdk defaultCloudSdk(
       CloudSdkMojo mojo, CloudSdkOperationsFactory cloudSdkOperationsFactory) {
     Path sdkPath = mojo.getCloudSdkHome();
     if (sdkPath == null) {
-      sdkPath =
-          cloudSdkOperationsFactory
-              .newDownloader(mojo.getCloudSdkVersion())
-              .downloadCloudSdk(mojo.getLog());
+      // modules deployed in parallel must not install the same Cloud SDK concurrently
+      synchronized (CloudSdkAppEngineFactory.class) {
+        CloudSdkDownloader downloader =
+            mojo.getCloudSdkArchive() == null
+                ? cloudSdkOperationsFactory.newDownloader(mojo.getCloudSdkVersion())
+                : cloudSdkOperationsFactory.newDownloader(
+                    mojo.getCloudSdkVersion(),
+                    mojo.getCloudSdkArchive(),
+                    mojo.getCloudSdkArchiveChecksum());
+        downloader.setUpdateCheck(
+            TimeUnit.HOURS.toMillis(mojo.getCloudSdkUpdateCheckInterval()),
+            mojo.isCloudSdkForceUpdateCheck());
+        if (mojo.getMavenProject() != null) {
+          downloader.setTimingSummaryFile(
+              Paths.get(mojo.getMavenProject().getBuild().getDirectory())
+                  .resolve("cloud-sdk-provisioning.json"));
+        }
+        sdkPath = downloader.downloadCloudSdk(mojo.getLog());
+      }
     }
 
     try {
@@ -175,79 +263,92 @@ public class CloudSdkAppEngineFactory {
   }
 
   private ProcessHandler newDefaultProcessHandler() {
-    ProcessOutputLineListener lineListener = new DefaultProcessOutputLineListener(mojo.getLog());
-    return LegacyProcessHandler.builder()
-        .addStdOutLineListener(lineListener)
-        .addStdErrLineListener(lineListener)
-        .setExitListener(new NonZeroExceptionExitListener())
-        .build();
+    DefaultProcessOutputLineListener lineListener =
+        new DefaultProcessOutputLineListener(mojo.getLog());
+    ProcessStartupMetrics.Measurement measurement =
+        ProcessStartupMetrics.getInstance().newMeasurement(mojo.getLog());
+    return timed(
+        "cloud-sdk-process",
+        lineListener,
+        lineListener.wrap(
+            measurement.wrap(
+                LegacyProcessHandler.builder()
+                    .addStdOutLineListener(lineListener)
+                    .addStdOutLineListener(measurement)
+                    .addStdErrLineListener(lineListener)
+                    .addStdErrLineListener(measurement)
+                    .setExitListener(new NonZeroExceptionExitListener())
+                    .build())));
   }
 
-  private ProcessHandler newDevAppServerAsyncHandler(int timeout) {
-    Path logDir =
-        Paths.get(mojo.getMavenProject().getBuild().getDirectory()).resolve("dev-appserver-out");
-    if (!Files.exists(logDir)) {
-      try {
-        logDir = Files.createDirectories(logDir);
-      } catch (IOException e) {
-        throw new RuntimeException("Failed to create dev-appserver logging directory.");
-      }
+  private ProcessHandler newDevAppServerAsyncHandler(
+      int timeout,
+      DevServerLogWriter.Rotation logRotation,
+      Path logFile,
+      Consumer<Process> processListener) {
+    DevServerLogWriter fileListener;
+    try {
+      fileListener = DevServerLogWriter.open(logFile, logRotation, mojo.getLog());
+    } catch (IOException ex) {
+      throw new RuntimeException("Failed to create dev-appserver log file.", ex);
     }
-    File logFile = logDir.resolve("dev_appserver.out").toFile();
-    FileOutputLineListener fileListener = new FileOutputLineListener(logFile);
     mojo.getLog().info("Dev App Server output written to : " + logFile);
 
-    ProcessOutputLineListener lineListener = new DefaultProcessOutputLineListener(mojo.getLog());
+    DefaultProcessOutputLineListener lineListener =
+        new DefaultProcessOutputLineListener(mojo.getLog());
+    // the server outlives this mojo, the stop goal closes both
+    fileListener.closeWith(lineListener);
+    ProcessStartupMetrics.Measurement measurement =
+        ProcessStartupMetrics.getInstance().newMeasurement(mojo.getLog());
+
+    ProcessHandler handler =
+        measurement.wrap(
+            LegacyProcessHandler.builder()
+                .addStdOutLineListener(lineListener)
+                .addStdOutLineListener(fileListener)
+                .addStdOutLineListener(measurement)
+                .addStdErrLineListener(lineListener)
+                .addStdErrLineListener(fileListener)
+                .addStdErrLineListener(measurement)
+                .setExitListener(new NonZeroExceptionExitListener())
+                .buildDevAppServerAsync(timeout));
+    return timed(
+        "dev-appserver-start",
+        new ProcessHandler() {
+          @Override
+          public void handleProcess(Process process) throws ProcessHandlerException {
+            if (processListener != null) {
+              processListener.accept(process);
+            }
+            handler.handleProcess(process);
+          }
+        });
+  }
 
-    return LegacyProcessHandler.builder()
-        .addStdOutLineListener(lineListener)
-        .addStdOutLineListener(fileListener)
-        .addStdErrLineListener(lineListener)
-        .addStdErrLineListener(fileListener)
-        .setExitListener(new NonZeroExceptionExitListener())
-        .buildDevAppServerAsync(timeout);
+  /** Returns a handler that records the time {@code handler} takes as a span. */
+  private ProcessHandler timed(String spanName, ProcessHandler handler) {
+    return timed(spanName, null, handler);
   }
 
   /**
-   * Default output listener that copies output to the Maven Mojo logger with a 'GCLOUD: ' prefix.
+   * Returns a handler that records the time {@code handler} takes as a span, with the output queue
+   * statistics of {@code lineListener}, if not null, as attributes.
    */
-  static class DefaultProcessOutputLineListener implements ProcessOutputLineListener {
-
-    private final Log log;
-
-    DefaultProcessOutputLineListener(Log log) {
-      this.log = log;
-    }
-
-    @Override
-    public void onOutputLine(String line) {
-      log.info("GCLOUD: " + line);
-    }
-  }
-
-  /** A listener that redirects process output to a file. */
-  static class FileOutputLineListener implements ProcessOutputLineListener {
-
-    private final PrintStream logFilePrinter;
-
-    FileOutputLineListener(final File logFile) {
-      try {
-        logFilePrinter = new PrintStream(logFile, StandardCharsets.UTF_8.name());
-        Runtime.getRuntime()
-            .addShutdownHook(
-                new Thread() {
-                  public void run() {
-                    logFilePrinter.close();
-                  }
-                });
-      } catch (IOException ex) {
-        throw new RuntimeException(ex);
+  private ProcessHandler timed(
+      String spanName, DefaultProcessOutputLineListener lineListener, ProcessHandler handler) {
+    return new ProcessHandler() {
+      @Override
+      public void handleProcess(Process process) throws ProcessHandlerException {
+        try (TimingReport.Span span = mojo.startSpan(spanName)) {
+          try {
+            handler.handleProcess(process);
+          } finally {
+            if (span != null && lineListener != null) {
+              lineListener.publishTo(span);
+            }
+          }
+        }
       }
-    }
-
-    @Override
-    public void onOutputLine(String line) {
-      logFilePrinter.println(line);
-    }
+    };
   }
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.managedcloudsdk.OsInfo;
+import com.google.cloud.tools.managedcloudsdk.UnsupportedOsException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Installs the Cloud SDK from a local archive instead of downloading it, for builds without
+ * internet access.
+ *
+ * <p>The archive is either a Cloud SDK archive (.tar.gz or .zip) whose google-cloud-sdk directory
+ * has the app-engine-java component installed, or a directory mirroring the Cloud SDK release
+ * archives under their release names, like google-cloud-sdk-192.0.0-linux-x86_64.tar.gz. The
+ * archive is verified against a SHA-256 checksum, either configured or read from a ".sha256" file
+ * next to it, and its files are written in parallel.
+ */
+class CloudSdkArchiveInstaller {
+
+  private static final String APP_ENGINE_JAVA_TOOLS_JAR =
+      "platform/google_appengine/google/appengine/tools/java/lib/appengine-tools-api.jar";
+  // bytes of tar content buffered before they are written in parallel
+  private static final long BATCH_SIZE = 64 * 1024 * 1024;
+
+  private final Path archive;
+  private final String checksum;
+  private final String version;
+
+  /**
+   * @param archive a Cloud SDK archive, or a directory of Cloud SDK release archives
+   * @param checksum the SHA-256 checksum of the archive, or null to read it from a ".sha256" file
+   * @param version the Cloud SDK version, required when {@code archive} is a directory
+   */
+  CloudSdkArchiveInstaller(Path archive, String checksum, String version) {
+    this.archive = archive;
+    this.checksum = checksum;
+    this.version = version;
+  }
+
+  /**
+   * Verifies the archive and extracts its google-cloud-sdk directory to {@code sdkHome}, which must
+   * not exist.
+   */
+  void install(Path sdkHome, Log log) throws IOException {
+    Path archiveFile = resolveArchive();
+    verifyChecksum(archiveFile);
+    log.info("Installing Cloud SDK from " + archiveFile);
+
+    Files.createDirectories(sdkHome.getParent());
+    Path extractDirectory = Files.createTempDirectory(sdkHome.getParent(), ".extract-");
+    try {
+      extract(archiveFile, extractDirectory);
+      Path extracted = extractDirectory.resolve("google-cloud-sdk");
+      if (!Files.isDirectory(extracted)) {
+        throw new IOException(archiveFile + " does not contain a google-cloud-sdk directory");
+      }
+      if (!Files.isRegularFile(extracted.resolve(APP_ENGINE_JAVA_TOOLS_JAR))) {
+        throw new IOException(
+            archiveFile + " does not contain the app-engine-java Cloud SDK component");
+      }
+      // other builds only see a complete installation
+      Files.move(extracted, sdkHome, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      FileUtils.deleteDirectory(extractDirectory.toFile());
+    }
+  }
+
+  /** Returns the archive to install, looking it up by release name if it is a mirror directory. */
+  @VisibleForTesting
+  Path resolveArchive() throws IOException {
+    if (!Files.isDirectory(archive)) {
+      if (!Files.isRegularFile(archive)) {
+        throw new IOException("Cloud SDK archive not found: " + archive);
+      }
+      return archive;
+    }
+    if (version == null) {
+      throw new IOException(
+          "cloudSdkVersion must be configured to install the Cloud SDK from the mirror " + archive);
+    }
+    Path archiveFile;
+    try {
+      archiveFile = archive.resolve(getReleaseName(version, OsInfo.getSystemOsInfo()));
+    } catch (UnsupportedOsException ex) {
+      throw new IOException("No Cloud SDK release for this system", ex);
+    }
+    if (!Files.isRegularFile(archiveFile)) {
+      throw new IOException("Cloud SDK archive not found in mirror: " + archiveFile);
+    }
+    return archiveFile;
+  }
+
+  /** Returns the name of the Cloud SDK release archive of {@code version} for {@code osInfo}. */
+  @VisibleForTesting
+  static String getReleaseName(String version, OsInfo osInfo) {
+    String arch = osInfo.arch() == OsInfo.Architecture.X86_64 ? "x86_64" : "x86";
+    switch (osInfo.name()) {
+      case WINDOWS:
+        return "google-cloud-sdk-" + version + "-windows-" + arch + "-bundled-python.zip";
+      case MAC:
+        return "google-cloud-sdk-" + version + "-darwin-" + arch + ".tar.gz";
+      default:
+        return "google-cloud-sdk-" + version + "-linux-" + arch + ".tar.gz";
+    }
+  }
+
+  private void verifyChecksum(Path archiveFile) throws IOException {
+    String expected = checksum;
+    if (expected == null) {
+      Path checksumFile = archiveFile.resolveSibling(archiveFile.getFileName() + ".sha256");
+      if (!Files.isRegularFile(checksumFile)) {
+        throw new IOException(
+            "No checksum to verify "
+                + archiveFile
+                + ": configure cloudSdkArchiveChecksum or provide "
+                + checksumFile);
+      }
+      // sha256sum format: the checksum, then the file name
+      expected =
+          new String(Files.readAllBytes(checksumFile), StandardCharsets.UTF_8)
+              .trim()
+              .split("\\s")[0];
+    }
+    String actual =
+        com.google.common.io.Files.asByteSource(archiveFile.toFile())
+            .hash(Hashing.sha256())
+            .toString();
+    if (!actual.equalsIgnoreCase(expected)) {
+      throw new IOException(
+          "Checksum mismatch for " + archiveFile + ": expected " + expected + ", was " + actual);
+    }
+  }
+
+  @VisibleForTesting
+  static void extract(Path archiveFile, Path target) throws IOException {
+    String name = archiveFile.getFileName().toString().toLowerCase(Locale.ROOT);
+    if (name.endsWith(".zip")) {
+      extractZip(archiveFile, target);
+    } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+      extractTarGz(archiveFile, target);
+    } else {
+      throw new IOException("Unsupported Cloud SDK archive type: " + archiveFile);
+    }
+  }
+
+  private static void extractZip(Path archiveFile, Path target) throws IOException {
+    try (ZipFile zipFile = new ZipFile(archiveFile.toFile())) {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+        Path file = resolve(target, entry.getName());
+        if (entry.isDirectory()) {
+          Files.createDirectories(file);
+          continue;
+        }
+        int mode = entry.getUnixMode();
+        tasks.add(
+            () -> {
+              try (InputStream input = zipFile.getInputStream(entry)) {
+                Files.createDirectories(file.getParent());
+                Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+              }
+              setMode(file, mode);
+              return null;
+            });
+      }
+      ParallelTasks.invokeAll(tasks, "extracting " + archiveFile);
+    }
+  }
+
+  private static void extractTarGz(Path archiveFile, Path target) throws IOException {
+    Map<Path, String> symbolicLinks = new LinkedHashMap<>();
+    Map<Path, Path> hardLinks = new LinkedHashMap<>();
+    try (TarArchiveInputStream input =
+        new TarArchiveInputStream(
+            new GzipCompressorInputStream(
+                new BufferedInputStream(Files.newInputStream(archiveFile))))) {
+      List<Callable<Void>> batch = new ArrayList<>();
+      long batchSize = 0;
+      TarArchiveEntry entry;
+      while ((entry = input.getNextTarEntry()) != null) {
+        Path file = resolve(target, entry.getName());
+        if (entry.isDirectory()) {
+          Files.createDirectories(file);
+        } else if (entry.isSymbolicLink()) {
+          symbolicLinks.put(file, entry.getLinkName());
+        } else if (entry.isLink()) {
+          hardLinks.put(file, resolve(target, entry.getLinkName()));
+        } else {
+          // decompression is sequential, writing the files is not
+          byte[] content = ByteStreams.toByteArray(input);
+          int mode = entry.getMode();
+          batch.add(
+              () -> {
+                Files.createDirectories(file.getParent());
+                Files.write(file, content);
+                setMode(file, mode);
+                return null;
+              });
+          batchSize += content.length;
+          if (batchSize >= BATCH_SIZE) {
+            ParallelTasks.invokeAll(batch, "extracting " + archiveFile);
+            batch = new ArrayList<>();
+            batchSize = 0;
+          }
+        }
+      }
+      ParallelTasks.invokeAll(batch, "extracting " + archiveFile);
+    }
+    for (Map.Entry<Path, Path> link : hardLinks.entrySet()) {
+      Files.createDirectories(link.getKey().getParent());
+      Files.copy(link.getValue(), link.getKey(), StandardCopyOption.COPY_ATTRIBUTES);
+    }
+    for (Map.Entry<Path, String> link : symbolicLinks.entrySet()) {
+      Files.createDirectories(link.getKey().getParent());
+      Files.createSymbolicLink(
+          link.getKey(), link.getKey().getFileSystem().getPath(link.getValue()));
+    }
+  }
+
+  /** Resolves an archive entry under {@code target}, rejecting entries that would escape it. */
+  private static Path resolve(Path target, String entryName) throws IOException {
+    Path file = target.resolve(entryName).normalize();
+    if (!file.startsWith(target)) {
+      throw new IOException("Archive entry outside of the extraction directory: " + entryName);
+    }
+    return file;
+  }
+
+  /** Applies the owner, group and other permissions of a unix {@code mode}, where supported. */
+  private static void setMode(Path file, int mode) throws IOException {
+    if (mode == 0 || !file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      return;
+    }
+    PosixFilePermission[] bits = {
+      PosixFilePermission.OTHERS_EXECUTE,
+      PosixFilePermission.OTHERS_WRITE,
+      PosixFilePermission.OTHERS_READ,
+      PosixFilePermission.GROUP_EXECUTE,
+      PosixFilePermission.GROUP_WRITE,
+      PosixFilePermission.GROUP_READ,
+      PosixFilePermission.OWNER_EXECUTE,
+      PosixFilePermission.OWNER_WRITE,
+      PosixFilePermission.OWNER_READ
+    };
+    Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+    for (int i = 0; i < bits.length; i++) {
+      if ((mode & (1 << i)) != 0) {
+        permissions.add(bits[i]);
+      }
+    }
+    Files.setPosixFilePermissions(file, permissions);
+  }
+}
@@ -26,16 +26,60 @@ import com.google.cloud.tools.managedcloudsdk.command.CommandExitException;
 import com.google.cloud.tools.managedcloudsdk.components.SdkComponent;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstallerException;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.GsonBuilder;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.logging.Log;
 
 public class CloudSdkDownloader {
 
+  private static final String LOCK_FILE = ".install.lock";
+  // present while the Cloud SDK is being installed or updated
+  private static final String INCOMPLETE_MARKER = ".install-incomplete";
+  private static final long LOCK_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+  // time of the last update check that found the Cloud SDK up to date
+  private static final String UPDATE_CHECK_FILE = ".last-update-check";
+
   private final ManagedCloudSdk managedCloudSdk;
+  private final CloudSdkArchiveInstaller archiveInstaller;
+  private long updateCheckIntervalMillis;
+  private boolean forceUpdateCheck;
+  private Path timingSummaryFile;
 
   CloudSdkDownloader(ManagedCloudSdk managedCloudSdk) {
+    this(managedCloudSdk, null);
+  }
+
+  /**
+   * @param archiveInstaller installs the Cloud SDK from a local archive instead of downloading it,
+   *     or null to download it
+   */
+  CloudSdkDownloader(ManagedCloudSdk managedCloudSdk, CloudSdkArchiveInstaller archiveInstaller) {
     this.managedCloudSdk = managedCloudSdk;
+    this.archiveInstaller = archiveInstaller;
+  }
+
+  /**
+   * Skips update checks for {@code intervalMillis} after a check found the Cloud SDK up to date,
+   * unless {@code force} is set.
+   */
+  public void setUpdateCheck(long intervalMillis, boolean force) {
+    this.updateCheckIntervalMillis = intervalMillis;
+    this.forceUpdateCheck = force;
+  }
+
+  /** Writes the duration and throughput of every phase of {@link #downloadCloudSdk} as JSON. */
+  public void setTimingSummaryFile(Path timingSummaryFile) {
+    this.timingSummaryFile = timingSummaryFile;
   }
 
   @VisibleForTesting
@@ -44,30 +88,79 @@ public class CloudSdkDownloader {
   }
 
   /**
-   * Downloads/installs/updates the Cloud SDK
+   * Downloads/installs/updates the Cloud SDK. When installing from a local archive, the Cloud SDK
+   * is only installed if it is missing, and never updated.
+   *
+   * <p>Builds running at the same time on the machine take turns: one of them installs or updates
+   * the Cloud SDK while the others wait, then find it up to date. A fresh installation interrupted
+   * by a crashed build is deleted and installed again.
+   *
+   * <p>Progress is logged every few seconds, and a timing summary is written to the {@link
+   * #setTimingSummaryFile timing summary file}, if any, even when the installation fails.
    *
    * @return The cloud SDK installation directory
    */
   public Path downloadCloudSdk(Log log) {
-    try {
-      ProgressListener progressListener = new NoOpProgressListener();
+    Path sdkHome = managedCloudSdk.getSdkHome();
+    Path installDirectory = sdkHome.getParent();
+    long startNanos = System.nanoTime();
+    long lockWaitNanos = -1;
+    List<CloudSdkDownloaderProgressListener> phases = new ArrayList<>();
+    try (CloudSdkInstallLock lock =
+        CloudSdkInstallLock.acquire(
+            installDirectory.resolve(LOCK_FILE), LOCK_TIMEOUT_MILLIS, log)) {
+      lockWaitNanos = System.nanoTime() - startNanos;
+      Path incompleteMarker = installDirectory.resolve(INCOMPLETE_MARKER);
+      if (Files.exists(incompleteMarker)) {
+        log.warn("Deleting the Cloud SDK left incomplete by a previous build: " + sdkHome);
+        FileUtils.deleteDirectory(sdkHome.toFile());
+      }
+
+      if (archiveInstaller != null) {
+        if (!managedCloudSdk.isInstalled()) {
+          markIncomplete(incompleteMarker);
+          ProgressListener progressListener = newPhase("archive-install", log, phases);
+          progressListener.start(
+              "Installing Cloud SDK from a local archive", ProgressListener.UNKNOWN);
+          archiveInstaller.install(sdkHome, log);
+          progressListener.done();
+          Files.delete(incompleteMarker);
+        }
+        return sdkHome;
+      }
+
       ConsoleListener consoleListener = new CloudSdkDownloaderConsoleListener(log);
 
       if (!managedCloudSdk.isInstalled()) {
-        managedCloudSdk.newInstaller().install(progressListener, consoleListener);
+        markIncomplete(incompleteMarker);
+        managedCloudSdk
+            .newInstaller()
+            .install(newPhase("install", true, log, phases), consoleListener);
+        Files.delete(incompleteMarker);
       }
 
+      // a failed component install or update leaves a working Cloud SDK, the next build retries it
       if (!managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)) {
         managedCloudSdk
             .newComponentInstaller()
-            .installComponent(SdkComponent.APP_ENGINE_JAVA, progressListener, consoleListener);
+            .installComponent(
+                SdkComponent.APP_ENGINE_JAVA,
+                newPhase("component-install", log, phases),
+                consoleListener);
       }
 
-      if (!managedCloudSdk.isUpToDate()) {
-        managedCloudSdk.newUpdater().update(progressListener, consoleListener);
+      Path updateCheckFile = installDirectory.resolve(UPDATE_CHECK_FILE);
+      if (isUpdateCheckFresh(updateCheckFile)) {
+        log.debug("Skipping Cloud SDK update check, the last one is recent enough");
+      } else {
+        if (!managedCloudSdk.isUpToDate()) {
+          managedCloudSdk.newUpdater().update(newPhase("update", log, phases), consoleListener);
+        }
+        Files.write(
+            updateCheckFile,
+            Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
       }
-
-      return managedCloudSdk.getSdkHome();
+      return sdkHome;
     } catch (IOException
         | SdkInstallerException
         | ManagedSdkVersionMismatchException
@@ -76,6 +169,83 @@ public class CloudSdkDownloader {
         | CommandExitException
         | ManagedSdkVerificationException ex) {
       throw new RuntimeException(ex);
+    } finally {
+      if (timingSummaryFile != null) {
+        writeTimingSummary(sdkHome, startNanos, lockWaitNanos, phases, log);
+      }
+    }
+  }
+
+  private static CloudSdkDownloaderProgressListener newPhase(
+      String phase, Log log, List<CloudSdkDownloaderProgressListener> phases) {
+    return newPhase(phase, false, log, phases);
+  }
+
+  /** @param downloadsFirst whether the first sub-phase downloads the Cloud SDK archive */
+  private static CloudSdkDownloaderProgressListener newPhase(
+      String phase,
+      boolean downloadsFirst,
+      Log log,
+      List<CloudSdkDownloaderProgressListener> phases) {
+    CloudSdkDownloaderProgressListener listener =
+        new CloudSdkDownloaderProgressListener(phase, log, downloadsFirst);
+    phases.add(listener);
+    return listener;
+  }
+
+  private void writeTimingSummary(
+      Path sdkHome,
+      long startNanos,
+      long lockWaitNanos,
+      List<CloudSdkDownloaderProgressListener> phases,
+      Log log) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("sdkHome", sdkHome.toString());
+    summary.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    if (lockWaitNanos >= 0) {
+      summary.put("lockWaitMillis", TimeUnit.NANOSECONDS.toMillis(lockWaitNanos));
+    }
+    summary.put(
+        "phases",
+        phases
+            .stream()
+            .map(CloudSdkDownloaderProgressListener::getSummary)
+            .collect(Collectors.toList()));
+    try {
+      Files.createDirectories(timingSummaryFile.getParent());
+      Files.write(
+          timingSummaryFile,
+          new GsonBuilder()
+              .setPrettyPrinting()
+              .serializeNulls()
+              .create()
+              .toJson(summary)
+              .getBytes(StandardCharsets.UTF_8));
+    } catch (IOException ex) {
+      log.warn("Failed to write the Cloud SDK timing summary: " + ex.getMessage());
+    }
+  }
+
+  private boolean isUpdateCheckFresh(Path updateCheckFile) throws IOException {
+    if (forceUpdateCheck || updateCheckIntervalMillis <= 0 || !Files.exists(updateCheckFile)) {
+      return false;
+    }
+    try {
+      long lastCheck =
+          Long.parseLong(
+              new String(Files.readAllBytes(updateCheckFile), StandardCharsets.UTF_8).trim());
+      long age = System.currentTimeMillis() - lastCheck;
+      // a check from the future means the clock changed
+      return age >= 0 && age < updateCheckIntervalMillis;
+    } catch (NumberFormatException ex) {
+      return false;
+    }
+  }
+
+  /** Marks the Cloud SDK as incomplete until a fresh installation of it completes. */
+  private static void markIncomplete(Path incompleteMarker) throws IOException {
+    if (!Files.exists(incompleteMarker)) {
+      Files.createFile(incompleteMarker);
     }
   }
 }
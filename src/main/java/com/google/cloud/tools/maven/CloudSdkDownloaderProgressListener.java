@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Progress listener that records the duration, work and throughput of a phase of a Cloud SDK
+ * installation and of its sub-phases, and logs progress at most every few seconds.
+ *
+ * <p>Work is counted in bytes for the download of the Cloud SDK archive, the only sub-phase whose
+ * work is reported in bytes by the Cloud SDK installers.
+ */
+public class CloudSdkDownloaderProgressListener implements ProgressListener {
+
+  private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private final String phase;
+  private final Log log;
+  private final Ticker ticker;
+  // time of the last progress log line, shared by a phase and its sub-phases
+  private final AtomicLong lastLogNanos;
+  private final boolean downloadsFirst;
+  private final boolean countingBytes;
+  private final List<CloudSdkDownloaderProgressListener> children = new CopyOnWriteArrayList<>();
+  private final AtomicLong work = new AtomicLong();
+
+  private volatile String message;
+  private volatile long totalWork = UNKNOWN;
+  private volatile long startNanos = -1;
+  private volatile long endNanos = -1;
+
+  /**
+   * @param phase a short name of the phase, for the timing summary
+   * @param downloadsFirst whether the first sub-phase of the phase downloads the Cloud SDK archive
+   */
+  public CloudSdkDownloaderProgressListener(String phase, Log log, boolean downloadsFirst) {
+    this(phase, log, Ticker.systemTicker(), downloadsFirst);
+  }
+
+  @VisibleForTesting
+  CloudSdkDownloaderProgressListener(String phase, Log log, Ticker ticker, boolean downloadsFirst) {
+    this(phase, log, ticker, new AtomicLong(ticker.read()), downloadsFirst, false);
+  }
+
+  private CloudSdkDownloaderProgressListener(
+      String phase,
+      Log log,
+      Ticker ticker,
+      AtomicLong lastLogNanos,
+      boolean downloadsFirst,
+      boolean countingBytes) {
+    this.phase = phase;
+    this.log = log;
+    this.ticker = ticker;
+    this.lastLogNanos = lastLogNanos;
+    this.downloadsFirst = downloadsFirst;
+    this.countingBytes = countingBytes;
+  }
+
+  @Override
+  public void start(String message, long totalWork) {
+    this.message = message;
+    this.totalWork = totalWork;
+    this.startNanos = ticker.read();
+    log.info(message);
+  }
+
+  @Override
+  public void update(long workDone) {
+    work.addAndGet(workDone);
+    long now = ticker.read();
+    long last = lastLogNanos.get();
+    if (now - last >= LOG_INTERVAL_NANOS && lastLogNanos.compareAndSet(last, now)) {
+      log.info(describeProgress(now));
+    }
+  }
+
+  @Override
+  public void update(String message) {
+    log.debug(message);
+  }
+
+  @Override
+  public void done() {
+    endNanos = ticker.read();
+    if (message == null) {
+      return;
+    }
+    StringBuilder line =
+        new StringBuilder(message)
+            .append(String.format(" done in %.1f s", (endNanos - startNanos) / 1e9));
+    if (countingBytes) {
+      line.append(String.format(" (%s at %s/s)", formatBytes(work.get()), formatBytes(rate())));
+    }
+    log.info(line.toString());
+  }
+
+  @Override
+  public synchronized ProgressListener newChild(long allocation) {
+    CloudSdkDownloaderProgressListener child =
+        new CloudSdkDownloaderProgressListener(
+            phase, log, ticker, lastLogNanos, false, downloadsFirst && children.isEmpty());
+    children.add(child);
+    return child;
+  }
+
+  /** Returns the duration in milliseconds, up to now if the phase is not done. */
+  long getDurationMillis() {
+    if (startNanos < 0) {
+      return 0;
+    }
+    long end = endNanos < 0 ? ticker.read() : endNanos;
+    return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+  }
+
+  /** Returns the timing summary of this phase and its sub-phases, for JSON serialization. */
+  Map<String, Object> getSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("phase", phase);
+    summary.put("message", message);
+    summary.put("durationMillis", getDurationMillis());
+    summary.put("complete", endNanos >= 0);
+    if (countingBytes) {
+      summary.put("bytes", work.get());
+      summary.put("bytesPerSecond", rate());
+    }
+    if (!children.isEmpty()) {
+      summary.put(
+          "children",
+          children
+              .stream()
+              .filter(child -> child.startNanos >= 0)
+              .map(CloudSdkDownloaderProgressListener::getSummary)
+              .collect(Collectors.toList()));
+    }
+    return summary;
+  }
+
+  private long rate() {
+    long end = endNanos < 0 ? ticker.read() : endNanos;
+    long elapsed = end - startNanos;
+    return elapsed <= 0 ? 0 : (long) (work.get() * 1e9 / elapsed);
+  }
+
+  private String describeProgress(long now) {
+    StringBuilder line = new StringBuilder(message == null ? phase : message).append(": ");
+    if (totalWork > 0) {
+      line.append(String.format("%d%% ", work.get() * 100 / totalWork));
+    }
+    if (countingBytes) {
+      line.append(
+          String.format(
+              "(%s%s at %s/s)",
+              formatBytes(work.get()),
+              totalWork > 0 ? " of " + formatBytes(totalWork) : "",
+              formatBytes(rate())));
+    }
+    line.append(String.format(", %.0f s elapsed", (now - startNanos) / 1e9));
+    return line.toString();
+  }
+
+  private static String formatBytes(long bytes) {
+    if (bytes < 1024 * 1024) {
+      return String.format("%.1f KB", bytes / 1024.0);
+    }
+    return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+  }
+}
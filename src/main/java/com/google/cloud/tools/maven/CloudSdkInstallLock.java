@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Exclusive lock on a managed Cloud SDK installation, shared by every build of the machine, so that
+ * only one of them installs or updates the Cloud SDK at a time.
+ *
+ * <p>The lock is an operating system file lock, which is released when its owner exits, even if it
+ * crashes. The lock file records its last owner, for diagnostics.
+ */
+class CloudSdkInstallLock implements Closeable {
+
+  private static final long POLL_MILLIS = 200;
+
+  private final FileChannel channel;
+  private final FileLock lock;
+
+  private CloudSdkInstallLock(FileChannel channel, FileLock lock) {
+    this.channel = channel;
+    this.lock = lock;
+  }
+
+  /**
+   * Acquires the lock on {@code lockFile}, waiting for other builds to release it.
+   *
+   * @param timeoutMillis how long to wait before giving up
+   * @throws IOException if the lock could not be acquired before the timeout
+   */
+  static CloudSdkInstallLock acquire(Path lockFile, long timeoutMillis, Log log)
+      throws IOException {
+    Files.createDirectories(lockFile.getParent());
+    FileChannel channel =
+        FileChannel.open(
+            lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      boolean waiting = false;
+      while (true) {
+        FileLock lock = tryLock(channel);
+        if (lock != null) {
+          writeOwner(channel);
+          return new CloudSdkInstallLock(channel, lock);
+        }
+        if (!waiting) {
+          log.info(
+              "Waiting for another build to finish installing the Cloud SDK, locked by "
+                  + readOwner(lockFile));
+          waiting = true;
+        }
+        if (System.nanoTime() - deadline > 0) {
+          throw new IOException(
+              "Timed out after "
+                  + TimeUnit.MILLISECONDS.toSeconds(timeoutMillis)
+                  + " s waiting for the Cloud SDK installation lock "
+                  + lockFile
+                  + ", locked by "
+                  + readOwner(lockFile));
+        }
+        try {
+          Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for " + lockFile);
+        }
+      }
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException ex) {
+      // held by another class loader of this JVM
+      return null;
+    }
+  }
+
+  private static void writeOwner(FileChannel channel) throws IOException {
+    byte[] owner =
+        (ManagementFactory.getRuntimeMXBean().getName() + " since " + Instant.now())
+            .getBytes(StandardCharsets.UTF_8);
+    channel.truncate(0);
+    channel.write(ByteBuffer.wrap(owner), 0);
+    channel.force(false);
+  }
+
+  private static String readOwner(Path lockFile) {
+    try {
+      String owner = new String(Files.readAllBytes(lockFile), StandardCharsets.UTF_8).trim();
+      return owner.isEmpty() ? "an unknown build" : owner;
+    } catch (IOException ex) {
+      // some platforms do not allow reading a locked file
+      return "an unknown build";
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      lock.release();
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -16,10 +16,15 @@
 
 package com.google.cloud.tools.maven;
 
+import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
@@ -36,18 +41,73 @@ public abstract class CloudSdkMojo extends AbstractMojo {
   @Parameter(property = "cloudSdkVersion", required = false)
   private String cloudSdkVersion;
 
+  /**
+   * Optional parameter to install the Cloud SDK from a local archive instead of downloading it,
+   * when {@code cloudSdkHome} is not configured. Either a Cloud SDK archive (.tar.gz or .zip) with
+   * the app-engine-java component installed, or a directory of such archives named like the Cloud
+   * SDK releases, for example google-cloud-sdk-192.0.0-linux-x86_64.tar.gz, in which case {@code
+   * cloudSdkVersion} must be configured.
+   */
+  @Parameter(property = "cloudSdkArchive", required = false)
+  private File cloudSdkArchive;
+
+  /**
+   * Optional parameter to configure the SHA-256 checksum of the Cloud SDK archive. When not
+   * configured, it is read from a file named like the archive with a ".sha256" suffix.
+   */
+  @Parameter(property = "cloudSdkArchiveChecksum", required = false)
+  private String cloudSdkArchiveChecksum;
+
+  /**
+   * Optional parameter to configure how many hours a managed Cloud SDK found up to date is not
+   * checked for updates again. Set to 0 to check on every build.
+   */
+  @Parameter(property = "cloudSdkUpdateCheckInterval", defaultValue = "24", required = false)
+  private int cloudSdkUpdateCheckInterval;
+
+  /** Check the managed Cloud SDK for updates even if it was checked recently. */
+  @Parameter(property = "cloudSdkForceUpdateCheck", defaultValue = "false", required = false)
+  private boolean cloudSdkForceUpdateCheck;
+
   /** Optional parameter to configure the key file used for gcloud authentication */
   @Parameter(property = "serviceAccountKeyFile", required = false)
   private File serviceAccountKeyFile;
 
+  /**
+   * Directory to write a JSON report of the time spent in each phase of a goal to, in a file named
+   * after the goal.
+   */
+  @Parameter(
+    property = "timingReportDirectory",
+    defaultValue = "${project.build.directory}/appengine-timings",
+    required = false
+  )
+  private File timingReportDirectory;
+
+  /**
+   * Optional file to append the phases of every goal to, as OpenTelemetry spans in the OTLP/JSON
+   * format read by the OpenTelemetry collector file receiver.
+   */
+  @Parameter(property = "timingSpansFile", required = false)
+  private File timingSpansFile;
+
+  @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+  private MojoExecution mojoExecution;
+
   @Parameter(defaultValue = "${plugin}", readonly = true)
   private PluginDescriptor pluginDescriptor;
 
   @Parameter(defaultValue = "${project}", readonly = true)
   private MavenProject mavenProject;
 
+  @Parameter(defaultValue = "${session}", readonly = true)
+  private MavenSession session;
+
   private CloudSdkAppEngineFactory factory = new CloudSdkAppEngineFactory(this);
 
+  // report of the goal being executed, if timed
+  private volatile TimingReport timingReport;
+
   public String getArtifactId() {
     return pluginDescriptor.getArtifactId();
   }
@@ -64,6 +124,22 @@ public abstract class CloudSdkMojo extends AbstractMojo {
     return cloudSdkVersion;
   }
 
+  public Path getCloudSdkArchive() {
+    return cloudSdkArchive != null ? cloudSdkArchive.toPath() : null;
+  }
+
+  public String getCloudSdkArchiveChecksum() {
+    return cloudSdkArchiveChecksum;
+  }
+
+  public int getCloudSdkUpdateCheckInterval() {
+    return cloudSdkUpdateCheckInterval;
+  }
+
+  public boolean isCloudSdkForceUpdateCheck() {
+    return cloudSdkForceUpdateCheck;
+  }
+
   public File getServiceAccountKeyFile() {
     return serviceAccountKeyFile;
   }
@@ -111,4 +187,70 @@ public abstract class CloudSdkMojo extends AbstractMojo {
   protected MavenProject getMavenProject() {
     return mavenProject;
   }
+
+  protected MavenSession getSession() {
+    return session;
+  }
+
+  @VisibleForTesting
+  void setTimingReportDirectory(File timingReportDirectory) {
+    this.timingReportDirectory = timingReportDirectory;
+  }
+
+  @VisibleForTesting
+  void setTimingSpansFile(File timingSpansFile) {
+    this.timingSpansFile = timingSpansFile;
+  }
+
+  /**
+   * Starts a span of the timing report of the goal being executed, to be closed when the phase
+   * ends, or returns null if the goal is not timed.
+   */
+  public TimingReport.Span startSpan(String name) {
+    TimingReport report = timingReport;
+    return report == null ? null : report.start(name);
+  }
+
+  /** Executes {@code goal}, then writes the report of the time spent in its phases. */
+  protected void executeTimed(Goal goal) throws MojoExecutionException {
+    TimingReport report = new TimingReport(getGoalName());
+    timingReport = report;
+    try {
+      goal.execute();
+    } catch (MojoExecutionException | RuntimeException ex) {
+      report.getRoot().setError(ex);
+      throw ex;
+    } finally {
+      report.getRoot().close();
+      timingReport = null;
+      writeTimingReport(report);
+      ProcessStartupMetrics.getInstance().logTotal(getLog());
+    }
+  }
+
+  private void writeTimingReport(TimingReport report) {
+    try {
+      if (timingReportDirectory != null) {
+        Path reportFile = timingReportDirectory.toPath().resolve(getGoalName() + ".json");
+        report.write(reportFile);
+        getLog().debug("Timing report written to " + reportFile);
+      }
+      if (timingSpansFile != null) {
+        report.appendOpenTelemetrySpans(
+            timingSpansFile.toPath(),
+            mavenProject != null ? mavenProject.getArtifactId() : "appengine-maven-plugin");
+      }
+    } catch (IOException ex) {
+      getLog().warn("Failed to write the timing report: " + ex.getMessage());
+    }
+  }
+
+  private String getGoalName() {
+    return mojoExecution != null ? mojoExecution.getGoal() : getClass().getSimpleName();
+  }
+
+  /** The body of a goal timed by {@link #executeTimed}. */
+  protected interface Goal {
+    void execute() throws MojoExecutionException;
+  }
 }
@@ -21,6 +21,7 @@ import com.google.cloud.tools.managedcloudsdk.ManagedCloudSdk;
 import com.google.cloud.tools.managedcloudsdk.UnsupportedOsException;
 import com.google.cloud.tools.managedcloudsdk.Version;
 import com.google.common.base.Strings;
+import java.nio.file.Path;
 
 public class CloudSdkOperationsFactory {
   /** Build a new ManagedCloudSdk from a given version */
@@ -42,6 +43,19 @@ public class CloudSdkOperationsFactory {
     }
   }
 
+  /**
+   * Build a new CloudSdkDownloader that installs the Cloud SDK from a local archive or mirror
+   * directory instead of downloading it
+   */
+  public CloudSdkDownloader newDownloader(String version, Path archive, String checksum) {
+    try {
+      return new CloudSdkDownloader(
+          newManagedSdk(version), new CloudSdkArchiveInstaller(archive, checksum, version));
+    } catch (UnsupportedOsException | BadCloudSdkVersionException ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
   /** Build a new CloudSdkChecker */
   public CloudSdkChecker newChecker(String version) {
     return new CloudSdkChecker(version);
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.appengine.cloudsdk.CloudSdk;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Resolved and validated Cloud SDKs, keyed by the Cloud SDK configuration of the mojos, so that the
+ * mojos of a build only install, update and check each Cloud SDK once.
+ */
+class CloudSdkRegistry {
+
+  private static final Map<MavenSession, CloudSdkRegistry> registries = new WeakHashMap<>();
+
+  private final ConcurrentMap<List<Object>, FutureTask<CloudSdk>> cloudSdks =
+      new ConcurrentHashMap<>();
+
+  /** Returns the registry shared by every mojo of {@code session}. */
+  static synchronized CloudSdkRegistry forSession(MavenSession session) {
+    CloudSdkRegistry registry = registries.get(session);
+    if (registry == null) {
+      registry = new CloudSdkRegistry();
+      registries.put(session, registry);
+    }
+    return registry;
+  }
+
+  /**
+   * Returns the key of the Cloud SDK configured for {@code mojo}: every setting that changes how
+   * the Cloud SDK is installed, updated or validated.
+   */
+  static List<Object> key(CloudSdkMojo mojo) {
+    return Arrays.<Object>asList(
+        mojo.getCloudSdkHome(),
+        mojo.getCloudSdkVersion(),
+        mojo.getCloudSdkArchive(),
+        mojo.getCloudSdkArchiveChecksum(),
+        mojo.getCloudSdkUpdateCheckInterval(),
+        mojo.isCloudSdkForceUpdateCheck());
+  }
+
+  /**
+   * Returns the Cloud SDK with {@code key}, calling {@code resolver} if it was not resolved yet.
+   * Concurrent callers wait for a single resolution. A failed resolution is not kept, so the next
+   * caller tries again.
+   *
+   * @param key the Cloud SDK configuration, see {@link #key}
+   * @param resolver installs, updates or validates the Cloud SDK as configured
+   */
+  CloudSdk resolve(List<Object> key, Callable<CloudSdk> resolver)
+      throws ExecutionException, InterruptedException {
+    FutureTask<CloudSdk> task = cloudSdks.computeIfAbsent(key, k -> new FutureTask<>(resolver));
+    // a no-op if the Cloud SDK was already resolved or is being resolved by another mojo
+    task.run();
+    try {
+      return task.get();
+    } catch (ExecutionException ex) {
+      cloudSdks.remove(key, task);
+      throw ex;
+    }
+  }
+
+  /**
+   * Starts resolving the Cloud SDK with {@code key} on a daemon thread, unless it was already
+   * resolved or is being resolved. A failure is thrown by the next call to {@link #resolve}.
+   */
+  void resolveInBackground(List<Object> key, Callable<CloudSdk> resolver) {
+    FutureTask<CloudSdk> task = cloudSdks.computeIfAbsent(key, k -> new FutureTask<>(resolver));
+    if (!task.isDone()) {
+      Thread thread = new Thread(task, "cloud-sdk-warm-up");
+      // never keeps Maven from exiting after a build that did not need the Cloud SDK after all
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A copy of the datastore and storage files of a stopped Dev App Server, saved once test fixtures
+ * are seeded and restored before the server starts instead of seeding them again.
+ *
+ * <p>A snapshot is a directory with an entry per saved path, like "datastore" or "storage". Files
+ * are restored only when their size or modification time differs from the snapshot, through a
+ * temporary file renamed over the restored one, so restoring the files of a server whose tests only
+ * read them copies nothing. Snapshot files are never linked to restored files, which the server
+ * writes in place.
+ */
+public class DatastoreSnapshot {
+
+  /** Entry of the file the datastore is saved to. */
+  public static final String DATASTORE = "datastore";
+  /** Entry of the directory of the data of the application. */
+  public static final String STORAGE = "storage";
+
+  private static final String TEMPORARY_PREFIX = ".snapshot-";
+
+  private final Path directory;
+
+  public DatastoreSnapshot(Path directory) {
+    this.directory = directory;
+  }
+
+  /** Returns the directory of the snapshot {@code name} of a project with a build directory. */
+  public static Path getDirectory(Path buildDirectory, String name) {
+    return buildDirectory.resolve("dev-appserver-out").resolve("snapshots").resolve(name);
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the paths a Dev App Server stores its data to, by snapshot entry. Dev App Server 1
+   * ignores {@code datastorePath} and {@code storagePath}, and saves its datastore to
+   * WEB-INF/appengine-generated/local_db.bin in the first service.
+   */
+  public static Map<String, Path> getPaths(
+      SupportedDevServerVersion version,
+      List<File> services,
+      File datastorePath,
+      File storagePath) {
+    Map<String, Path> paths = new LinkedHashMap<>();
+    if (version == SupportedDevServerVersion.V1) {
+      paths.put(
+          DATASTORE,
+          services
+              .get(0)
+              .toPath()
+              .resolve("WEB-INF")
+              .resolve("appengine-generated")
+              .resolve("local_db.bin"));
+    } else {
+      if (datastorePath != null) {
+        paths.put(DATASTORE, datastorePath.toPath());
+      }
+      if (storagePath != null) {
+        paths.put(STORAGE, storagePath.toPath());
+      }
+    }
+    return paths;
+  }
+
+  public boolean exists() {
+    return Files.isDirectory(directory);
+  }
+
+  /**
+   * Replaces the snapshot with a copy of {@code paths}. The previous snapshot is kept until the new
+   * one is complete. A path that does not exist is saved as an absent entry.
+   *
+   * @return the number of files saved
+   */
+  public int save(Map<String, Path> paths) throws IOException {
+    Path temporary = directory.resolveSibling(TEMPORARY_PREFIX + directory.getFileName());
+    FileUtils.deleteDirectory(temporary.toFile());
+    Files.createDirectories(temporary);
+    int saved = 0;
+    for (Map.Entry<String, Path> path : paths.entrySet()) {
+      if (Files.exists(path.getValue())) {
+        saved += mirror(path.getValue(), temporary.resolve(path.getKey()));
+      }
+    }
+    FileUtils.deleteDirectory(directory.toFile());
+    StagingCopier.move(temporary, directory);
+    return saved;
+  }
+
+  /**
+   * Makes {@code paths} identical to the snapshot: copies the files that differ, and deletes the
+   * files and entries that the snapshot does not have.
+   *
+   * @return the number of files copied or deleted
+   * @throws IOException if the snapshot does not exist
+   */
+  public int restore(Map<String, Path> paths) throws IOException {
+    if (!exists()) {
+      throw new IOException("Datastore snapshot not found: " + directory);
+    }
+    int restored = 0;
+    for (Map.Entry<String, Path> path : paths.entrySet()) {
+      Path source = directory.resolve(path.getKey());
+      Path target = path.getValue();
+      if (Files.exists(source)) {
+        restored += mirror(source, target);
+      } else if (Files.exists(target)) {
+        restored += delete(target);
+      }
+    }
+    return restored;
+  }
+
+  /**
+   * Restores the snapshot into {@code paths} like {@link #restore(Map)}, and logs the number of
+   * files restored and the time it took.
+   */
+  public void restore(Map<String, Path> paths, Log log) throws MojoExecutionException {
+    long start = System.nanoTime();
+    try {
+      int restored = restore(paths);
+      log.info(
+          String.format(
+              "Restored %d files of %s from snapshot '%s' in %d ms",
+              restored,
+              paths.values(),
+              directory.getFileName(),
+              (System.nanoTime() - start) / 1000000));
+    } catch (IOException ex) {
+      throw new MojoExecutionException(
+          "Failed to restore datastore snapshot " + directory.getFileName(), ex);
+    }
+  }
+
+  /**
+   * Makes {@code target} a copy of the file or directory {@code source}, copying only the files
+   * that differ.
+   *
+   * @return the number of files copied or deleted
+   */
+  private static int mirror(Path source, Path target) throws IOException {
+    if (!Files.isDirectory(source)) {
+      if (Files.isDirectory(target)) {
+        FileUtils.deleteDirectory(target.toFile());
+      }
+      return StagingCopier.copyIfChanged(source, target) ? 1 : 0;
+    }
+    if (Files.isRegularFile(target)) {
+      Files.delete(target);
+    }
+    int[] changed = {0};
+    Files.walkFileTree(
+        source,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Path destination = target.resolve(source.relativize(file).toString());
+            if (StagingCopier.copyIfChanged(file, destination)) {
+              changed[0]++;
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    // then the files that source does not have, like files created since a snapshot
+    List<Path> extra = new ArrayList<>();
+    Files.walkFileTree(
+        target,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (!Files.exists(source.resolve(target.relativize(dir).toString()))) {
+              extra.add(dir);
+              return FileVisitResult.SKIP_SUBTREE;
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (!Files.exists(source.resolve(target.relativize(file).toString()))) {
+              extra.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    for (Path path : extra) {
+      changed[0] += delete(path);
+    }
+    return changed[0];
+  }
+
+  private static int delete(Path path) throws IOException {
+    if (Files.isDirectory(path)) {
+      FileUtils.deleteDirectory(path.toFile());
+    } else {
+      Files.delete(path);
+    }
+    return 1;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandlerException;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Default output listener that copies output to the Maven Mojo logger with a 'GCLOUD: ' prefix.
+ *
+ * <p>Lines are queued in a bounded ring buffer and written in batches by a dedicated thread, so
+ * that a slow console does not block the thread reading the process output, and with it the
+ * process. A line arriving while the buffer is full overwrites the oldest queued line, so the most
+ * recent output, which usually explains a failure, is always written; the number of lines dropped
+ * is logged in their place.
+ */
+class DefaultProcessOutputLineListener implements ProcessOutputLineListener {
+
+  private static final String PREFIX = "GCLOUD: ";
+  private static final int DEFAULT_CAPACITY = 8192;
+  private static final int BATCH_SIZE = 256;
+  private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  private final Log log;
+  private final String[] buffer;
+  private final AtomicLong droppedLines = new AtomicLong();
+
+  // guarded by this
+  private int head;
+  private int size;
+  private long droppedSinceLastBatch;
+  private int maxQueueDepth;
+  private boolean writing;
+  private boolean closed;
+  private Thread writer;
+
+  DefaultProcessOutputLineListener(Log log) {
+    this(log, DEFAULT_CAPACITY);
+  }
+
+  @VisibleForTesting
+  DefaultProcessOutputLineListener(Log log, int capacity) {
+    this.log = log;
+    this.buffer = new String[capacity];
+  }
+
+  @Override
+  public void onOutputLine(String line) {
+    synchronized (this) {
+      if (!closed) {
+        if (size == buffer.length) {
+          buffer[head] = line;
+          head = (head + 1) % buffer.length;
+          droppedSinceLastBatch++;
+          droppedLines.incrementAndGet();
+        } else {
+          buffer[(head + size) % buffer.length] = line;
+          size++;
+        }
+        maxQueueDepth = Math.max(maxQueueDepth, size);
+        if (writer == null) {
+          writer = new Thread(this::writeLines, "cloud-sdk-output-log");
+          writer.setDaemon(true);
+          writer.start();
+        }
+        notifyAll();
+        return;
+      }
+    }
+    // output of a process outliving its handler
+    log.info(PREFIX + line);
+  }
+
+  /** Returns a handler that writes every queued line once {@code handler} returns. */
+  ProcessHandler wrap(ProcessHandler handler) {
+    return new ProcessHandler() {
+      @Override
+      public void handleProcess(Process process) throws ProcessHandlerException {
+        try {
+          handler.handleProcess(process);
+        } finally {
+          close();
+        }
+      }
+    };
+  }
+
+  /**
+   * Waits for the queued lines to be written, up to a timeout, stops the writer thread and logs the
+   * number of lines dropped in total, if any, and the deepest the queue got. Lines received
+   * afterwards are written synchronously.
+   */
+  void close() {
+    Thread writerToJoin;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      notifyAll();
+      writerToJoin = writer;
+    }
+    if (writerToJoin != null) {
+      try {
+        writerToJoin.join(CLOSE_TIMEOUT_MILLIS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    long dropped = droppedLines.get();
+    if (dropped > 0) {
+      log.warn(dropped + " lines of Cloud SDK output were dropped in total");
+    }
+    log.debug(
+        "Cloud SDK output buffer: at most "
+            + getMaxQueueDepth()
+            + " of "
+            + buffer.length
+            + " lines queued, "
+            + dropped
+            + " lines dropped");
+  }
+
+  /** Records the output queue statistics as attributes of {@code span}. */
+  void publishTo(TimingReport.Span span) {
+    span.setAttribute("output.max-queue-depth", Integer.toString(getMaxQueueDepth()));
+    span.setAttribute("output.dropped-lines", Long.toString(getDroppedLines()));
+  }
+
+  /** Returns the number of lines waiting to be written. */
+  synchronized int getQueueDepth() {
+    return size + (writing ? 1 : 0);
+  }
+
+  /** Returns the largest number of lines that were queued in the buffer at once. */
+  synchronized int getMaxQueueDepth() {
+    return maxQueueDepth;
+  }
+
+  /** Returns the number of lines dropped because the buffer was full. */
+  long getDroppedLines() {
+    return droppedLines.get();
+  }
+
+  private void writeLines() {
+    List<String> batch = new ArrayList<>(BATCH_SIZE);
+    while (true) {
+      long dropped;
+      synchronized (this) {
+        writing = false;
+        while (size == 0 && droppedSinceLastBatch == 0 && !closed) {
+          try {
+            wait();
+          } catch (InterruptedException ex) {
+            return;
+          }
+        }
+        if (size == 0 && droppedSinceLastBatch == 0) {
+          return;
+        }
+        int count = Math.min(size, BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+          batch.add(buffer[head]);
+          buffer[head] = null;
+          head = (head + 1) % buffer.length;
+        }
+        size -= count;
+        dropped = droppedSinceLastBatch;
+        droppedSinceLastBatch = 0;
+        writing = true;
+      }
+      // the dropped lines came before the ones left in the buffer
+      if (dropped > 0) {
+        log.warn(
+            PREFIX
+                + dropped
+                + " lines of output dropped, the console could not keep up with the process");
+      }
+      for (String line : batch) {
+        log.info(PREFIX + line);
+      }
+      batch.clear();
+    }
+  }
+}
@@ -30,6 +30,6 @@ public class DeployAllMojo extends AbstractDeployMojo {
 
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
-    AppEngineDeployer.Factory.newDeployer(this).deployAll();
+    executeTimed(() -> AppEngineDeployer.Factory.newDeployer(this).deployAll());
   }
 }
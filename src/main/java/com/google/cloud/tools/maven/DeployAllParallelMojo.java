@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.util.List;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Stage and deploy the application and all configs of every App Engine module in the reactor. Each
+ * module is staged in the background as soon as the goal runs for it, and the services are deployed
+ * concurrently once the goal has run for every module of the reactor that runs it, whether it is
+ * given on the command line or bound to a phase.
+ */
+@Mojo(name = "deployAllParallel", defaultPhase = LifecyclePhase.DEPLOY, threadSafe = true)
+public class DeployAllParallelMojo extends AbstractDeployMojo {
+
+  private static final String PLUGIN_KEY = "com.google.cloud.tools:appengine-maven-plugin";
+  private static final String GOAL_PREFIX = "appengine";
+  private static final String GOAL = "deployAllParallel";
+
+  /** The maximum number of modules staged at the same time. */
+  @Parameter(
+    defaultValue = "4",
+    alias = "deploy.stagingThreads",
+    property = "app.deploy.stagingThreads"
+  )
+  private int stagingThreads;
+
+  /** The maximum number of services deployed at the same time. */
+  @Parameter(
+    defaultValue = "3",
+    alias = "deploy.maxConcurrentDeployments",
+    property = "app.deploy.maxConcurrentDeployments"
+  )
+  private int maxConcurrentDeployments;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (stagingThreads < 1 || maxConcurrentDeployments < 1) {
+      throw new MojoExecutionException(
+          "stagingThreads and maxConcurrentDeployments must be at least 1");
+    }
+    ReactorDeployment deployment =
+        ReactorDeployment.forSession(
+            getSession(), PLUGIN_KEY, GOAL_PREFIX, GOAL, stagingThreads, maxConcurrentDeployments);
+
+    MavenProject project = getMavenProject();
+    if ("war".equals(getPackaging()) || "jar".equals(getPackaging())) {
+      getLog().info("deployAllParallel: Staging " + project.getArtifactId() + " in background");
+      deployment.add(project.getArtifactId(), AppEngineDeployer.Factory.newDeployer(this));
+    } else {
+      getLog().info("deployAllParallel: Skipping " + project.getArtifactId());
+    }
+
+    if (!deployment.complete(project.getId())) {
+      return;
+    }
+    ReactorDeployment.remove(getSession());
+    List<ReactorDeployment.Result> results;
+    try {
+      results = deployment.deploy();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException("Interrupted while deploying", ex);
+    }
+    ReactorDeployment.report(results, getLog());
+    for (ReactorDeployment.Result result : results) {
+      if (!result.isSuccess()) {
+        throw new MojoExecutionException(
+            "Failed to deploy " + result.getService(), result.getFailure());
+      }
+    }
+  }
+}
@@ -26,6 +26,6 @@ public class DeployMojo extends AbstractDeployMojo {
 
   @Override
   public void execute() throws MojoExecutionException {
-    AppEngineDeployer.Factory.newDeployer(this).deploy();
+    executeTimed(() -> AppEngineDeployer.Factory.newDeployer(this).deploy());
   }
 }
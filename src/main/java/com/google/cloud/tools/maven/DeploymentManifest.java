@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Record of the SHA-1 digest of every file of the last successful deployment of a service, used to
+ * report which files a new deployment changes.
+ *
+ * <p>SHA-1 is the digest gcloud uses to decide which files it has to upload, so the files reported
+ * as changed are the ones gcloud will upload unless they were already uploaded by another
+ * deployment.
+ */
+class DeploymentManifest {
+
+  private static final String OPTIONS = "sha1";
+  private static final Pattern SERVICE = Pattern.compile("^(?:service|module)\\s*:\\s*(\\S+)");
+
+  private final Path manifestFile;
+  private final StagingManifest previous;
+  private final StagingManifest current;
+
+  private DeploymentManifest(Path manifestFile, StagingManifest previous, StagingManifest current) {
+    this.manifestFile = manifestFile;
+    this.previous = previous;
+    this.current = current;
+  }
+
+  /**
+   * Scans the files to deploy and loads the manifest of the last successful deployment of the same
+   * project and service.
+   *
+   * @param manifestDirectory the directory holding the manifests of every project
+   * @param project the project to deploy to, or null if it is read from the gcloud configuration
+   * @param service the service to deploy
+   * @param deployDirectory the directory of files to deploy
+   */
+  static DeploymentManifest scan(
+      Path manifestDirectory, String project, String service, Path deployDirectory)
+      throws IOException {
+    Path manifestFile =
+        manifestDirectory
+            .resolve(project == null ? "gcloud-config" : project)
+            .resolve(service + ".sha1");
+    StagingManifest previous = StagingManifest.load(manifestFile);
+    if (previous != null && !OPTIONS.equals(previous.getOptions())) {
+      previous = null;
+    }
+    StagingManifest current =
+        StagingManifest.scan(deployDirectory, OPTIONS, previous, Hashing.sha1());
+    return new DeploymentManifest(manifestFile, previous, current);
+  }
+
+  /**
+   * Compares the files to deploy of {@code deployMojo} with the manifest of the last successful
+   * deployment of the service and logs the changes.
+   *
+   * @return the manifest to {@link #record} once the deployment succeeds, or null if manifests are
+   *     disabled
+   */
+  static DeploymentManifest scan(AbstractDeployMojo deployMojo) throws MojoExecutionException {
+    if (deployMojo.getManifestDirectory() == null) {
+      return null;
+    }
+    Path appYaml = deployMojo.getStagingDirectory().toPath().resolve("app.yaml");
+    if (!Files.exists(appYaml) && deployMojo.getAppEngineDirectory() != null) {
+      appYaml = deployMojo.getAppEngineDirectory().toPath().resolve("app.yaml");
+    }
+    Log log = deployMojo.getLog();
+    try {
+      String service = readService(appYaml);
+      DeploymentManifest manifest =
+          scan(
+              deployMojo.getManifestDirectory().toPath(),
+              deployMojo.getProject(),
+              service,
+              deployMojo.getStagingDirectory().toPath());
+      log.info("Deploying service " + service + ": " + manifest.describe());
+      if (manifest.hasPrevious() && log.isDebugEnabled()) {
+        for (String path : manifest.getChanged()) {
+          log.debug("Changed: " + path);
+        }
+        for (String path : manifest.getRemoved()) {
+          log.debug("Removed: " + path);
+        }
+      }
+      return manifest;
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to compare deployment with the last one", ex);
+    }
+  }
+
+  /**
+   * Returns the service configured in {@code appYaml}, or "default" if there is no app.yaml or it
+   * does not configure a service.
+   */
+  static String readService(Path appYaml) throws IOException {
+    if (!Files.isRegularFile(appYaml)) {
+      return "default";
+    }
+    for (String line : Files.readAllLines(appYaml, StandardCharsets.UTF_8)) {
+      Matcher matcher = SERVICE.matcher(line);
+      if (matcher.find()) {
+        return matcher.group(1).replaceAll("^[\"']|[\"']$", "");
+      }
+    }
+    return "default";
+  }
+
+  /** Returns whether a manifest was recorded for a previous deployment. */
+  boolean hasPrevious() {
+    return previous != null;
+  }
+
+  /** Returns the files that were added or changed since the previous deployment. */
+  SortedSet<String> getChanged() {
+    return previous == null
+        ? Collections.unmodifiableSortedSet(new TreeSet<>(current.getEntries().keySet()))
+        : current.getChangedSince(previous);
+  }
+
+  /** Returns the files that were removed since the previous deployment. */
+  SortedSet<String> getRemoved() {
+    return previous == null
+        ? Collections.<String>emptySortedSet()
+        : current.getRemovedSince(previous);
+  }
+
+  /** Returns the total size in bytes of the files that changed since the previous deployment. */
+  long getChangedSize() {
+    long size = 0;
+    for (String path : getChanged()) {
+      size += current.getEntries().get(path).getSize();
+    }
+    return size;
+  }
+
+  /** Returns the total size in bytes of the files to deploy. */
+  long getTotalSize() {
+    long size = 0;
+    for (StagingManifest.Entry entry : current.getEntries().values()) {
+      size += entry.getSize();
+    }
+    return size;
+  }
+
+  /** Returns a one-line summary of the changes since the previous deployment. */
+  String describe() {
+    if (previous == null) {
+      return String.format(
+          "no previous deployment recorded, %d files (%s) to deploy",
+          current.getEntries().size(), formatSize(getTotalSize()));
+    }
+    return String.format(
+        "%d of %d files changed (%s of %s), %d removed since the last deployment",
+        getChanged().size(),
+        current.getEntries().size(),
+        formatSize(getChangedSize()),
+        formatSize(getTotalSize()),
+        getRemoved().size());
+  }
+
+  /** Records the scanned files as the last successful deployment. */
+  void save() throws IOException {
+    current.save(manifestFile);
+  }
+
+  /** Records the scanned files as the last successful deployment of the service. */
+  void record() throws MojoExecutionException {
+    try {
+      save();
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to record deployment manifest", ex);
+    }
+  }
+
+  @VisibleForTesting
+  Path getManifestFile() {
+    return manifestFile;
+  }
+
+  private static String formatSize(long bytes) {
+    if (bytes < 1024 * 1024) {
+      return String.format("%.1f KB", bytes / 1024.0);
+    }
+    return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the content of a directory to a jar that only depends on the paths and content of its
+ * files: entries are sorted, and have a fixed timestamp and no extra fields. Entries are compressed
+ * in parallel, a bounded number ahead of the one being written, and written in order.
+ */
+public class DeterministicJarWriter {
+
+  // 1980-01-01 00:00:00, the earliest MS-DOS date
+  private static final int DOS_TIME = 0;
+  private static final int DOS_DATE = (1 << 5) | 1;
+
+  private static final int VERSION = 20;
+  private static final int ZIP64_VERSION = 45;
+  private static final int UTF8_FLAG = 1 << 11;
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+  private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+  private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+
+  private final int compressionLevel;
+  private final int window;
+
+  public DeterministicJarWriter() {
+    this(Deflater.DEFAULT_COMPRESSION, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param compressionLevel the {@link Deflater} compression level
+   * @param window how many entries may be compressed ahead of the one being written
+   */
+  DeterministicJarWriter(int compressionLevel, int window) {
+    this.compressionLevel = compressionLevel;
+    this.window = window;
+  }
+
+  /** Writes every directory and regular file under {@code root} to {@code jar}. */
+  public void write(Path root, Path jar) throws IOException {
+    SortedMap<String, Path> entries = new TreeMap<>();
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (!dir.equals(root)) {
+              entries.put(StagingManifest.relativize(root, dir) + "/", dir);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) {
+              entries.put(StagingManifest.relativize(root, file), file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    write(entries, jar);
+  }
+
+  /** Writes {@code entries}, names ending with '/' being directories, to {@code jar}. */
+  public void write(SortedMap<String, Path> entries, Path jar) throws IOException {
+    ExecutorService pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    try (CountingOutputStream output =
+        new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(jar)))) {
+      List<Entry> written = new ArrayList<>();
+      Deque<Future<Entry>> pending = new ArrayDeque<>();
+      Iterator<Map.Entry<String, Path>> remaining = entries.entrySet().iterator();
+      while (remaining.hasNext() || !pending.isEmpty()) {
+        while (remaining.hasNext() && pending.size() < window) {
+          Map.Entry<String, Path> next = remaining.next();
+          pending.add(pool.submit(() -> compress(next.getKey(), next.getValue())));
+        }
+        Entry entry = await(pending.removeFirst());
+        entry.offset = output.getCount();
+        entry.compressedSize = entry.data.length;
+        writeLocalHeader(output, entry);
+        output.write(entry.data);
+        // only the metadata is needed from now on
+        entry.data = null;
+        written.add(entry);
+      }
+      writeCentralDirectory(output, written);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private Entry compress(String name, Path file) throws IOException {
+    Entry entry = new Entry(name);
+    if (name.endsWith("/")) {
+      entry.method = STORED;
+      entry.data = new byte[0];
+      return entry;
+    }
+
+    byte[] content = Files.readAllBytes(file);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    entry.crc = crc.getValue();
+    entry.size = content.length;
+
+    Deflater deflater = new Deflater(compressionLevel, true);
+    try {
+      deflater.setInput(content);
+      deflater.finish();
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        compressed.write(buffer, 0, deflater.deflate(buffer));
+      }
+      if (compressed.size() < content.length) {
+        entry.method = DEFLATED;
+        entry.data = compressed.toByteArray();
+      } else {
+        entry.method = STORED;
+        entry.data = content;
+      }
+    } finally {
+      deflater.end();
+    }
+    return entry;
+  }
+
+  private static Entry await(Future<Entry> entry) throws IOException {
+    try {
+      return entry.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing jar", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException("Failed to compress jar entry", ex.getCause());
+    }
+  }
+
+  private static void writeLocalHeader(OutputStream output, Entry entry) throws IOException {
+    ByteBuffer header = buffer(30 + entry.name.length);
+    header.putInt(LOCAL_HEADER);
+    header.putShort((short) VERSION);
+    header.putShort((short) UTF8_FLAG);
+    header.putShort((short) entry.method);
+    header.putShort((short) DOS_TIME);
+    header.putShort((short) DOS_DATE);
+    header.putInt((int) entry.crc);
+    header.putInt((int) entry.compressedSize);
+    header.putInt((int) entry.size);
+    header.putShort((short) entry.name.length);
+    header.putShort((short) 0); // extra field length
+    header.put(entry.name);
+    output.write(header.array());
+  }
+
+  private static void writeCentralDirectory(CountingOutputStream output, List<Entry> entries)
+      throws IOException {
+    long start = output.getCount();
+    if (start > 0xFFFFFFFFL) {
+      throw new IOException("Jars larger than 4 GB are not supported");
+    }
+    for (Entry entry : entries) {
+      ByteBuffer header = buffer(46 + entry.name.length);
+      header.putInt(CENTRAL_DIRECTORY_HEADER);
+      header.putShort((short) VERSION);
+      header.putShort((short) VERSION);
+      header.putShort((short) UTF8_FLAG);
+      header.putShort((short) entry.method);
+      header.putShort((short) DOS_TIME);
+      header.putShort((short) DOS_DATE);
+      header.putInt((int) entry.crc);
+      header.putInt((int) entry.compressedSize);
+      header.putInt((int) entry.size);
+      header.putShort((short) entry.name.length);
+      header.putShort((short) 0); // extra field length
+      header.putShort((short) 0); // comment length
+      header.putShort((short) 0); // disk number
+      header.putShort((short) 0); // internal attributes
+      header.putInt(0); // external attributes
+      header.putInt((int) entry.offset);
+      header.put(entry.name);
+      output.write(header.array());
+    }
+    long end = output.getCount();
+
+    int count = entries.size();
+    if (count > 0xFFFF) {
+      ByteBuffer zip64 = buffer(56 + 20);
+      zip64.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY);
+      zip64.putLong(44);
+      zip64.putShort((short) ZIP64_VERSION);
+      zip64.putShort((short) ZIP64_VERSION);
+      zip64.putInt(0);
+      zip64.putInt(0);
+      zip64.putLong(count);
+      zip64.putLong(count);
+      zip64.putLong(end - start);
+      zip64.putLong(start);
+      zip64.putInt(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR);
+      zip64.putInt(0);
+      zip64.putLong(end);
+      zip64.putInt(1);
+      output.write(zip64.array());
+    }
+
+    ByteBuffer trailer = buffer(22);
+    trailer.putInt(END_OF_CENTRAL_DIRECTORY);
+    trailer.putShort((short) 0);
+    trailer.putShort((short) 0);
+    trailer.putShort((short) Math.min(count, 0xFFFF));
+    trailer.putShort((short) Math.min(count, 0xFFFF));
+    trailer.putInt((int) (end - start));
+    trailer.putInt((int) start);
+    trailer.putShort((short) 0);
+    output.write(trailer.array());
+  }
+
+  private static ByteBuffer buffer(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static class Entry {
+
+    private final byte[] name;
+    private int method;
+    private long crc;
+    private long size;
+    private long compressedSize;
+    private long offset;
+    private byte[] data;
+
+    Entry(String name) {
+      this.name = name.getBytes(StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.common.base.Utf8;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Writes the output of the Dev App Server to a log file through a buffer flushed every second,
+ * rotating the file when it grows too large or too old.
+ *
+ * <p>Rotated segments are named after the log file with a sequence number appended, the newest
+ * segment having the highest number, and are optionally gzipped. Only the most recent segments are
+ * kept. Segments of a previous run are deleted when the log file is opened.
+ *
+ * <p>Writers are opened with {@link #open} and closed by {@link #close(Path)} when the server is
+ * stopped, or when the JVM exits, together with the listener copying the output of the server to
+ * the console.
+ */
+public class DevServerLogWriter implements ProcessOutputLineListener, Closeable {
+
+  private static final long FLUSH_INTERVAL_MILLIS = 1000;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long CLOSE_TIMEOUT_SECONDS = 30;
+  private static final String GZIP_SUFFIX = ".gz";
+
+  // writers open in this JVM, by log file
+  private static final ConcurrentMap<Path, DevServerLogWriter> OPEN = new ConcurrentHashMap<>();
+
+  private final Path logFile;
+  private final Rotation rotation;
+  private final Log log;
+  private final ScheduledExecutorService executor;
+  private final Thread shutdownHook;
+
+  // guarded by this
+  private Writer writer;
+  private long segmentBytes;
+  private long segmentStartMillis;
+  private int lastSegment;
+  private boolean rotationFailureLogged;
+  private boolean closed;
+  private DefaultProcessOutputLineListener consoleListener;
+
+  DevServerLogWriter(Path logFile, Rotation rotation, Log log) throws IOException {
+    this.logFile = logFile;
+    this.rotation = rotation;
+    this.log = log;
+    Files.createDirectories(logFile.getParent());
+    deleteSegments();
+    openSegment(false);
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "dev-appserver-log");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.scheduleWithFixedDelay(
+        this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    shutdownHook = new Thread(this::close);
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /**
+   * Closes {@code listener}, copying the output of the same server to the console, when this writer
+   * is closed.
+   */
+  synchronized void closeWith(DefaultProcessOutputLineListener listener) {
+    consoleListener = listener;
+  }
+
+  /**
+   * Opens a writer to {@code logFile}, truncating it, after closing any writer already open to the
+   * same file in this JVM. Failures to rotate the file are reported to {@code log}.
+   */
+  public static DevServerLogWriter open(Path logFile, Rotation rotation, Log log)
+      throws IOException {
+    Path key = logFile.toAbsolutePath().normalize();
+    DevServerLogWriter previous = OPEN.remove(key);
+    if (previous != null) {
+      previous.close();
+    }
+    DevServerLogWriter writer = new DevServerLogWriter(key, rotation, log);
+    OPEN.put(key, writer);
+    return writer;
+  }
+
+  /**
+   * Closes the writer open to {@code logFile} in this JVM, if any.
+   *
+   * @return true if a writer was closed
+   */
+  public static boolean close(Path logFile) {
+    DevServerLogWriter writer = OPEN.remove(logFile.toAbsolutePath().normalize());
+    if (writer == null) {
+      return false;
+    }
+    writer.close();
+    return true;
+  }
+
+  /**
+   * Flushes buffered output, and closes the writer and the console listener of the server. Waits
+   * for rotated segments to be gzipped.
+   */
+  @Override
+  public void close() {
+    DefaultProcessOutputLineListener listenerToClose;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        writer.close();
+      } catch (IOException ex) {
+        // nothing more can be written
+      }
+      listenerToClose = consoleListener;
+    }
+    if (listenerToClose != null) {
+      listenerToClose.close();
+    }
+    executor.shutdown();
+    try {
+      executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    OPEN.remove(logFile, this);
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException ex) {
+      // closed by the shutdown hook
+    }
+  }
+
+  /** Returns the Dev App Server log file of a project with the given build directory. */
+  public static Path getLogFile(Path buildDirectory) {
+    return buildDirectory.resolve("dev-appserver-out").resolve("dev_appserver.out");
+  }
+
+  @Override
+  public synchronized void onOutputLine(String line) {
+    if (closed) {
+      return;
+    }
+    try {
+      writer.write(line);
+      writer.write(System.lineSeparator());
+      segmentBytes += encodedLength(line) + System.lineSeparator().length();
+      if (rotation.maxSizeBytes > 0 && segmentBytes >= rotation.maxSizeBytes) {
+        rotate();
+      }
+    } catch (IOException ex) {
+      // like a PrintStream, losing log output must not fail the server
+    }
+  }
+
+  /** Returns the path of rotated segment {@code number}, before it is gzipped. */
+  Path getSegment(int number) {
+    return logFile.resolveSibling(logFile.getFileName() + "." + number);
+  }
+
+  private synchronized void flush() {
+    if (closed) {
+      return;
+    }
+    try {
+      writer.flush();
+      if (rotation.intervalMillis > 0
+          && segmentBytes > 0
+          && System.currentTimeMillis() - segmentStartMillis >= rotation.intervalMillis) {
+        rotate();
+      }
+    } catch (IOException ex) {
+      // retried on the next flush
+    }
+  }
+
+  // called with the lock held
+  private void rotate() throws IOException {
+    writer.close();
+    int segmentNumber = lastSegment + 1;
+    Path segment = getSegment(segmentNumber);
+    try {
+      Files.move(logFile, segment);
+    } catch (IOException ex) {
+      // keeps writing to the log file, rotation is retried once it grows or ages again
+      openSegment(true);
+      if (!rotationFailureLogged) {
+        rotationFailureLogged = true;
+        log.warn("Failed to rotate " + logFile + ", writing on to it: " + ex);
+      }
+      return;
+    }
+    lastSegment = segmentNumber;
+    openSegment(false);
+    executor.execute(
+        () -> {
+          try {
+            if (rotation.compress) {
+              gzip(segment);
+            }
+            if (rotation.maxSegments > 0 && segmentNumber > rotation.maxSegments) {
+              Path expired = getSegment(segmentNumber - rotation.maxSegments);
+              Files.deleteIfExists(expired);
+              Files.deleteIfExists(expired.resolveSibling(expired.getFileName() + GZIP_SUFFIX));
+            }
+          } catch (IOException ex) {
+            // the segment stays as it is
+          }
+        });
+  }
+
+  private void openSegment(boolean append) throws IOException {
+    OutputStream output =
+        append
+            ? Files.newOutputStream(logFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+            : Files.newOutputStream(logFile);
+    writer =
+        new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    segmentBytes = 0;
+    segmentStartMillis = System.currentTimeMillis();
+  }
+
+  /** Returns the size of {@code line} encoded in UTF-8, unpaired surrogates being replaced. */
+  private static int encodedLength(String line) {
+    try {
+      return Utf8.encodedLength(line);
+    } catch (IllegalArgumentException ex) {
+      return line.getBytes(StandardCharsets.UTF_8).length;
+    }
+  }
+
+  private void deleteSegments() throws IOException {
+    Pattern segmentName =
+        Pattern.compile(Pattern.quote(logFile.getFileName().toString()) + "\\.\\d+(\\.gz)?");
+    try (DirectoryStream<Path> siblings = Files.newDirectoryStream(logFile.getParent())) {
+      for (Path sibling : siblings) {
+        if (segmentName.matcher(sibling.getFileName().toString()).matches()) {
+          Files.delete(sibling);
+        }
+      }
+    }
+  }
+
+  private static void gzip(Path file) throws IOException {
+    Path gzipped = file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+    try (InputStream in = Files.newInputStream(file);
+        OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipped), BUFFER_SIZE)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+    Files.delete(file);
+  }
+
+  /** When to rotate the log file, and what to do with rotated segments. */
+  public static class Rotation {
+
+    /** Never rotates the log file. */
+    public static final Rotation NONE = new Rotation(0, 0, 0, false);
+
+    private final long maxSizeBytes;
+    private final long intervalMillis;
+    private final int maxSegments;
+    private final boolean compress;
+
+    /**
+     * @param maxSizeBytes size in bytes at which the log file is rotated, or 0 for no limit
+     * @param intervalMillis age at which the log file is rotated, or 0 for no limit
+     * @param maxSegments number of rotated segments to keep, or 0 to keep them all
+     * @param compress whether to gzip rotated segments
+     */
+    public Rotation(long maxSizeBytes, long intervalMillis, int maxSegments, boolean compress) {
+      this.maxSizeBytes = maxSizeBytes;
+      this.intervalMillis = intervalMillis;
+      this.maxSegments = maxSegments;
+      this.compress = compress;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Joiner;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Dev App Servers started side by side by {@code appengine:start}, each with its own ports and
+ * storage, so that integration tests can be sharded across them. The pool is saved for the goals
+ * that stop the servers.
+ */
+public class DevServerPool {
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+  private static final int MAX_ALLOCATION_ATTEMPTS = 10;
+
+  private List<Instance> instances;
+
+  DevServerPool(List<Instance> instances) {
+    this.instances = instances;
+  }
+
+  /**
+   * Picks free ports for {@code size} servers on {@code host}, none of them shared between two
+   * servers, and gives each server its own directory under dev-appserver-out for its storage and
+   * log file.
+   */
+  public static DevServerPool allocate(String host, int size, Path buildDirectory)
+      throws IOException {
+    Path outputDirectory = buildDirectory.resolve("dev-appserver-out");
+    Set<Integer> usedPorts = new HashSet<>();
+    List<Instance> instances = new ArrayList<>();
+    for (int index = 0; index < size; index++) {
+      DevServerPorts ports = allocateUnused(host, usedPorts);
+      Path directory = outputDirectory.resolve("instance-" + index);
+      instances.add(new Instance(index, ports, directory.toString()));
+    }
+    return new DevServerPool(instances);
+  }
+
+  /** Returns the file the pool of a project with the given build directory is saved to. */
+  public static Path getFile(Path buildDirectory) {
+    return buildDirectory.resolve("dev-appserver-out").resolve("pool.json");
+  }
+
+  /** Reads a pool saved by {@link #save}, or returns null if there is none. */
+  public static DevServerPool load(Path file) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, DevServerPool.class);
+    } catch (JsonParseException ex) {
+      throw new IOException("Invalid Dev App Server pool file: " + file, ex);
+    }
+  }
+
+  /** Writes the pool to {@code file}, read by {@link #load}. */
+  public void save(Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      GSON.toJson(this, writer);
+    }
+  }
+
+  /**
+   * Sets the app.devserver.endpoints property to the comma separated URLs of the servers, in
+   * instance order, and app.devserver.pool.size to their number.
+   */
+  public void publish(Properties properties) {
+    properties.setProperty("app.devserver.endpoints", Joiner.on(',').join(getEndpoints()));
+    properties.setProperty("app.devserver.pool.size", Integer.toString(instances.size()));
+  }
+
+  public List<Instance> getInstances() {
+    return instances;
+  }
+
+  /** Returns the base URLs of the servers, in instance order. */
+  public List<String> getEndpoints() {
+    List<String> endpoints = new ArrayList<>();
+    for (Instance instance : instances) {
+      endpoints.add(instance.getEndpoint());
+    }
+    return endpoints;
+  }
+
+  private static DevServerPorts allocateUnused(String host, Set<Integer> usedPorts)
+      throws IOException {
+    // a port is free again once its socket is closed, so a later server may be handed it too
+    for (int attempt = 0; attempt < MAX_ALLOCATION_ATTEMPTS; attempt++) {
+      DevServerPorts ports = DevServerPorts.allocate(host);
+      if (!usedPorts.contains(ports.getPort())
+          && !usedPorts.contains(ports.getAdminPort())
+          && !usedPorts.contains(ports.getApiPort())) {
+        usedPorts.add(ports.getPort());
+        usedPorts.add(ports.getAdminPort());
+        usedPorts.add(ports.getApiPort());
+        return ports;
+      }
+    }
+    throw new IOException("Failed to allocate distinct ports for the Dev App Server pool");
+  }
+
+  /** A server of the pool. */
+  public static class Instance {
+
+    private int index;
+    private DevServerPorts ports;
+    private String directory;
+
+    Instance(int index, DevServerPorts ports, String directory) {
+      this.index = index;
+      this.ports = ports;
+      this.directory = directory;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public DevServerPorts getPorts() {
+      return ports;
+    }
+
+    /** Returns the directory holding the storage and the log file of the server. */
+    public Path getDirectory() {
+      return Paths.get(directory);
+    }
+
+    public Path getStoragePath() {
+      return getDirectory().resolve("storage");
+    }
+
+    public Path getDatastorePath() {
+      return getDirectory().resolve("local_db.bin");
+    }
+
+    public Path getLogFile() {
+      return getDirectory().resolve("dev_appserver.out");
+    }
+
+    /** Returns the base URL of the server, like http://localhost:8080. */
+    public String getEndpoint() {
+      return "http://" + DevServerPorts.getReachableHost(ports.getHost()) + ":" + ports.getPort();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * The ports of a Dev App Server, allocated among the free ports of the machine so that several
+ * servers can run side by side, and saved for the goals that stop the server.
+ */
+public class DevServerPorts {
+
+  private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+  private String host;
+  private int port;
+  private int adminPort;
+  private int apiPort;
+
+  DevServerPorts(String host, int port, int adminPort, int apiPort) {
+    this.host = host;
+    this.port = port;
+    this.adminPort = adminPort;
+    this.apiPort = apiPort;
+  }
+
+  /**
+   * Picks free ports for the application, the admin server and the API server on {@code host}. The
+   * ports are free when picked, another process may still bind them before the server does.
+   */
+  public static DevServerPorts allocate(String host) throws IOException {
+    InetAddress address =
+        host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+    // the sockets stay open until the three ports are picked, so that they differ
+    try (ServerSocket app = bind(address);
+        ServerSocket admin = bind(address);
+        ServerSocket api = bind(address)) {
+      return new DevServerPorts(host, app.getLocalPort(), admin.getLocalPort(), api.getLocalPort());
+    }
+  }
+
+  /**
+   * Returns the file the ports of the server of a project with the given build directory are saved
+   * to.
+   */
+  public static Path getFile(Path buildDirectory) {
+    return buildDirectory.resolve("dev-appserver-out").resolve("ports.json");
+  }
+
+  /** Reads ports saved by {@link #save}, or returns null if there are none. */
+  public static DevServerPorts load(Path file) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return GSON.fromJson(reader, DevServerPorts.class);
+    } catch (JsonParseException ex) {
+      throw new IOException("Invalid Dev App Server ports file: " + file, ex);
+    }
+  }
+
+  /** Writes the ports to {@code file}, read by {@link #load}. */
+  public void save(Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      GSON.toJson(this, writer);
+    }
+  }
+
+  /**
+   * Sets the app.devserver.allocated.port, app.devserver.allocated.adminPort and
+   * app.devserver.allocated.apiPort properties, which do not override the port parameters of later
+   * goals.
+   */
+  public void publish(Properties properties) {
+    properties.setProperty("app.devserver.allocated.port", Integer.toString(port));
+    properties.setProperty("app.devserver.allocated.adminPort", Integer.toString(adminPort));
+    properties.setProperty("app.devserver.allocated.apiPort", Integer.toString(apiPort));
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  /** Returns the host on which a server bound to {@code host} is reachable. */
+  static String getReachableHost(String host) {
+    // a server bound to every interface is reachable on the loopback interface
+    return host == null || "0.0.0.0".equals(host) ? "localhost" : host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public int getAdminPort() {
+    return adminPort;
+  }
+
+  public int getApiPort() {
+    return apiPort;
+  }
+
+  private static ServerSocket bind(InetAddress address) throws IOException {
+    ServerSocket socket = new ServerSocket();
+    socket.bind(new InetSocketAddress(address, 0));
+    return socket;
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Copies the files changed in source directories, like {@code target/classes}, to the exploded WAR
+ * served by a running Dev App Server, then touches a file to make the server reload the
+ * application.
+ *
+ * <p>Changes are collected until no change happens for a quiet period, then synced in one batch.
+ * Every file is copied to a temporary file next to its destination and renamed over it, so the
+ * server never loads a partially written class.
+ */
+public class ExplodedWarSync implements Closeable {
+
+  // source directory to exploded WAR directory
+  private final Map<Path, Path> directories;
+  private final Path reloadTrigger;
+  private final long quietPeriodMillis;
+  private final Log log;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+  /**
+   * @param directories the directories to sync, from source directory to exploded WAR directory
+   * @param reloadTrigger a file whose modification makes the server reload the application, or null
+   * @param quietPeriodMillis how long to wait for more changes before syncing
+   */
+  public ExplodedWarSync(
+      Map<Path, Path> directories, Path reloadTrigger, long quietPeriodMillis, Log log)
+      throws IOException {
+    this.directories = ImmutableMap.copyOf(directories);
+    this.reloadTrigger = reloadTrigger;
+    this.quietPeriodMillis = quietPeriodMillis;
+    this.log = log;
+    this.watchService = directories.keySet().iterator().next().getFileSystem().newWatchService();
+  }
+
+  /**
+   * Syncs the changes to the source directories until {@link #close} is called. Changes made before
+   * this method is called are not synced, see {@link #syncAll}.
+   */
+  public void watch() throws IOException, InterruptedException {
+    for (Path source : directories.keySet()) {
+      register(source, null);
+    }
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        long firstChangeNanos = System.nanoTime();
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        do {
+          overflow |= collect(key, changed);
+          key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS);
+        } while (key != null);
+
+        long syncStartNanos = System.nanoTime();
+        int synced = overflow ? syncAll() : sync(changed);
+        if (synced > 0) {
+          reload();
+          long now = System.nanoTime();
+          log.info(
+              String.format(
+                  "Synced %d files to the Dev App Server in %d ms, %d ms after the first change",
+                  synced,
+                  TimeUnit.NANOSECONDS.toMillis(now - syncStartNanos),
+                  TimeUnit.NANOSECONDS.toMillis(now - firstChangeNanos)));
+        }
+      }
+    } catch (ClosedWatchServiceException ex) {
+      // closed
+    }
+  }
+
+  /**
+   * Copies every file of the source directories whose size or modification time differs in the
+   * exploded WAR.
+   *
+   * @return the number of files copied
+   */
+  public int syncAll() throws IOException {
+    int synced = 0;
+    for (Map.Entry<Path, Path> directory : directories.entrySet()) {
+      Path source = directory.getKey();
+      Path target = directory.getValue();
+      if (!Files.isDirectory(source)) {
+        continue;
+      }
+      int[] copied = {0};
+      Files.walkFileTree(
+          source,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                throws IOException {
+              Path destination = target.resolve(source.relativize(file).toString());
+              if (StagingCopier.copyIfChanged(file, destination)) {
+                copied[0]++;
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+      synced += copied[0];
+    }
+    return synced;
+  }
+
+  /**
+   * Copies the given files of the source directories to the exploded WAR, or deletes them from it
+   * if they no longer exist.
+   *
+   * @return the number of files copied or deleted
+   */
+  public int sync(Collection<Path> changed) throws IOException {
+    int synced = 0;
+    for (Path file : changed) {
+      Path destination = getDestination(file);
+      if (destination == null || StagingCopier.isTemporary(file)) {
+        continue;
+      }
+      if (Files.isRegularFile(file)) {
+        StagingCopier.copyAtomically(file, destination);
+        synced++;
+      } else if (!Files.exists(file) && Files.exists(destination)) {
+        if (Files.isDirectory(destination)) {
+          FileUtils.deleteDirectory(destination.toFile());
+        } else {
+          Files.delete(destination);
+        }
+        synced++;
+      }
+    }
+    return synced;
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private Path getDestination(Path file) {
+    for (Map.Entry<Path, Path> directory : directories.entrySet()) {
+      if (file.startsWith(directory.getKey()) && !file.equals(directory.getKey())) {
+        return directory.getValue().resolve(directory.getKey().relativize(file).toString());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the files changed according to {@code key} to {@code changed}, returns true on overflow.
+   */
+  private boolean collect(WatchKey key, Set<Path> changed) throws IOException {
+    Path directory = watchedDirectories.get(key);
+    boolean overflow = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        overflow = true;
+        continue;
+      }
+      Path file = directory.resolve((Path) event.context());
+      if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+        // files created before the directory is watched are only seen by walking it
+        register(file, changed);
+      } else {
+        changed.add(file);
+      }
+    }
+    if (!key.reset()) {
+      watchedDirectories.remove(key);
+    }
+    return overflow;
+  }
+
+  /** Watches {@code root} and its subdirectories, adding the files found to {@code found}. */
+  private void register(Path root, Set<Path> found) throws IOException {
+    if (!Files.isDirectory(root)) {
+      return;
+    }
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            WatchKey key =
+                dir.register(
+                    watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.put(key, dir);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (found != null) {
+              found.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private void reload() throws IOException {
+    if (reloadTrigger != null && Files.exists(reloadTrigger)) {
+      Files.setLastModifiedTime(reloadTrigger, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+  }
+}
@@ -71,15 +71,18 @@ public class GenRepoInfoFileMojo extends CloudSdkMojo implements GenRepoInfoFile
 
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
-    try {
-      getAppEngineFactory().genRepoInfoFile().generate(this);
-    } catch (AppEngineException aee) {
-      if (!ignoreErrors) {
-        throw new MojoExecutionException(HOW_TO_FIX_MSG, aee);
-      } else {
-        logger.warning(HOW_TO_FIX_MSG);
-      }
-    }
+    executeTimed(
+        () -> {
+          try {
+            getAppEngineFactory().genRepoInfoFile().generate(this);
+          } catch (AppEngineException aee) {
+            if (!ignoreErrors) {
+              throw new MojoExecutionException(HOW_TO_FIX_MSG, aee);
+            } else {
+              logger.warning(HOW_TO_FIX_MSG);
+            }
+          }
+        });
   }
 
   @Override
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Recompiles the JSPs affected by a change to an already staged application.
+ *
+ * <p>A page is stale when it changed, or when a file it statically includes or a tag file of a tag
+ * directory it uses changed, directly or through other includes and tag files. The stale pages are
+ * compiled in parallel batches, each by App Engine staging of a copy of the source directory made
+ * of hard links that leaves out the other pages. The compiled classes then replace the previous
+ * ones in the staging directory, which keeps the classes of the other pages from one build to the
+ * next.
+ */
+class IncrementalJspCompiler {
+
+  private static final Pattern INCLUDE =
+      Pattern.compile(
+          "(?:<%@\\s*include|<jsp:directive\\.include)\\s[^>]*?file\\s*=\\s*[\"']([^\"']+)[\"']");
+  private static final Pattern TAGDIR = Pattern.compile("tagdir\\s*=\\s*[\"']([^\"']+)[\"']");
+  private static final Pattern COMPILED_JSPS_JAR =
+      Pattern.compile("_ah_compiled_jsps-(\\d{4})\\.jar");
+  private static final String COMPILED_JSPS_PACKAGE = "org/apache/jsp/";
+
+  // fewer pages are not worth the start up time of another App Engine staging process
+  private static final int MIN_BATCH_SIZE = 25;
+
+  private final AbstractStageMojo stageMojo;
+
+  IncrementalJspCompiler(AbstractStageMojo stageMojo) {
+    this.stageMojo = stageMojo;
+  }
+
+  /** Whether {@code path} is a page, a fragment or a tag file that JSP compilation reads. */
+  static boolean isJspSource(String path) {
+    if (path.startsWith("WEB-INF/classes/") || path.startsWith("WEB-INF/lib/")) {
+      return false;
+    }
+    return path.endsWith(".jsp")
+        || path.endsWith(".jspx")
+        || path.endsWith(".jspf")
+        || path.endsWith(".tag")
+        || path.endsWith(".tagx")
+        || path.endsWith(".tagf");
+  }
+
+  /** Whether {@code path} is a page that is compiled to a servlet. */
+  static boolean isPage(String path) {
+    return isJspSource(path) && (path.endsWith(".jsp") || path.endsWith(".jspx"));
+  }
+
+  /**
+   * Recompiles the pages affected by changes to JSP sources, and replaces their classes in the
+   * staging directory.
+   *
+   * @param current the manifest of the source directory
+   * @param changed the JSP sources added, changed or removed since the staging directory was staged
+   * @return false if the compiled classes cannot be merged, and a full restage is needed
+   */
+  boolean recompile(StagingManifest current, Set<String> changed) throws IOException {
+    SortedSet<String> stalePages = findStalePages(current, changed);
+    if (stalePages.isEmpty()) {
+      return true;
+    }
+
+    Path lib = stageMojo.getStagingDirectory().toPath().resolve("WEB-INF").resolve("lib");
+    boolean jarred = !stageMojo.getDisableJarJsps();
+    Map<Path, Integer> compiledJspJars = jarred ? findCompiledJspJars(lib) : null;
+    if (jarred && compiledJspJars.isEmpty()) {
+      stageMojo.getLog().info("No compiled JSP jar to update, a full restage is needed.");
+      return false;
+    }
+
+    int batchCount =
+        Math.max(
+            1,
+            Math.min(
+                Runtime.getRuntime().availableProcessors(), stalePages.size() / MIN_BATCH_SIZE));
+    List<List<String>> batches =
+        Lists.partition(
+            new ArrayList<>(stalePages), (stalePages.size() + batchCount - 1) / batchCount);
+    stageMojo
+        .getLog()
+        .info("Recompiling " + stalePages.size() + " JSPs in " + batches.size() + " batches.");
+
+    Path work = getWorkDirectory();
+    try {
+      // left over by an interrupted build
+      FileUtils.deleteDirectory(work.toFile());
+      Files.createDirectories(work);
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < batches.size(); i++) {
+        Path batchSource = work.resolve("source-" + i);
+        Path batchStaging = work.resolve("staging-" + i);
+        List<String> batch = batches.get(i);
+        tasks.add(
+            () -> {
+              compile(current, batch, batchSource, batchStaging, jarred);
+              return null;
+            });
+      }
+      ParallelTasks.invokeAll(tasks, "compiling JSPs");
+
+      if (jarred) {
+        mergeJars(work, batches.size(), lib, compiledJspJars);
+      } else {
+        mergeClasses(work, batches.size());
+      }
+    } finally {
+      FileUtils.deleteQuietly(work.toFile());
+    }
+    return true;
+  }
+
+  /**
+   * The batches are staged next to the staging directory, on the file system of the build
+   * directory, so that their sources can be hard links to the source directory.
+   */
+  @VisibleForTesting
+  Path getWorkDirectory() {
+    File stagingDirectory = stageMojo.getStagingDirectory().getAbsoluteFile();
+    return stagingDirectory.toPath().resolveSibling(stagingDirectory.getName() + ".jsps");
+  }
+
+  /** Returns the pages that depend on any of {@code changed}. */
+  SortedSet<String> findStalePages(StagingManifest current, Set<String> changed)
+      throws IOException {
+    Path source = stageMojo.getSourceDirectory().toPath();
+    Map<String, Set<String>> dependencies = new HashMap<>();
+    for (String path : current.getEntries().keySet()) {
+      if (isJspSource(path)) {
+        dependencies.put(path, findDependencies(source, path));
+      }
+    }
+
+    Set<String> affected = new TreeSet<>(changed);
+    boolean grown = true;
+    while (grown) {
+      grown = false;
+      for (Map.Entry<String, Set<String>> file : dependencies.entrySet()) {
+        if (!affected.contains(file.getKey()) && dependsOnAny(file.getValue(), affected)) {
+          affected.add(file.getKey());
+          grown = true;
+        }
+      }
+    }
+
+    SortedSet<String> stalePages = new TreeSet<>();
+    for (String path : affected) {
+      if (isPage(path) && current.getEntries().containsKey(path)) {
+        stalePages.add(path);
+      }
+    }
+    return stalePages;
+  }
+
+  /**
+   * Returns the paths of the files that {@code path} includes, and the paths of the tag directories
+   * it uses followed by a '/'.
+   */
+  private static Set<String> findDependencies(Path source, String path) throws IOException {
+    // directives are ASCII, whatever the page encoding
+    String content =
+        new String(Files.readAllBytes(source.resolve(path)), StandardCharsets.ISO_8859_1);
+    Set<String> dependencies = new TreeSet<>();
+    Matcher include = INCLUDE.matcher(content);
+    while (include.find()) {
+      dependencies.add(resolve(path, include.group(1)));
+    }
+    Matcher tagdir = TAGDIR.matcher(content);
+    while (tagdir.find()) {
+      dependencies.add(resolve(path, tagdir.group(1)) + "/");
+    }
+    return dependencies;
+  }
+
+  private static boolean dependsOnAny(Set<String> dependencies, Set<String> affected) {
+    for (String dependency : dependencies) {
+      if (!dependency.endsWith("/")) {
+        if (affected.contains(dependency)) {
+          return true;
+        }
+        continue;
+      }
+      for (String path : affected) {
+        if (path.startsWith(dependency) && path.indexOf('/', dependency.length()) == -1) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Resolves a reference of {@code from} against the source directory or {@code from}. */
+  static String resolve(String from, String reference) {
+    String base;
+    if (reference.startsWith("/")) {
+      base = "";
+    } else {
+      base = from.substring(0, from.lastIndexOf('/') + 1);
+    }
+    String resolved = base + reference.replaceFirst("^/+", "");
+    return Paths.get(resolved).normalize().toString().replace('\\', '/');
+  }
+
+  private void compile(
+      StagingManifest current,
+      List<String> pages,
+      Path batchSource,
+      Path batchStaging,
+      boolean jarred)
+      throws IOException, AppEngineException {
+    Set<String> batch = new TreeSet<>(pages);
+    List<String> files = new ArrayList<>();
+    for (String path : current.getEntries().keySet()) {
+      if (!isPage(path) || batch.contains(path)) {
+        files.add(path);
+      }
+    }
+    new StagingCopier(StagingCopier.Strategy.LINK)
+        .copyAll(stageMojo.getSourceDirectory().toPath(), batchSource, files);
+    Files.createDirectories(batchStaging);
+    stageMojo
+        .getAppEngineFactory()
+        .standardStaging()
+        .stageStandard(
+            new PartialStageConfiguration(stageMojo, batchSource, batchStaging, !jarred));
+  }
+
+  /** Copies the compiled JSP classes of every batch to WEB-INF/classes of the staging directory. */
+  private void mergeClasses(Path work, int batchCount) throws IOException {
+    Path source = stageMojo.getSourceDirectory().toPath();
+    Path staging = stageMojo.getStagingDirectory().toPath();
+    for (int i = 0; i < batchCount; i++) {
+      Path batchStaging = work.resolve("staging-" + i);
+      Path compiled = batchStaging.resolve("WEB-INF/classes/" + COMPILED_JSPS_PACKAGE);
+      if (!Files.isDirectory(compiled)) {
+        continue;
+      }
+      Files.walkFileTree(
+          compiled,
+          new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                throws IOException {
+              String path = StagingManifest.relativize(batchStaging, file);
+              // application classes that happen to be in the same package are not compiled JSPs
+              if (!Files.exists(source.resolve(path))) {
+                Path target = staging.resolve(path);
+                Files.createDirectories(target.getParent());
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    }
+  }
+
+  /**
+   * Removes the recompiled classes from the compiled JSP jars of the staging directory, and adds
+   * them in a new jar.
+   */
+  private void mergeJars(Path work, int batchCount, Path lib, Map<Path, Integer> compiledJspJars)
+      throws IOException {
+    Map<String, byte[]> recompiled = new LinkedHashMap<>();
+    for (int i = 0; i < batchCount; i++) {
+      Path batchLib = work.resolve("staging-" + i).resolve("WEB-INF").resolve("lib");
+      for (Path jar : findCompiledJspJars(batchLib).keySet()) {
+        try (JarInputStream input =
+            new JarInputStream(new BufferedInputStream(Files.newInputStream(jar)))) {
+          JarEntry entry;
+          while ((entry = input.getNextJarEntry()) != null) {
+            if (!entry.isDirectory()) {
+              recompiled.put(entry.getName(), ByteStreams.toByteArray(input));
+            }
+          }
+        }
+      }
+    }
+
+    int nextIndex = 0;
+    for (Map.Entry<Path, Integer> jar : compiledJspJars.entrySet()) {
+      removeEntries(jar.getKey(), recompiled.keySet());
+      nextIndex = Math.max(nextIndex, jar.getValue() + 1);
+    }
+    if (recompiled.isEmpty()) {
+      return;
+    }
+    Path newJar = lib.resolve(String.format("_ah_compiled_jsps-%04d.jar", nextIndex));
+    try (JarOutputStream output =
+        new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(newJar)))) {
+      for (Map.Entry<String, byte[]> entry : recompiled.entrySet()) {
+        output.putNextEntry(new JarEntry(entry.getKey()));
+        output.write(entry.getValue());
+        output.closeEntry();
+      }
+    }
+  }
+
+  /** Rewrites {@code jar} without {@code names}, and deletes it if nothing is left. */
+  private static void removeEntries(Path jar, Set<String> names) throws IOException {
+    Path rewritten = jar.resolveSibling(jar.getFileName() + ".tmp");
+    boolean empty = true;
+    boolean changed = false;
+    try (JarInputStream input =
+            new JarInputStream(new BufferedInputStream(Files.newInputStream(jar)));
+        JarOutputStream output =
+            input.getManifest() == null
+                ? new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(rewritten)))
+                : new JarOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(rewritten)),
+                    input.getManifest())) {
+      JarEntry entry;
+      while ((entry = input.getNextJarEntry()) != null) {
+        if (names.contains(entry.getName()) || entry.getName().equals(JarFile.MANIFEST_NAME)) {
+          changed |= names.contains(entry.getName());
+          continue;
+        }
+        output.putNextEntry(new JarEntry(entry.getName()));
+        ByteStreams.copy(input, output);
+        output.closeEntry();
+        empty &= entry.isDirectory();
+      }
+    }
+    if (empty) {
+      Files.delete(rewritten);
+      Files.delete(jar);
+    } else if (changed) {
+      Files.move(rewritten, jar, StandardCopyOption.REPLACE_EXISTING);
+    } else {
+      Files.delete(rewritten);
+    }
+  }
+
+  /** Returns the compiled JSP jars of {@code lib}, with their fragment index. */
+  private static Map<Path, Integer> findCompiledJspJars(Path lib) throws IOException {
+    Map<Path, Integer> jars = new LinkedHashMap<>();
+    if (!Files.isDirectory(lib)) {
+      return jars;
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(lib)) {
+      for (Path file : files) {
+        Matcher matcher = COMPILED_JSPS_JAR.matcher(file.getFileName().toString());
+        if (matcher.matches()) {
+          jars.put(file, Integer.parseInt(matcher.group(1)));
+        }
+      }
+    }
+    return jars;
+  }
+}
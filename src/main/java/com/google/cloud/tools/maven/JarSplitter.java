@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+
+/**
+ * Splits jars larger than a maximum size into fragments named {@code <name>-0000.jar}, {@code
+ * <name>-0001.jar}, etc. in the same directory, the way App Engine staging does. Every fragment
+ * gets a copy of the manifest, and the entries whose names end with one of the excluded suffixes
+ * are dropped. Entries are streamed from the jar to its fragments, and jars are split in parallel.
+ */
+public class JarSplitter {
+
+  // zip record sizes, without the entry name, plus room for a data descriptor
+  private static final int LOCAL_HEADER_SIZE = 30 + 16;
+  private static final int CENTRAL_DIRECTORY_RECORD_SIZE = 46;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final Pattern FRAGMENT = Pattern.compile("-\\d{4}\\.jar");
+
+  private final long maxSize;
+  private final List<String> excludes;
+
+  /**
+   * @param maxSize the maximum size of a jar, in bytes
+   * @param excludes comma separated suffixes of the entries to drop from split jars, or null
+   */
+  public JarSplitter(long maxSize, String excludes) {
+    this.maxSize = maxSize;
+    this.excludes =
+        excludes == null
+            ? new ArrayList<>()
+            : Splitter.on(',').trimResults().omitEmptyStrings().splitToList(excludes);
+  }
+
+  /** Splits every jar of {@code directory} that is larger than the maximum size. */
+  public void splitAll(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    List<Path> jars = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.jar")) {
+      for (Path file : files) {
+        jars.add(file);
+      }
+    }
+    splitAll(jars);
+  }
+
+  /** Splits every jar of {@code jars} that is larger than the maximum size. */
+  public void splitAll(List<Path> jars) throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (Path jar : jars) {
+      if (Files.size(jar) > maxSize) {
+        tasks.add(
+            () -> {
+              split(jar);
+              return null;
+            });
+      }
+    }
+    ParallelTasks.invokeAll(tasks, "splitting jars");
+  }
+
+  /**
+   * Replaces {@code jar} with its fragments. Entries are streamed into the current fragment, using
+   * the size recorded in the central directory to decide when to start a new one; only entries of
+   * unknown size are read into memory first.
+   */
+  public void split(Path jar) throws IOException {
+    String baseName = jar.getFileName().toString().replaceAll("\\.jar$", "");
+    try (JarFile jarFile = new JarFile(jar.toFile(), false)) {
+      Manifest manifest = jarFile.getManifest();
+      Fragment fragment = null;
+      int index = 0;
+      for (JarEntry entry : Collections.list(jarFile.entries())) {
+        if (entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)
+            || isExcluded(entry.getName())) {
+          continue;
+        }
+        try (InputStream input = jarFile.getInputStream(entry)) {
+          InputStream content = input;
+          long contentLength = entry.getSize();
+          if (contentLength < 0) {
+            byte[] buffer = ByteStreams.toByteArray(input);
+            content = new ByteArrayInputStream(buffer);
+            contentLength = buffer.length;
+          }
+          int nameLength = entry.getName().getBytes(StandardCharsets.UTF_8).length;
+          if (fragment == null || !fragment.fits(nameLength, contentLength)) {
+            if (fragment != null) {
+              fragment.close();
+            }
+            Path fragmentFile = jar.resolveSibling(String.format("%s-%04d.jar", baseName, index++));
+            fragment = new Fragment(fragmentFile, manifest);
+          }
+          fragment.add(new JarEntry(entry.getName()), nameLength, content);
+        }
+      }
+      if (fragment != null) {
+        fragment.close();
+      }
+    }
+    Files.delete(jar);
+  }
+
+  /** Returns the fragments of {@code jar} left in its directory by a previous split. */
+  public static List<Path> findFragments(Path jar) throws IOException {
+    List<Path> fragments = new ArrayList<>();
+    if (!Files.isDirectory(jar.getParent())) {
+      return fragments;
+    }
+    String baseName = jar.getFileName().toString().replaceAll("\\.jar$", "");
+    try (DirectoryStream<Path> candidates =
+        Files.newDirectoryStream(
+            jar.getParent(),
+            candidate -> {
+              String name = candidate.getFileName().toString();
+              return name.startsWith(baseName)
+                  && FRAGMENT.matcher(name.substring(baseName.length())).matches();
+            })) {
+      for (Path candidate : candidates) {
+        fragments.add(candidate);
+      }
+    }
+    return fragments;
+  }
+
+  /**
+   * The largest size deflating {@code length} bytes can produce, which is more than {@code length}
+   * for incompressible content stored in deflate blocks (zlib's deflateBound).
+   */
+  private static long deflateBound(long length) {
+    return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+  }
+
+  private boolean isExcluded(String name) {
+    for (String exclude : excludes) {
+      if (name.endsWith(exclude)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** An open fragment that tracks how large it will be once closed. */
+  private class Fragment {
+
+    private final CountingOutputStream counter;
+    private final JarOutputStream output;
+    private long centralDirectorySize;
+    private boolean empty = true;
+
+    Fragment(Path file, Manifest manifest) throws IOException {
+      OutputStream stream = new BufferedOutputStream(Files.newOutputStream(file));
+      counter = new CountingOutputStream(stream);
+      if (manifest == null) {
+        output = new JarOutputStream(counter);
+        centralDirectorySize = END_OF_CENTRAL_DIRECTORY_SIZE;
+      } else {
+        output = new JarOutputStream(counter, manifest);
+        centralDirectorySize =
+            END_OF_CENTRAL_DIRECTORY_SIZE
+                + CENTRAL_DIRECTORY_RECORD_SIZE
+                + JarFile.MANIFEST_NAME.length();
+      }
+    }
+
+    /**
+     * Whether an entry is guaranteed to fit, even if compression makes its content larger. An empty
+     * fragment accepts any entry.
+     */
+    boolean fits(int nameLength, long contentLength) {
+      long size =
+          counter.getCount()
+              + centralDirectorySize
+              + LOCAL_HEADER_SIZE
+              + CENTRAL_DIRECTORY_RECORD_SIZE
+              + 2 * nameLength
+              + deflateBound(contentLength);
+      return empty || size <= maxSize;
+    }
+
+    void add(JarEntry entry, int nameLength, InputStream content) throws IOException {
+      output.putNextEntry(entry);
+      ByteStreams.copy(content, output);
+      output.closeEntry();
+      centralDirectorySize += CENTRAL_DIRECTORY_RECORD_SIZE + nameLength;
+      empty = false;
+    }
+
+    void close() throws IOException {
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Runs file system tasks on a pool sized to the number of cores, or other tasks concurrently. */
+class ParallelTasks {
+
+  private ParallelTasks() {}
+
+  /**
+   * Runs every task and waits for all of them to complete.
+   *
+   * @param description what the tasks do, for error messages
+   * @throws IOException the first failure, in task order
+   */
+  static <T> void invokeAll(List<? extends Callable<T>> tasks, String description)
+      throws IOException {
+    invokeAll(tasks, Runtime.getRuntime().availableProcessors(), description);
+  }
+
+  /**
+   * Runs every task, at most {@code parallelism} at a time, and waits for all of them to complete.
+   * Tasks that mostly wait, like starting a process, may run more than one per core.
+   *
+   * @param description what the tasks do, for error messages
+   * @throws IOException the first failure, in task order
+   */
+  static <T> void invokeAll(List<? extends Callable<T>> tasks, int parallelism, String description)
+      throws IOException {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      for (Future<T> result : pool.invokeAll(tasks)) {
+        result.get();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while " + description, ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException("Failed while " + description, ex.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
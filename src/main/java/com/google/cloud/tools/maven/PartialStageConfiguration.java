@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * Configuration to stage part of an application to a temporary directory, with the options of a
+ * stage mojo but without any of the steps that are not needed to generate configuration files or
+ * compile JSPs.
+ */
+class PartialStageConfiguration extends AppEngineStagingConfiguration {
+
+  private final File sourceDirectory;
+  private final File stagingDirectory;
+  private final boolean disableJarJsps;
+
+  /**
+   * @param stageMojo the mojo whose encoding, runtime and update check options are used
+   * @param sourceDirectory the partial source directory
+   * @param stagingDirectory the temporary staging directory
+   * @param disableJarJsps whether compiled JSPs are left in WEB-INF/classes rather than jarred
+   */
+  PartialStageConfiguration(
+      AbstractStageMojo stageMojo,
+      Path sourceDirectory,
+      Path stagingDirectory,
+      boolean disableJarJsps) {
+    super(stageMojo);
+    this.sourceDirectory = sourceDirectory.toFile();
+    this.stagingDirectory = stagingDirectory.toFile();
+    this.disableJarJsps = disableJarJsps;
+  }
+
+  @Override
+  public File getSourceDirectory() {
+    return sourceDirectory;
+  }
+
+  @Override
+  public File getStagingDirectory() {
+    return stagingDirectory;
+  }
+
+  @Override
+  public File getDockerfile() {
+    return null;
+  }
+
+  @Override
+  public Boolean getEnableQuickstart() {
+    return false;
+  }
+
+  @Override
+  public String getJarSplittingExcludes() {
+    return null;
+  }
+
+  @Override
+  public Boolean getDeleteJsps() {
+    return false;
+  }
+
+  @Override
+  public Boolean getDisableJarJsps() {
+    return disableJarJsps;
+  }
+}
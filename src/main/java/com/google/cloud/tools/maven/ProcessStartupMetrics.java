@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandlerException;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Measures the time Cloud SDK processes spend starting up, summed over every process of the build.
+ *
+ * <p>The startup time of a process is the time between its launch and its first line of output,
+ * which for gcloud covers the Python interpreter startup and the SDK initialization. Processes that
+ * exit without any output are counted apart, since their whole run would be taken for startup.
+ *
+ * <p>Each process is logged at debug level, and the total of the build so far once per goal, by
+ * {@link #logTotal}.
+ */
+class ProcessStartupMetrics {
+
+  private static final ProcessStartupMetrics INSTANCE =
+      new ProcessStartupMetrics(Ticker.systemTicker());
+
+  private final Ticker ticker;
+  private final AtomicInteger processes = new AtomicInteger();
+  private final AtomicLong startupNanos = new AtomicLong();
+  private final AtomicInteger silentProcesses = new AtomicInteger();
+  private final AtomicInteger loggedProcesses = new AtomicInteger();
+
+  @VisibleForTesting
+  ProcessStartupMetrics(Ticker ticker) {
+    this.ticker = ticker;
+  }
+
+  static ProcessStartupMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /** Returns a measurement of a single process, to be registered as its output listener. */
+  Measurement newMeasurement(Log log) {
+    return new Measurement(log);
+  }
+
+  int getProcesses() {
+    return processes.get();
+  }
+
+  long getStartupMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(startupNanos.get());
+  }
+
+  /** Returns the number of processes that exited without any output. */
+  int getSilentProcesses() {
+    return silentProcesses.get();
+  }
+
+  /** Logs the startup time summed over the processes of the build, if any ran since last logged. */
+  void logTotal(Log log) {
+    int count = processes.get();
+    int silent = silentProcesses.get();
+    if (loggedProcesses.getAndSet(count + silent) == count + silent) {
+      return;
+    }
+    log.info(
+        String.format(
+            "Cloud SDK process startup took %.1f s over the %d processes of this build%s",
+            startupNanos.get() / 1e9,
+            count,
+            silent > 0 ? ", not counting " + silent + " processes without output" : ""));
+  }
+
+  /** Records the startup time of the process handled by the handler it {@link #wrap wraps}. */
+  class Measurement implements ProcessOutputLineListener {
+
+    private final Log log;
+    private volatile long startNanos = -1;
+    private volatile long firstOutputNanos = -1;
+
+    private Measurement(Log log) {
+      this.log = log;
+    }
+
+    @Override
+    public void onOutputLine(String line) {
+      if (firstOutputNanos < 0 && startNanos >= 0) {
+        firstOutputNanos = ticker.read();
+      }
+    }
+
+    /** Returns a handler that measures the process before passing it to {@code handler}. */
+    ProcessHandler wrap(ProcessHandler handler) {
+      return new ProcessHandler() {
+        @Override
+        public void handleProcess(Process process) throws ProcessHandlerException {
+          startNanos = ticker.read();
+          try {
+            handler.handleProcess(process);
+          } finally {
+            record();
+          }
+        }
+      };
+    }
+
+    private void record() {
+      if (firstOutputNanos < 0) {
+        silentProcesses.incrementAndGet();
+        log.debug(
+            String.format(
+                "Cloud SDK process ran %.1f s without output", (ticker.read() - startNanos) / 1e9));
+        return;
+      }
+      long startup = firstOutputNanos - startNanos;
+      processes.incrementAndGet();
+      startupNanos.addAndGet(startup);
+      log.debug(String.format("Cloud SDK process startup took %.1f s", startup / 1e9));
+    }
+  }
+}
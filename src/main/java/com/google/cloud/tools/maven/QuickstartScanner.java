@@ -0,0 +1,282 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Finds the classes and jars of an exploded WAR that Jetty quickstart takes into account when it
+ * generates quickstart-web.xml. Results are cached by content hash in a file, so that a jar is only
+ * scanned again when it changes, and jars are scanned in parallel.
+ *
+ * <p>The name of the web fragment of each jar is recorded too, since the absolute ordering of
+ * web.xml excludes the jars whose fragment it does not list from annotation and initializer
+ * scanning.
+ */
+public class QuickstartScanner {
+
+  /** What makes a class or a jar relevant to quickstart. */
+  public enum Feature {
+    /** Servlet or common annotations, which quickstart turns into descriptor elements. */
+    ANNOTATIONS,
+    /** A ServletContainerInitializer, whose @HandlesTypes may match any class. */
+    CONTAINER_INITIALIZER,
+    /** TLDs or META-INF/resources, which quickstart lists whatever the ordering of the jars. */
+    WEB_RESOURCES,
+    /** A web-fragment.xml, which quickstart merges unless the jar is excluded by the ordering. */
+    WEB_FRAGMENT
+  }
+
+  private static final String CONTAINER_INITIALIZER =
+      "META-INF/services/javax.servlet.ServletContainerInitializer";
+  private static final String WEB_FRAGMENT = "META-INF/web-fragment.xml";
+
+  // type descriptors of the annotations that Jetty's annotation parser processes
+  private static final String[] ANNOTATION_DESCRIPTORS = {
+    "Ljavax/servlet/annotation/",
+    "Ljavax/annotation/Resource",
+    "Ljavax/annotation/PostConstruct;",
+    "Ljavax/annotation/PreDestroy;",
+    "Ljavax/annotation/security/"
+  };
+
+  private final Path cacheFile;
+  private final Map<String, Set<Feature>> results = new ConcurrentHashMap<>();
+  private final Map<String, String> fragmentNames = new ConcurrentHashMap<>();
+
+  /** Creates a scanner with the results cached in {@code cacheFile}, if it exists. */
+  public QuickstartScanner(Path cacheFile) throws IOException {
+    this.cacheFile = cacheFile;
+    if (!Files.isRegularFile(cacheFile)) {
+      return;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        List<String> fields = Splitter.on('\t').splitToList(line);
+        if (fields.size() != 3) {
+          // a corrupt cache is the same as no cache
+          results.clear();
+          fragmentNames.clear();
+          return;
+        }
+        Set<Feature> features = EnumSet.noneOf(Feature.class);
+        for (String feature : Splitter.on(',').omitEmptyStrings().split(fields.get(1))) {
+          try {
+            features.add(Feature.valueOf(feature));
+          } catch (IllegalArgumentException ex) {
+            results.clear();
+            fragmentNames.clear();
+            return;
+          }
+        }
+        results.put(fields.get(0), features);
+        if (!fields.get(2).isEmpty()) {
+          fragmentNames.put(fields.get(0), fields.get(2));
+        }
+      }
+    }
+  }
+
+  /** Whether the features of {@code path}, relative to the source directory, are scanned. */
+  public static boolean isScanned(String path) {
+    return (path.startsWith("WEB-INF/classes/") && path.endsWith(".class"))
+        || (path.startsWith("WEB-INF/lib/")
+            && path.endsWith(".jar")
+            && path.indexOf('/', "WEB-INF/lib/".length()) == -1);
+  }
+
+  /**
+   * Scans every class and jar of {@code manifest} whose content hash has no cached result yet.
+   *
+   * @param sourceDirectory the directory described by {@code manifest}
+   */
+  public void scan(Path sourceDirectory, StagingManifest manifest) throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    Set<String> scheduled = new HashSet<>();
+    for (Map.Entry<String, StagingManifest.Entry> entry : manifest.getEntries().entrySet()) {
+      String path = entry.getKey();
+      String hash = entry.getValue().getHash();
+      if (!isScanned(path) || results.containsKey(hash) || !scheduled.add(hash)) {
+        continue;
+      }
+      Path file = sourceDirectory.resolve(path);
+      tasks.add(
+          () -> {
+            if (path.endsWith(".jar")) {
+              JarScan scan = scanJar(file);
+              if (scan.fragmentName != null) {
+                fragmentNames.put(hash, scan.fragmentName);
+              }
+              results.put(hash, scan.features);
+            } else {
+              results.put(hash, scanClass(file));
+            }
+            return null;
+          });
+    }
+    ParallelTasks.invokeAll(tasks, "scanning for quickstart");
+  }
+
+  /**
+   * Returns the features of a file of the source directory, or null if its content was never
+   * scanned.
+   *
+   * @param path the path of the file, relative to the source directory
+   * @param hash the content hash of the file
+   */
+  public Set<Feature> getFeatures(String path, String hash) {
+    if (isScanned(path)) {
+      return results.get(hash);
+    }
+    if (path.equals("WEB-INF/classes/" + CONTAINER_INITIALIZER)) {
+      return EnumSet.of(Feature.CONTAINER_INITIALIZER);
+    }
+    return EnumSet.noneOf(Feature.class);
+  }
+
+  /**
+   * Returns the name of the web fragment of a jar of the source directory, or null if it has no
+   * named fragment or its content was never scanned.
+   *
+   * @param hash the content hash of the jar
+   */
+  public String getFragmentName(String hash) {
+    return fragmentNames.get(hash);
+  }
+
+  /** Writes the results of the files of {@code manifest} to the cache file, dropping the rest. */
+  public void save(StagingManifest manifest) throws IOException {
+    Files.createDirectories(cacheFile.getParent());
+    try (BufferedWriter writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8)) {
+      Set<String> written = new HashSet<>();
+      for (Map.Entry<String, StagingManifest.Entry> entry : manifest.getEntries().entrySet()) {
+        String hash = entry.getValue().getHash();
+        Set<Feature> features = results.get(hash);
+        if (isScanned(entry.getKey()) && features != null && written.add(hash)) {
+          writer.write(
+              hash
+                  + "\t"
+                  + Joiner.on(',').join(features)
+                  + "\t"
+                  + Strings.nullToEmpty(fragmentNames.get(hash)));
+          writer.newLine();
+        }
+      }
+    }
+  }
+
+  static Set<Feature> scanClass(Path file) throws IOException {
+    return scanClassContent(Files.readAllBytes(file));
+  }
+
+  static JarScan scanJar(Path file) throws IOException {
+    Set<Feature> features = EnumSet.noneOf(Feature.class);
+    String fragmentName = null;
+    try (ZipInputStream input =
+        new ZipInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      ZipEntry entry;
+      while ((entry = input.getNextEntry()) != null) {
+        String name = entry.getName();
+        if (name.equals(CONTAINER_INITIALIZER)) {
+          features.add(Feature.CONTAINER_INITIALIZER);
+        } else if (name.equals(WEB_FRAGMENT)) {
+          features.add(Feature.WEB_FRAGMENT);
+          fragmentName = readFragmentName(ByteStreams.toByteArray(input));
+        } else if (name.startsWith("META-INF/resources/")
+            || (name.startsWith("META-INF/") && name.endsWith(".tld"))) {
+          features.add(Feature.WEB_RESOURCES);
+        } else if (name.endsWith(".class") && !features.contains(Feature.ANNOTATIONS)) {
+          features.addAll(scanClassContent(ByteStreams.toByteArray(input)));
+        }
+      }
+    }
+    return new JarScan(features, fragmentName);
+  }
+
+  /** Returns the name element of a web-fragment.xml, or null if it has none. */
+  private static String readFragmentName(byte[] content) {
+    try {
+      Document document =
+          DocumentBuilderFactory.newInstance()
+              .newDocumentBuilder()
+              .parse(new ByteArrayInputStream(content));
+      for (Node child = document.getDocumentElement().getFirstChild();
+          child != null;
+          child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals("name")) {
+          return child.getTextContent().trim();
+        }
+      }
+    } catch (SAXException | IOException | ParserConfigurationException ex) {
+      // Jetty does not deploy the application either
+    }
+    return null;
+  }
+
+  /**
+   * Looks for the annotation type descriptors in the constant pool of a class file. A descriptor
+   * that is referenced but not used as an annotation only makes the result conservative.
+   */
+  private static Set<Feature> scanClassContent(byte[] content) {
+    String constants = new String(content, StandardCharsets.ISO_8859_1);
+    for (String descriptor : ANNOTATION_DESCRIPTORS) {
+      if (constants.contains(descriptor)) {
+        return EnumSet.of(Feature.ANNOTATIONS);
+      }
+    }
+    return EnumSet.noneOf(Feature.class);
+  }
+
+  /** The features of a jar and the name of its web fragment. */
+  static class JarScan {
+
+    final Set<Feature> features;
+    final String fragmentName;
+
+    JarScan(Set<Feature> features, String fragmentName) {
+      this.features = features;
+      this.fragmentName = fragmentName;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Stopwatch;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Collects the App Engine services of a reactor build, stages them on a bounded pool of threads as
+ * soon as they are added, and deploys them concurrently once every module that runs the goal has
+ * completed.
+ */
+public class ReactorDeployment {
+
+  private static final Map<MavenSession, ReactorDeployment> deployments = new WeakHashMap<>();
+
+  private final ExecutorService stagingExecutor;
+  private final int maxConcurrentDeployments;
+  private final Map<String, Future<Result>> stagedServices = new LinkedHashMap<>();
+  // ids of the projects that run the goal and have not completed it yet
+  private final Set<String> remainingProjects;
+  private boolean deploying = false;
+
+  ReactorDeployment(int stagingThreads, int maxConcurrentDeployments) {
+    this(stagingThreads, maxConcurrentDeployments, new HashSet<>());
+  }
+
+  ReactorDeployment(
+      int stagingThreads, int maxConcurrentDeployments, Set<String> remainingProjects) {
+    this.stagingExecutor = Executors.newFixedThreadPool(stagingThreads);
+    this.maxConcurrentDeployments = maxConcurrentDeployments;
+    this.remainingProjects = new HashSet<>(remainingProjects);
+  }
+
+  /**
+   * Returns the deployment shared by every module of {@code session}, which waits for the projects
+   * of {@code session} that run {@code goal} of the plugin {@code pluginKey}.
+   */
+  static synchronized ReactorDeployment forSession(
+      MavenSession session,
+      String pluginKey,
+      String goalPrefix,
+      String goal,
+      int stagingThreads,
+      int maxConcurrentDeployments) {
+    ReactorDeployment deployment = deployments.get(session);
+    if (deployment == null) {
+      deployment =
+          new ReactorDeployment(
+              stagingThreads,
+              maxConcurrentDeployments,
+              findExecutingProjects(session, pluginKey, goalPrefix, goal));
+      deployments.put(session, deployment);
+    }
+    return deployment;
+  }
+
+  /**
+   * Returns the ids of the projects of {@code session} that run {@code goal}: every project when
+   * the goal is given on the command line, or else the projects that bind it to a phase.
+   */
+  static Set<String> findExecutingProjects(
+      MavenSession session, String pluginKey, String goalPrefix, String goal) {
+    Set<String> projects = new LinkedHashSet<>();
+    boolean invoked = false;
+    for (String invokedGoal : session.getGoals()) {
+      invoked |=
+          invokedGoal.equals(goalPrefix + ":" + goal)
+              || (invokedGoal.startsWith(pluginKey + ":") && invokedGoal.endsWith(":" + goal));
+    }
+    for (MavenProject project : session.getProjects()) {
+      if (invoked || bindsGoal(project, pluginKey, goal)) {
+        projects.add(project.getId());
+      }
+    }
+    return projects;
+  }
+
+  private static boolean bindsGoal(MavenProject project, String pluginKey, String goal) {
+    for (Plugin plugin : project.getBuildPlugins()) {
+      if (pluginKey.equals(plugin.getKey())) {
+        for (PluginExecution execution : plugin.getExecutions()) {
+          if (execution.getGoals().contains(goal)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  static synchronized void remove(MavenSession session) {
+    deployments.remove(session);
+  }
+
+  /** Starts staging {@code service} in the background. */
+  synchronized void add(String service, AppEngineDeployer deployer) {
+    if (deploying) {
+      throw new IllegalStateException(
+          "The reactor deployment already started, " + service + " cannot be added");
+    }
+    stagedServices.put(
+        service,
+        stagingExecutor.submit(
+            () -> {
+              Result result = new Result(service, deployer);
+              Stopwatch stopwatch = Stopwatch.createStarted();
+              try {
+                deployer.prepareDeployAll();
+              } catch (MojoExecutionException | RuntimeException ex) {
+                result.failure = ex;
+              }
+              result.stagingMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+              return result;
+            }));
+  }
+
+  /**
+   * Records that the project {@code projectId} completed the goal.
+   *
+   * @return true, once, when every project that runs the goal has completed it and the deployment
+   *     may start
+   */
+  synchronized boolean complete(String projectId) {
+    remainingProjects.remove(projectId);
+    if (deploying || !remainingProjects.isEmpty()) {
+      return false;
+    }
+    deploying = true;
+    return true;
+  }
+
+  /**
+   * Deploys every service that was staged successfully, each as soon as its staging completes, with
+   * at most {@code maxConcurrentDeployments} deployments running at the same time.
+   *
+   * @return the result of every service, in the order they were added
+   */
+  synchronized List<Result> deploy() throws InterruptedException {
+    deploying = true;
+    ExecutorService deploymentExecutor = Executors.newFixedThreadPool(maxConcurrentDeployments);
+    try {
+      List<Future<Result>> deployedServices = new ArrayList<>();
+      for (Future<Result> stagedService : stagedServices.values()) {
+        deployedServices.add(
+            deploymentExecutor.submit(
+                () -> {
+                  Result result = stagedService.get();
+                  if (result.failure == null) {
+                    Stopwatch stopwatch = Stopwatch.createStarted();
+                    try {
+                      result.deployer.deployPrepared();
+                    } catch (MojoExecutionException | RuntimeException ex) {
+                      result.failure = ex;
+                    }
+                    result.deploymentMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+                  }
+                  return result;
+                }));
+      }
+
+      List<Result> results = new ArrayList<>();
+      for (Future<Result> deployedService : deployedServices) {
+        try {
+          results.add(deployedService.get());
+        } catch (ExecutionException ex) {
+          // the tasks catch their own failures
+          throw new IllegalStateException(ex.getCause());
+        }
+      }
+      return results;
+    } finally {
+      deploymentExecutor.shutdownNow();
+      stagingExecutor.shutdownNow();
+    }
+  }
+
+  /** Logs a summary line per service. */
+  static void report(List<Result> results, Log log) {
+    log.info("App Engine reactor deployment summary:");
+    for (Result result : results) {
+      if (result.isSuccess()) {
+        log.info(
+            "  "
+                + result.service
+                + " SUCCESS (staged in "
+                + result.stagingMillis
+                + " ms, deployed in "
+                + result.deploymentMillis
+                + " ms)");
+      } else {
+        log.error("  " + result.service + " FAILED: " + result.failure.getMessage());
+      }
+    }
+  }
+
+  /** Outcome of staging and deploying a single service. */
+  static class Result {
+
+    private final String service;
+    private final AppEngineDeployer deployer;
+    private volatile Exception failure;
+    private volatile long stagingMillis;
+    private volatile long deploymentMillis;
+
+    Result(String service, AppEngineDeployer deployer) {
+      this.service = service;
+      this.deployer = deployer;
+    }
+
+    String getService() {
+      return service;
+    }
+
+    Exception getFailure() {
+      return failure;
+    }
+
+    boolean isSuccess() {
+      return failure == null;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Polls HTTP endpoints of a starting server, with exponential backoff, until they all serve.
+ *
+ * <p>An endpoint serves once it answers with a status below 500: a 404 or a redirect to a login
+ * page is still an answer of the application, while the server answers 503 until it is started.
+ * Polling fails as soon as the server process exits, since another server may hold its port.
+ */
+class ReadinessProbe {
+
+  private static final long INITIAL_DELAY_MILLIS = 50;
+  private static final long MAX_DELAY_MILLIS = 2000;
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+  private static final int READ_TIMEOUT_MILLIS = 10000;
+
+  private final List<URL> urls;
+  private final Log log;
+  private final Process process;
+  private final long initialDelayMillis;
+
+  /** @param process the server process, or null if unknown */
+  ReadinessProbe(List<URL> urls, Log log, Process process) {
+    this(urls, log, process, INITIAL_DELAY_MILLIS);
+  }
+
+  @VisibleForTesting
+  ReadinessProbe(List<URL> urls, Log log, Process process, long initialDelayMillis) {
+    this.urls = urls;
+    this.log = log;
+    this.process = process;
+    this.initialDelayMillis = initialDelayMillis;
+  }
+
+  /** Returns the URL of {@code path} on a server bound to {@code host} and {@code port}. */
+  static URL getUrl(String host, int port, String path) throws MalformedURLException {
+    return new URL(
+        "http",
+        DevServerPorts.getReachableHost(host),
+        port,
+        path.startsWith("/") ? path : "/" + path);
+  }
+
+  /**
+   * Waits for every URL to serve.
+   *
+   * @return the number of milliseconds waited
+   * @throws MojoExecutionException if a URL does not serve within {@code timeoutMillis}, or the
+   *     server process exits
+   */
+  long await(long timeoutMillis) throws MojoExecutionException, InterruptedException {
+    long start = System.nanoTime();
+    List<URL> pending = new ArrayList<>(urls);
+    // why each pending URL did not serve the last time it was probed
+    Map<URL, String> failures = new HashMap<>();
+    long delay = initialDelayMillis;
+    while (true) {
+      for (URL url : new ArrayList<>(pending)) {
+        String failure = probe(url);
+        if (failure == null) {
+          pending.remove(url);
+        } else {
+          failures.put(url, failure);
+        }
+      }
+      if (process != null && !process.isAlive()) {
+        throw new MojoExecutionException(
+            "The Dev App Server exited with code "
+                + process.exitValue()
+                + (pending.isEmpty() ? "" : " before serving " + pending.get(0))
+                + ", see its log file");
+      }
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      if (pending.isEmpty()) {
+        return elapsed;
+      }
+      long remaining = timeoutMillis - elapsed;
+      if (remaining <= 0) {
+        URL url = pending.get(0);
+        throw new MojoExecutionException(
+            "The Dev App Server did not serve "
+                + url
+                + " within "
+                + TimeUnit.MILLISECONDS.toSeconds(timeoutMillis)
+                + " seconds: "
+                + failures.get(url));
+      }
+      // the last sleep is cut short, for a final probe at the timeout
+      Thread.sleep(Math.min(delay, remaining));
+      delay = Math.min(delay * 2, MAX_DELAY_MILLIS);
+    }
+  }
+
+  /** Returns null if {@code url} serves, or why not. */
+  private String probe(URL url) {
+    HttpURLConnection connection = null;
+    try {
+      connection = (HttpURLConnection) url.openConnection();
+      connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+      connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+      connection.setInstanceFollowRedirects(false);
+      int status = connection.getResponseCode();
+      if (status >= 200 && status < 500) {
+        log.debug(url + " served with status " + status);
+        return null;
+      }
+      log.debug(url + " not ready, status " + status);
+      return "status " + status;
+    } catch (IOException ex) {
+      log.debug(url + " not ready: " + ex);
+      return ex.toString();
+    } finally {
+      if (connection != null) {
+        connection.disconnect();
+      }
+    }
+  }
+}
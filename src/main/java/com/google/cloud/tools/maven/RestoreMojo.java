@@ -16,24 +16,18 @@
 
 package com.google.cloud.tools.maven;
 
-import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
 
-public class NoOpProgressListener implements ProgressListener {
-
-  @Override
-  public void start(String s, long l) {}
-
-  @Override
-  public void update(long l) {}
-
-  @Override
-  public void update(String s) {}
-
-  @Override
-  public void done() {}
+/**
+ * Restores the datastore of a stopped Dev App Server from a snapshot saved by the snapshot goal,
+ * copying only the files changed since.
+ */
+@Mojo(name = "restore")
+public class RestoreMojo extends AbstractSnapshotMojo {
 
   @Override
-  public ProgressListener newChild(long l) {
-    return new NoOpProgressListener();
+  public void execute() throws MojoExecutionException {
+    executeTimed(() -> getSnapshot().restore(getDatastorePaths(), getLog()));
   }
 }
@@ -17,7 +17,24 @@
 package com.google.cloud.tools.maven;
 
 import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.cloud.tools.appengine.api.devserver.DefaultRunConfiguration;
+import com.google.cloud.tools.appengine.api.devserver.RunConfiguration;
 import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -26,6 +43,8 @@ import org.apache.maven.plugins.annotations.Parameter;
 @Mojo(name = "start", defaultPhase = LifecyclePhase.DEPLOY)
 public class RunAsyncMojo extends RunMojo {
 
+  private static final int DEFAULT_PORT = 8080;
+
   /** Number of seconds to wait for the server to start. Set to 0 to not wait. */
   @Parameter(
     defaultValue = "30",
@@ -34,21 +53,271 @@ public class RunAsyncMojo extends RunMojo {
   )
   protected int startSuccessTimeout;
 
+  /**
+   * Paths, like /_ah/health, that the Dev App Server must serve for the goal to consider it
+   * started, instead of waiting for its startup message. They are polled with increasing delays,
+   * for up to {@code startSuccessTimeout} seconds, until they answer with a status below 500.
+   */
+  @Parameter(alias = "devserver.readinessPaths", property = "app.devserver.readinessPaths")
+  protected List<String> readinessPaths;
+
+  /**
+   * Number of Dev App Servers to start side by side, so that integration tests can be sharded
+   * across them. Each server gets free ports and its own storage and log file under
+   * dev-appserver-out/instance-N, instead of the configured ports, storagePath and datastorePath.
+   * Their URLs are published as the comma separated app.devserver.endpoints project property.
+   */
+  @Parameter(
+    defaultValue = "1",
+    alias = "devserver.instances",
+    property = "app.devserver.instances"
+  )
+  protected int instances;
+
+  /**
+   * Size in megabytes at which the Dev App Server log file, dev_appserver.out, is rotated. Set to 0
+   * to not rotate it by size.
+   */
+  @Parameter(
+    defaultValue = "100",
+    alias = "devserver.logMaxSize",
+    property = "app.devserver.logMaxSize"
+  )
+  protected long logMaxSize;
+
+  /**
+   * Number of minutes after which the Dev App Server log file is rotated. Set to 0 to not rotate it
+   * by age.
+   */
+  @Parameter(
+    defaultValue = "0",
+    alias = "devserver.logRotationInterval",
+    property = "app.devserver.logRotationInterval"
+  )
+  protected long logRotationInterval;
+
+  /** Number of rotated Dev App Server log files to keep. Set to 0 to keep them all. */
+  @Parameter(
+    defaultValue = "5",
+    alias = "devserver.logMaxFiles",
+    property = "app.devserver.logMaxFiles"
+  )
+  protected int logMaxFiles;
+
+  /** Whether to gzip rotated Dev App Server log files. */
+  @Parameter(
+    defaultValue = "false",
+    alias = "devserver.logCompress",
+    property = "app.devserver.logCompress"
+  )
+  protected boolean logCompress;
+
   @Override
-  protected void runServer(SupportedDevServerVersion version) {
-    getLog()
-        .info(
-            "Waiting "
-                + startSuccessTimeout
-                + " seconds for the Dev App Server "
-                + devserverVersion
-                + " to start.");
+  protected void runServer(SupportedDevServerVersion version) throws MojoExecutionException {
+    if (instances > 1) {
+      runPool(version);
+      return;
+    }
+    // the stop goal reads the ports of a single server only, the pool has its own file
+    saveAllocatedPorts();
+    if (readinessPaths == null || readinessPaths.isEmpty()) {
+      getLog()
+          .info(
+              "Waiting "
+                  + startSuccessTimeout
+                  + " seconds for the Dev App Server "
+                  + devserverVersion
+                  + " to start.");
+      startServer(version, startSuccessTimeout, null);
+    } else {
+      List<URL> urls = getReadinessUrls();
+      getLog()
+          .info(
+              "Waiting up to "
+                  + startSuccessTimeout
+                  + " seconds for the Dev App Server "
+                  + devserverVersion
+                  + " to serve "
+                  + urls
+                  + ".");
+      long start = System.nanoTime();
+      try (TimingReport.Span span = startSpan("dev-appserver-ready")) {
+        AtomicReference<Process> process = new AtomicReference<>();
+        // the server output is not waited for
+        startServer(version, 0, process::set);
+        new ReadinessProbe(urls, getLog(), process.get())
+            .await(TimeUnit.SECONDS.toMillis(startSuccessTimeout));
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new MojoExecutionException("Interrupted while waiting for the Dev App Server", ex);
+      }
+      getLog()
+          .info(
+              String.format("Dev App Server ready in %.1f s.", (System.nanoTime() - start) / 1e9));
+    }
+    getLog().info("Dev App Server " + devserverVersion + " started.");
+    getLog().info("Use the 'mvn appengine:stop' command to stop the server.");
+  }
+
+  private void startServer(
+      SupportedDevServerVersion version, int timeout, Consumer<Process> processListener) {
+    Path logFile =
+        DevServerLogWriter.getLogFile(Paths.get(getMavenProject().getBuild().getDirectory()));
     try {
-      getAppEngineFactory().devServerRunAsync(startSuccessTimeout, version).run(this);
+      getAppEngineFactory()
+          .devServerRunAsync(timeout, version, getLogRotation(), logFile, processListener)
+          .run(this);
     } catch (AppEngineException ex) {
       throw new RuntimeException(ex);
     }
-    getLog().info("Dev App Server " + devserverVersion + " started.");
-    getLog().info("Use the 'mvn appengine:stop' command to stop the server.");
+  }
+
+  @Override
+  protected void restoreDatastore(SupportedDevServerVersion version) throws MojoExecutionException {
+    // the servers of a pool are restored as they start
+    if (instances <= 1) {
+      super.restoreDatastore(version);
+    }
+  }
+
+  /** Starts {@code instances} servers concurrently and waits for all of them to start. */
+  private void runPool(SupportedDevServerVersion version) throws MojoExecutionException {
+    if (storagePath != null || datastorePath != null) {
+      getLog().warn("Each Dev App Server of the pool uses its own storagePath and datastorePath.");
+    }
+    Path buildDirectory = Paths.get(getMavenProject().getBuild().getDirectory());
+    DevServerPool pool;
+    try {
+      pool = DevServerPool.allocate(host, instances, buildDirectory);
+      // saved first, so that the stop goal finds the servers started before a failure
+      pool.save(DevServerPool.getFile(buildDirectory));
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to allocate the Dev App Server pool", ex);
+    }
+    getLog()
+        .info(
+            "Starting "
+                + instances
+                + " Dev App Servers "
+                + devserverVersion
+                + ", waiting up to "
+                + startSuccessTimeout
+                + " seconds for each.");
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (DevServerPool.Instance instance : pool.getInstances()) {
+      tasks.add(
+          () -> {
+            startInstance(version, instance);
+            return null;
+          });
+    }
+    long start = System.nanoTime();
+    try (TimingReport.Span span = startSpan("dev-appserver-ready")) {
+      if (span != null) {
+        span.setAttribute("instances", Integer.toString(instances));
+      }
+      // the servers mostly wait for their process, one task each
+      ParallelTasks.invokeAll(tasks, instances, "starting the Dev App Server pool");
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to start the Dev App Server pool", ex);
+    }
+    pool.publish(getMavenProject().getProperties());
+    getLog()
+        .info(
+            String.format(
+                "%d Dev App Servers ready in %.1f s: %s",
+                instances, (System.nanoTime() - start) / 1e9, pool.getEndpoints()));
+    getLog().info("Use the 'mvn appengine:stop' command to stop the servers.");
+  }
+
+  private void startInstance(SupportedDevServerVersion version, DevServerPool.Instance instance)
+      throws AppEngineException, IOException, MojoExecutionException, InterruptedException {
+    Files.createDirectories(instance.getStoragePath());
+    if (restoreSnapshot != null) {
+      Map<String, Path> paths = new LinkedHashMap<>();
+      paths.put(DatastoreSnapshot.DATASTORE, instance.getDatastorePath());
+      paths.put(DatastoreSnapshot.STORAGE, instance.getStoragePath());
+      restoreDatastore(paths);
+    }
+    boolean probed = readinessPaths != null && !readinessPaths.isEmpty();
+    AtomicReference<Process> process = new AtomicReference<>();
+    getAppEngineFactory()
+        .devServerRunAsync(
+            probed ? 0 : startSuccessTimeout,
+            version,
+            getLogRotation(),
+            instance.getLogFile(),
+            process::set)
+        .run(getInstanceConfiguration(version, instance));
+    if (probed) {
+      new ReadinessProbe(getReadinessUrls(instance.getPorts().getPort()), getLog(), process.get())
+          .await(TimeUnit.SECONDS.toMillis(startSuccessTimeout));
+    }
+    getLog()
+        .info("Dev App Server " + instance.getIndex() + " started at " + instance.getEndpoint());
+  }
+
+  /** Returns this configuration with the ports and storage of {@code instance}. */
+  RunConfiguration getInstanceConfiguration(
+      SupportedDevServerVersion version, DevServerPool.Instance instance) {
+    DefaultRunConfiguration configuration = new DefaultRunConfiguration();
+    configuration.setServices(getServices());
+    configuration.setHost(instance.getPorts().getHost());
+    configuration.setPort(instance.getPorts().getPort());
+    configuration.setAdminHost(getAdminHost());
+    configuration.setAuthDomain(getAuthDomain());
+    configuration.setLogLevel(getLogLevel());
+    configuration.setMaxModuleInstances(getMaxModuleInstances());
+    configuration.setUseMtimeFileWatcher(getUseMtimeFileWatcher());
+    configuration.setThreadsafeOverride(getThreadsafeOverride());
+    configuration.setPythonStartupScript(getPythonStartupScript());
+    configuration.setPythonStartupArgs(getPythonStartupArgs());
+    configuration.setCustomEntrypoint(getCustomEntrypoint());
+    configuration.setRuntime(getRuntime());
+    configuration.setAllowSkippedFiles(getAllowSkippedFiles());
+    configuration.setAutomaticRestart(getAutomaticRestart());
+    configuration.setDevAppserverLogLevel(getDevAppserverLogLevel());
+    configuration.setSkipSdkUpdateCheck(getSkipSdkUpdateCheck());
+    configuration.setDefaultGcsBucketName(getDefaultGcsBucketName());
+    configuration.setClearDatastore(getClearDatastore());
+    configuration.setEnvironment(getEnvironment());
+    configuration.setAdditionalArguments(getAdditionalArguments());
+    List<String> flags = jvmFlags == null ? new ArrayList<>() : new ArrayList<>(jvmFlags);
+    if (version == SupportedDevServerVersion.V2ALPHA) {
+      configuration.setAdminPort(instance.getPorts().getAdminPort());
+      configuration.setApiPort(instance.getPorts().getApiPort());
+      configuration.setStoragePath(instance.getStoragePath().toFile());
+      configuration.setDatastorePath(instance.getDatastorePath().toFile());
+    } else {
+      // the version 1 server ignores the storage flags, its datastore file is a system property
+      flags.add("-Ddatastore.backing_store=" + instance.getDatastorePath());
+    }
+    configuration.setJvmFlags(flags);
+    return configuration;
+  }
+
+  List<URL> getReadinessUrls() throws MojoExecutionException {
+    return getReadinessUrls(port == null ? DEFAULT_PORT : port);
+  }
+
+  List<URL> getReadinessUrls(int serverPort) throws MojoExecutionException {
+    List<URL> urls = new ArrayList<>();
+    for (String path : readinessPaths) {
+      try {
+        urls.add(ReadinessProbe.getUrl(host, serverPort, path));
+      } catch (MalformedURLException ex) {
+        throw new MojoExecutionException("Invalid readiness path: " + path, ex);
+      }
+    }
+    return urls;
+  }
+
+  DevServerLogWriter.Rotation getLogRotation() {
+    return new DevServerLogWriter.Rotation(
+        logMaxSize * 1024 * 1024,
+        TimeUnit.MINUTES.toMillis(logRotationInterval),
+        logMaxFiles,
+        logCompress);
   }
 }
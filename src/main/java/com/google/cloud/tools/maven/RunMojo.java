@@ -20,6 +20,9 @@ import com.google.cloud.tools.appengine.api.AppEngineException;
 import com.google.cloud.tools.appengine.api.devserver.RunConfiguration;
 import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -207,6 +210,29 @@ public class RunMojo extends CloudSdkMojo implements RunConfiguration {
   @Parameter(alias = "devserver.apiPort", property = "app.devserver.apiPort")
   protected Integer apiPort;
 
+  /**
+   * Picks free ports for the application, admin and API servers instead of the configured ports, so
+   * that several servers can run on the same machine. The ports are published as the
+   * app.devserver.allocated.port, app.devserver.allocated.adminPort and
+   * app.devserver.allocated.apiPort project properties. A single server started by {@code
+   * appengine:start} saves them to dev-appserver-out/ports.json for the stop goal.
+   */
+  @Parameter(
+    alias = "devserver.autoPorts",
+    property = "app.devserver.autoPorts",
+    defaultValue = "false"
+  )
+  protected boolean autoPorts;
+
+  private DevServerPorts allocatedPorts;
+
+  /**
+   * Name of a datastore snapshot, saved by the snapshot goal, to restore before the server starts
+   * instead of seeding the datastore again. Only the files changed since the snapshot are copied.
+   */
+  @Parameter(alias = "devserver.restoreSnapshot", property = "app.devserver.restoreSnapshot")
+  protected String restoreSnapshot;
+
   /**
    * Restart instances automatically when files relevant to their module are changed. (default:
    * True)
@@ -267,18 +293,26 @@ public class RunMojo extends CloudSdkMojo implements RunConfiguration {
   // shared between these classes is executed
   @Override
   public void execute() throws MojoExecutionException {
-    SupportedDevServerVersion convertedVersion = convertDevserverVersionString();
-    if (services == null || services.isEmpty()) {
-      Build build = getMavenProject().getBuild();
-      services =
-          Collections.singletonList(
-              new File(build.getDirectory()).toPath().resolve(build.getFinalName()).toFile());
-    }
-    verifyAppEngineStandardApp();
-    runServer(convertedVersion);
+    executeTimed(
+        () -> {
+          SupportedDevServerVersion convertedVersion = convertDevserverVersionString();
+          if (services == null || services.isEmpty()) {
+            Build build = getMavenProject().getBuild();
+            services =
+                Collections.singletonList(
+                    new File(build.getDirectory()).toPath().resolve(build.getFinalName()).toFile());
+          }
+          verifyAppEngineStandardApp();
+          if (autoPorts) {
+            allocatePorts();
+          }
+          restoreDatastore(convertedVersion);
+          runServer(convertedVersion);
+        });
   }
 
-  protected void runServer(SupportedDevServerVersion convertedVersion) {
+  protected void runServer(SupportedDevServerVersion convertedVersion)
+      throws MojoExecutionException {
     try {
       getAppEngineFactory().devServerRunSync(convertedVersion).run(this);
     } catch (AppEngineException ex) {
@@ -286,6 +320,67 @@ public class RunMojo extends CloudSdkMojo implements RunConfiguration {
     }
   }
 
+  /** Restores the {@code restoreSnapshot} snapshot, if any, into the storage of the server. */
+  protected void restoreDatastore(SupportedDevServerVersion version) throws MojoExecutionException {
+    if (restoreSnapshot != null) {
+      restoreDatastore(DatastoreSnapshot.getPaths(version, services, datastorePath, storagePath));
+    }
+  }
+
+  /** Restores the {@code restoreSnapshot} snapshot into {@code paths}. */
+  protected void restoreDatastore(Map<String, Path> paths) throws MojoExecutionException {
+    if (paths.isEmpty()) {
+      throw new MojoExecutionException(
+          "Set storagePath or datastorePath to restore the datastore of Dev App Server "
+              + devserverVersion);
+    }
+    if (Boolean.TRUE.equals(clearDatastore)) {
+      getLog().warn("clearDatastore clears the datastore restored from " + restoreSnapshot);
+    }
+    DatastoreSnapshot snapshot =
+        new DatastoreSnapshot(
+            DatastoreSnapshot.getDirectory(
+                Paths.get(getMavenProject().getBuild().getDirectory()), restoreSnapshot));
+    try (TimingReport.Span span = startSpan("datastore-restore")) {
+      snapshot.restore(paths, getLog());
+    }
+  }
+
+  private void allocatePorts() throws MojoExecutionException {
+    try {
+      DevServerPorts ports = DevServerPorts.allocate(host);
+      port = ports.getPort();
+      adminPort = ports.getAdminPort();
+      apiPort = ports.getApiPort();
+      ports.publish(getMavenProject().getProperties());
+      allocatedPorts = ports;
+      getLog()
+          .info(
+              "Dev App Server ports: "
+                  + port
+                  + " (application), "
+                  + adminPort
+                  + " (admin), "
+                  + apiPort
+                  + " (API)");
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to allocate the Dev App Server ports", ex);
+    }
+  }
+
+  /** Saves the ports picked by {@code autoPorts}, if any, for the stop goal. */
+  protected void saveAllocatedPorts() throws MojoExecutionException {
+    if (allocatedPorts == null) {
+      return;
+    }
+    try {
+      allocatedPorts.save(
+          DevServerPorts.getFile(Paths.get(getMavenProject().getBuild().getDirectory())));
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to save the Dev App Server ports", ex);
+    }
+  }
+
   /**
    * Verifies that {@code version} is of the supported values.
    *
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+/**
+ * Saves the datastore of a stopped Dev App Server, typically once test fixtures are seeded, to be
+ * restored by the restore goal or the restoreSnapshot parameter of the run and start goals.
+ */
+@Mojo(name = "snapshot")
+public class SnapshotMojo extends AbstractSnapshotMojo {
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    executeTimed(
+        () -> {
+          Map<String, Path> paths = getDatastorePaths();
+          long start = System.nanoTime();
+          try {
+            int saved = getSnapshot().save(paths);
+            getLog()
+                .info(
+                    String.format(
+                        "Saved %d files of %s to snapshot '%s' in %d ms",
+                        saved, paths.values(), snapshot, (System.nanoTime() - start) / 1000000));
+          } catch (IOException ex) {
+            throw new MojoExecutionException("Failed to save datastore snapshot " + snapshot, ex);
+          }
+        });
+  }
+}
@@ -32,8 +32,11 @@ public class StageMojo extends AbstractStageMojo
 
   @Override
   public void execute() throws MojoExecutionException {
-    AppEngineStager stager = AppEngineStager.Factory.newStager(this);
-    stager.overrideAppEngineDirectory();
-    stager.stage();
+    executeTimed(
+        () -> {
+          AppEngineStager stager = AppEngineStager.Factory.newStager(this);
+          stager.overrideAppEngineDirectory();
+          stager.stage();
+        });
   }
 }
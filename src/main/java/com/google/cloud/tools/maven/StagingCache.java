@@ -0,0 +1,299 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A local content-addressed cache of staging directories that can be shared by several modules and
+ * builds.
+ *
+ * <p>Every staged file is stored once under {@code blobs/}, named after the SHA-256 digest of its
+ * content, and an index under {@code index/} maps the digest of the staging inputs to the list of
+ * staged files. Restoring a staging directory hard-links the cached files into it, and falls back
+ * to copying them when the cache is on another file system. A linked file shares its content with
+ * the cache, so files are copied instead for staging directories that are later modified in place.
+ * Cached files are evicted in least recently used order once the cache grows larger than its
+ * maximum size, along with the indexes that list them. A file was last used when the most recently
+ * used index that lists it was, as the modification time of a file is shared by its links.
+ */
+public class StagingCache {
+
+  private final Path blobsDirectory;
+  private final Path indexDirectory;
+  private final long maxSize;
+  private final boolean linkFiles;
+
+  /**
+   * Constructs a cache that hard-links files.
+   *
+   * @param cacheDirectory the directory in which the cache is kept
+   * @param maxSize the maximum size of all the cached files, in bytes
+   */
+  public StagingCache(Path cacheDirectory, long maxSize) {
+    this(cacheDirectory, maxSize, true);
+  }
+
+  /**
+   * Constructs a cache.
+   *
+   * @param cacheDirectory the directory in which the cache is kept
+   * @param maxSize the maximum size of all the cached files, in bytes
+   * @param linkFiles whether to hard-link files between the cache and staging directories, which
+   *     must then never be modified in place, instead of copying them
+   */
+  public StagingCache(Path cacheDirectory, long maxSize, boolean linkFiles) {
+    this.blobsDirectory = cacheDirectory.resolve("blobs");
+    this.indexDirectory = cacheDirectory.resolve("index");
+    this.maxSize = maxSize;
+    this.linkFiles = linkFiles;
+  }
+
+  /**
+   * Populates {@code stagingDirectory} with the files cached for {@code key}.
+   *
+   * @return false if nothing or only part of the staging output is cached for {@code key}, in which
+   *     case {@code stagingDirectory} is left untouched
+   */
+  public boolean restore(String key, Path stagingDirectory) throws IOException {
+    Path indexFile = indexDirectory.resolve(key);
+    if (!Files.isRegularFile(indexFile)) {
+      return false;
+    }
+    Map<String, Path> files = new LinkedHashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", 2);
+        if (fields.length != 2) {
+          return false;
+        }
+        Path blob = getBlob(fields[0]);
+        if (!Files.isRegularFile(blob)) {
+          return false;
+        }
+        files.put(fields[1], blob);
+      }
+    }
+
+    for (Map.Entry<String, Path> file : files.entrySet()) {
+      Path target = stagingDirectory.resolve(file.getKey());
+      Files.createDirectories(target.getParent());
+      transfer(file.getValue(), target);
+    }
+    Files.setLastModifiedTime(indexFile, FileTime.fromMillis(System.currentTimeMillis()));
+    return true;
+  }
+
+  /**
+   * Adds every file of {@code stagingDirectory} to the cache under {@code key}, then evicts the
+   * least recently used files if the cache grew too large.
+   */
+  public void store(String key, Path stagingDirectory) throws IOException {
+    List<String> lines = new ArrayList<>();
+    Files.walkFileTree(
+        stagingDirectory,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (attrs.isRegularFile()) {
+              String digest = StagingManifest.hash(file);
+              Path blob = getBlob(digest);
+              if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                try {
+                  transfer(file, blob);
+                } catch (FileAlreadyExistsException ex) {
+                  // another build cached the same content first
+                }
+              }
+              lines.add(digest + "\t" + StagingManifest.relativize(stagingDirectory, file));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+
+    Files.createDirectories(indexDirectory);
+    Path temporaryIndex = indexDirectory.resolve(key + "." + UUID.randomUUID() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temporaryIndex, StandardCharsets.UTF_8)) {
+      for (String line : lines) {
+        writer.write(line);
+        writer.newLine();
+      }
+    }
+    Files.move(temporaryIndex, indexDirectory.resolve(key), StandardCopyOption.REPLACE_EXISTING);
+
+    evict();
+  }
+
+  /** Deletes the least recently used files until the cache is no larger than its maximum size. */
+  @VisibleForTesting
+  void evict() throws IOException {
+    if (!Files.isDirectory(blobsDirectory)) {
+      return;
+    }
+    List<Path> blobs = new ArrayList<>();
+    Files.walkFileTree(
+        blobsDirectory,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            blobs.add(file);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+
+    long size = 0;
+    Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+    for (Path blob : blobs) {
+      BasicFileAttributes blobAttributes = Files.readAttributes(blob, BasicFileAttributes.class);
+      attributes.put(blob, blobAttributes);
+      size += blobAttributes.size();
+    }
+    if (size <= maxSize) {
+      return;
+    }
+
+    Map<String, FileTime> lastUsed = getLastUsedTimes();
+    FileTime never = FileTime.fromMillis(Long.MIN_VALUE);
+    blobs.sort(
+        Comparator.comparing(blob -> lastUsed.getOrDefault(blob.getFileName().toString(), never)));
+    Set<String> evicted = new HashSet<>();
+    for (Path blob : blobs) {
+      if (size <= maxSize) {
+        break;
+      }
+      Files.deleteIfExists(blob);
+      evicted.add(blob.getFileName().toString());
+      size -= attributes.get(blob).size();
+    }
+    deleteIndexes(evicted);
+  }
+
+  /**
+   * Returns the time each cached digest was last used, the modification time of the most recent
+   * index listing it. Indexes being written count as just used.
+   */
+  private Map<String, FileTime> getLastUsedTimes() throws IOException {
+    Map<String, FileTime> lastUsed = new HashMap<>();
+    if (!Files.isDirectory(indexDirectory)) {
+      return lastUsed;
+    }
+    try (DirectoryStream<Path> indexFiles = Files.newDirectoryStream(indexDirectory)) {
+      for (Path indexFile : indexFiles) {
+        FileTime used;
+        List<String> lines;
+        try {
+          used = Files.getLastModifiedTime(indexFile);
+          lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException ex) {
+          // moved into place or evicted by another build
+          continue;
+        }
+        for (String line : lines) {
+          int tab = line.indexOf('\t');
+          if (tab >= 0) {
+            lastUsed.merge(line.substring(0, tab), used, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+          }
+        }
+      }
+    }
+    return lastUsed;
+  }
+
+  /** Deletes the indexes that list any of the {@code evicted} digests, as they cannot restore. */
+  private void deleteIndexes(Set<String> evicted) throws IOException {
+    if (evicted.isEmpty() || !Files.isDirectory(indexDirectory)) {
+      return;
+    }
+    try (DirectoryStream<Path> indexFiles = Files.newDirectoryStream(indexDirectory)) {
+      for (Path indexFile : indexFiles) {
+        if (indexFile.getFileName().toString().endsWith(".tmp")) {
+          // being written by another build
+          continue;
+        }
+        if (listsAny(indexFile, evicted)) {
+          Files.deleteIfExists(indexFile);
+        }
+      }
+    }
+  }
+
+  private static boolean listsAny(Path indexFile, Set<String> digests) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int tab = line.indexOf('\t');
+        if (tab < 0 || digests.contains(line.substring(0, tab))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private Path getBlob(String digest) {
+    return blobsDirectory.resolve(digest.substring(0, 2)).resolve(digest);
+  }
+
+  /**
+   * Hard-links {@code source} to {@code target} if the cache links files and linking is possible,
+   * or copies it.
+   */
+  private void transfer(Path source, Path target) throws IOException {
+    if (linkFiles) {
+      try {
+        Files.createLink(target, source);
+        return;
+      } catch (FileAlreadyExistsException ex) {
+        throw ex;
+      } catch (IOException | UnsupportedOperationException ex) {
+        // different file systems, or links are not supported
+      }
+    } else if (Files.exists(target)) {
+      throw new FileAlreadyExistsException(target.toString());
+    }
+    // copy and move into place atomically
+    Path temporary = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID());
+    Files.copy(source, temporary, StandardCopyOption.COPY_ATTRIBUTES);
+    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
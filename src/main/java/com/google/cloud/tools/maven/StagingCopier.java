@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/** Copies files from the source directory to the staging directory with a {@link Strategy}. */
+public class StagingCopier {
+
+  private static final String TEMPORARY_PREFIX = ".copy-";
+
+  public enum Strategy {
+    /** Copy every file. */
+    COPY,
+    /**
+     * Hard-link every file, falling back to a {@link FileChannel#transferTo} copy when the source
+     * and target are on different file systems.
+     */
+    LINK
+  }
+
+  private final Strategy strategy;
+
+  public StagingCopier(Strategy strategy) {
+    this.strategy = strategy;
+  }
+
+  /**
+   * Returns the copier for a strategy name, ignoring case.
+   *
+   * @throws IllegalArgumentException if there is no such strategy
+   */
+  public static StagingCopier forName(String strategy) {
+    return new StagingCopier(Strategy.valueOf(strategy.toUpperCase(Locale.ROOT)));
+  }
+
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  /** Copies the regular file {@code source} to {@code target}, replacing it if it exists. */
+  public void copy(Path source, Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    if (strategy == Strategy.COPY) {
+      Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+      return;
+    }
+
+    Files.deleteIfExists(target);
+    try {
+      Files.createLink(target, source);
+    } catch (UnsupportedOperationException | IOException ex) {
+      // different file systems, or links are not supported
+      transfer(source, target);
+    }
+  }
+
+  /** Copies every file of {@code paths}, relative to {@code source}, in parallel. */
+  public void copyAll(Path source, Path target, Collection<String> paths) throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (String path : paths) {
+      tasks.add(
+          () -> {
+            copy(source.resolve(path), target.resolve(path));
+            return null;
+          });
+    }
+    ParallelTasks.invokeAll(tasks, "copying files");
+  }
+
+  /** Copies every regular file under {@code source} to the same path under {@code target}. */
+  public void copyDirectory(Path source, Path target) throws IOException {
+    List<String> paths = new ArrayList<>();
+    Files.walkFileTree(
+        source,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) {
+              paths.add(StagingManifest.relativize(source, file));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    copyAll(source, target, paths);
+  }
+
+  /**
+   * Copies {@code source} to {@code target} like {@link #copyAtomically}, unless {@code target} has
+   * the size and modification time of {@code source}.
+   *
+   * @return whether the file was copied
+   */
+  static boolean copyIfChanged(Path source, Path target) throws IOException {
+    if (Files.isRegularFile(target)) {
+      BasicFileAttributes sourceAttributes =
+          Files.readAttributes(source, BasicFileAttributes.class);
+      BasicFileAttributes targetAttributes =
+          Files.readAttributes(target, BasicFileAttributes.class);
+      if (sourceAttributes.size() == targetAttributes.size()
+          && sourceAttributes.lastModifiedTime().equals(targetAttributes.lastModifiedTime())) {
+        return false;
+      }
+    }
+    copyAtomically(source, target);
+    return true;
+  }
+
+  /**
+   * Copies {@code source}, with its attributes, to {@code target} through a temporary file renamed
+   * over {@code target}, atomically where supported, so that a reader of {@code target} never sees
+   * a partial file.
+   */
+  static void copyAtomically(Path source, Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    Path temporary = target.resolveSibling(TEMPORARY_PREFIX + target.getFileName());
+    Files.copy(
+        source, temporary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    move(temporary, target);
+  }
+
+  /** Returns whether {@code file} is a temporary file of {@link #copyAtomically}. */
+  static boolean isTemporary(Path file) {
+    return file.getFileName().toString().startsWith(TEMPORARY_PREFIX);
+  }
+
+  /** Renames {@code source} over {@code target}, atomically where supported. */
+  static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+          source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException ex) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void transfer(Path source, Path target) throws IOException {
+    try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ);
+        FileChannel output =
+            FileChannel.open(
+                target,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+      long size = input.size();
+      long position = 0;
+      while (position < size) {
+        position += input.transferTo(position, size - position, output);
+      }
+    }
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Record of the content hash, size and modification time of every file under a directory, used to
+ * detect which files changed between two staging runs.
+ *
+ * <p>Paths are stored relative to the scanned directory with '/' as separator.
+ */
+public class StagingManifest {
+
+  private static final String OPTIONS_PREFIX = "options=";
+
+  private final String options;
+  private final SortedMap<String, Entry> entries;
+
+  StagingManifest(String options, SortedMap<String, Entry> entries) {
+    this.options = Preconditions.checkNotNull(options);
+    this.entries = Collections.unmodifiableSortedMap(entries);
+  }
+
+  /**
+   * Scans {@code root} and records every regular file found. Content hashes are only recomputed for
+   * files whose size or modification time differ from {@code previous}.
+   *
+   * @param root the directory to scan
+   * @param options a description of the options the directory is staged with
+   * @param previous a previous manifest of the same directory, or null
+   */
+  public static StagingManifest scan(Path root, String options, StagingManifest previous)
+      throws IOException {
+    return scan(root, options, previous, Hashing.sha256());
+  }
+
+  /**
+   * Like {@link #scan(Path, String, StagingManifest)}, hashing content with {@code hashFunction}.
+   * {@code previous} must have been scanned with the same function.
+   */
+  public static StagingManifest scan(
+      Path root, String options, StagingManifest previous, HashFunction hashFunction)
+      throws IOException {
+    SortedMap<String, Entry> entries = new TreeMap<>();
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (!attrs.isRegularFile()) {
+              return FileVisitResult.CONTINUE;
+            }
+            String path = relativize(root, file);
+            long size = attrs.size();
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            Entry known = previous == null ? null : previous.entries.get(path);
+            if (known != null && known.size == size && known.lastModified == lastModified) {
+              entries.put(path, known);
+            } else {
+              entries.put(path, new Entry(hash(file, hashFunction), size, lastModified));
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return new StagingManifest(options, entries);
+  }
+
+  /** Reads a manifest written by {@link #save}, or returns null if there is none. */
+  public static StagingManifest load(Path manifestFile) throws IOException {
+    if (!Files.isRegularFile(manifestFile)) {
+      return null;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+      String header = reader.readLine();
+      if (header == null || !header.startsWith(OPTIONS_PREFIX)) {
+        return null;
+      }
+      SortedMap<String, Entry> entries = new TreeMap<>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", 4);
+        if (fields.length != 4) {
+          // a corrupt manifest is the same as no manifest
+          return null;
+        }
+        entries.put(
+            fields[3], new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+      }
+      return new StagingManifest(header.substring(OPTIONS_PREFIX.length()), entries);
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+
+  /** Writes this manifest to {@code manifestFile}. */
+  public void save(Path manifestFile) throws IOException {
+    Files.createDirectories(manifestFile.getParent());
+    try (BufferedWriter writer = Files.newBufferedWriter(manifestFile, StandardCharsets.UTF_8)) {
+      writer.write(OPTIONS_PREFIX + options);
+      writer.newLine();
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        Entry value = entry.getValue();
+        writer.write(
+            value.hash + "\t" + value.size + "\t" + value.lastModified + "\t" + entry.getKey());
+        writer.newLine();
+      }
+    }
+  }
+
+  public String getOptions() {
+    return options;
+  }
+
+  public SortedMap<String, Entry> getEntries() {
+    return entries;
+  }
+
+  /** Returns a digest of the options and of the path and content of every file. */
+  public String getDigest() {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(options, StandardCharsets.UTF_8).putChar('\n');
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      hasher
+          .putString(entry.getKey(), StandardCharsets.UTF_8)
+          .putChar('\t')
+          .putString(entry.getValue().hash, StandardCharsets.UTF_8)
+          .putChar('\n');
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Returns a digest of {@code options} and of the path, size and modification time of every
+   * regular file under {@code root}. Cheaper than a {@link #scan} since no content is read.
+   */
+  public static String fingerprint(Path root, String options) throws IOException {
+    SortedMap<String, String> files = new TreeMap<>();
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) {
+              files.put(
+                  relativize(root, file),
+                  attrs.size() + "\t" + attrs.lastModifiedTime().toMillis());
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(options, StandardCharsets.UTF_8).putChar('\n');
+    for (Map.Entry<String, String> file : files.entrySet()) {
+      hasher
+          .putString(file.getKey(), StandardCharsets.UTF_8)
+          .putChar('\t')
+          .putString(file.getValue(), StandardCharsets.UTF_8)
+          .putChar('\n');
+    }
+    return hasher.hash().toString();
+  }
+
+  /** Returns the paths that were added or whose content changed since {@code previous}. */
+  public SortedSet<String> getChangedSince(StagingManifest previous) {
+    SortedSet<String> changed = new TreeSet<>();
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      Entry known = previous.entries.get(entry.getKey());
+      if (known == null || !known.hash.equals(entry.getValue().hash)) {
+        changed.add(entry.getKey());
+      }
+    }
+    return changed;
+  }
+
+  /** Returns the paths that were present in {@code previous} but are not anymore. */
+  public SortedSet<String> getRemovedSince(StagingManifest previous) {
+    SortedSet<String> removed = new TreeSet<>(previous.entries.keySet());
+    removed.removeAll(entries.keySet());
+    return removed;
+  }
+
+  static String relativize(Path root, Path file) {
+    return root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+  }
+
+  static String hash(Path file) throws IOException {
+    return hash(file, Hashing.sha256());
+  }
+
+  static String hash(Path file, HashFunction hashFunction) throws IOException {
+    return com.google.common.io.Files.asByteSource(file.toFile()).hash(hashFunction).toString();
+  }
+
+  /** Content hash, size and modification time of a single file. */
+  public static class Entry {
+
+    private final String hash;
+    private final long size;
+    private final long lastModified;
+
+    Entry(String hash, long size, long lastModified) {
+      this.hash = hash;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Entry)) {
+        return false;
+      }
+      Entry entry = (Entry) other;
+      return size == entry.size && lastModified == entry.lastModified && hash.equals(entry.hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(hash, size, lastModified);
+    }
+  }
+}
@@ -17,9 +17,17 @@
 package com.google.cloud.tools.maven;
 
 import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.cloud.tools.appengine.api.devserver.DefaultStopConfiguration;
 import com.google.cloud.tools.appengine.api.devserver.StopConfiguration;
 import com.google.cloud.tools.appengine.cloudsdk.CloudSdkNotFoundException;
 import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -64,6 +72,18 @@ public class StopMojo extends CloudSdkMojo implements StopConfiguration {
     } catch (IllegalArgumentException ex) {
       throw new MojoExecutionException("Invalid version", ex);
     }
+    Path portsFile =
+        getMavenProject() == null
+            ? null
+            : DevServerPorts.getFile(Paths.get(getMavenProject().getBuild().getDirectory()));
+    boolean savedPorts = false;
+    if (portsFile != null && port == null && adminPort == null) {
+      Path poolFile = DevServerPool.getFile(Paths.get(getMavenProject().getBuild().getDirectory()));
+      if (stopPool(convertedVersion, poolFile)) {
+        return;
+      }
+      savedPorts = loadPorts(portsFile);
+    }
     try {
       getAppEngineFactory().devServerStop(convertedVersion).stop(this);
     } catch (CloudSdkNotFoundException ex) {
@@ -71,6 +91,101 @@ public class StopMojo extends CloudSdkMojo implements StopConfiguration {
     } catch (AppEngineException ex) {
       getLog().error("Failed to stop server: " + ex.getMessage());
     }
+    if (getMavenProject() != null) {
+      // the log writer of a server started by this build
+      DevServerLogWriter.close(
+          DevServerLogWriter.getLogFile(Paths.get(getMavenProject().getBuild().getDirectory())));
+    }
+    if (savedPorts) {
+      try {
+        Files.deleteIfExists(portsFile);
+      } catch (IOException ex) {
+        getLog().warn("Failed to delete " + portsFile + ": " + ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stops every server of the pool started by {@code appengine:start}, concurrently.
+   *
+   * @return false if there is no pool
+   */
+  private boolean stopPool(SupportedDevServerVersion version, Path poolFile)
+      throws MojoExecutionException {
+    DevServerPool pool;
+    try {
+      pool = DevServerPool.load(poolFile);
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to read the Dev App Server pool", ex);
+    }
+    if (pool == null) {
+      return false;
+    }
+    getLog()
+        .info("Stopping " + pool.getInstances().size() + " Dev App Servers saved in " + poolFile);
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (DevServerPool.Instance instance : pool.getInstances()) {
+      tasks.add(
+          () -> {
+            stopInstance(version, instance);
+            return null;
+          });
+    }
+    try {
+      ParallelTasks.invokeAll(tasks, tasks.size(), "stopping the Dev App Server pool");
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Stop failed", ex.getCause());
+    }
+    try {
+      Files.deleteIfExists(poolFile);
+    } catch (IOException ex) {
+      getLog().warn("Failed to delete " + poolFile + ": " + ex.getMessage());
+    }
+    return true;
+  }
+
+  private void stopInstance(SupportedDevServerVersion version, DevServerPool.Instance instance)
+      throws CloudSdkNotFoundException {
+    DefaultStopConfiguration configuration = new DefaultStopConfiguration();
+    configuration.setAdminHost(instance.getPorts().getHost());
+    // https://github.com/GoogleCloudPlatform/app-maven-plugin/issues/164
+    if (version == SupportedDevServerVersion.V2ALPHA) {
+      configuration.setAdminPort(instance.getPorts().getAdminPort());
+    } else {
+      configuration.setAdminPort(instance.getPorts().getPort());
+    }
+    try {
+      getAppEngineFactory().devServerStop(version).stop(configuration);
+    } catch (CloudSdkNotFoundException ex) {
+      throw ex;
+    } catch (AppEngineException ex) {
+      getLog().error("Failed to stop server " + instance.getIndex() + ": " + ex.getMessage());
+    } finally {
+      DevServerLogWriter.close(instance.getLogFile());
+    }
+  }
+
+  /**
+   * Stops the server started with the ports picked by {@code appengine:start}, if any.
+   *
+   * @return whether ports were read from {@code portsFile}
+   */
+  private boolean loadPorts(Path portsFile) throws MojoExecutionException {
+    try {
+      DevServerPorts ports = DevServerPorts.load(portsFile);
+      if (ports != null) {
+        getLog().info("Stopping the Dev App Server on the ports saved in " + portsFile);
+        if (host == null) {
+          host = ports.getHost();
+        }
+        port = ports.getPort();
+        adminPort = ports.getAdminPort();
+        return true;
+      }
+      return false;
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to read the Dev App Server ports", ex);
+    }
   }
 
   @Override
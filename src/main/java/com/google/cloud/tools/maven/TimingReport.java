@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the phases of a goal execution as nested spans, and writes them as a JSON report and as
+ * OpenTelemetry spans.
+ *
+ * <p>A span started by a thread is a child of the innermost span the same thread has open, or of
+ * the span of the goal. Spans are closed by the thread that started them.
+ */
+public class TimingReport {
+
+  private static final SecureRandom RANDOM = new SecureRandom();
+  private static final String INSTRUMENTATION_SCOPE = "appengine-maven-plugin";
+
+  private final Ticker ticker;
+  private final long startEpochNanos;
+  private final long startTickerNanos;
+  private final String traceId;
+  private final Span root;
+  private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Deque<Span>> openSpans = ThreadLocal.withInitial(ArrayDeque::new);
+
+  /** Starts the report and the span of {@code goal}. */
+  public TimingReport(String goal) {
+    this(goal, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  TimingReport(String goal, Ticker ticker) {
+    this.ticker = ticker;
+    this.startEpochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    this.startTickerNanos = ticker.read();
+    this.traceId = randomHex(16);
+    this.root = new Span(goal, null);
+  }
+
+  /** Starts a span, closed with {@link Span#close}. */
+  public Span start(String name) {
+    Deque<Span> open = openSpans.get();
+    Span span = new Span(name, open.isEmpty() ? root : open.peek());
+    open.push(span);
+    spans.add(span);
+    return span;
+  }
+
+  /** Returns the span of the goal. */
+  public Span getRoot() {
+    return root;
+  }
+
+  /**
+   * Writes the spans as a JSON report. Spans not closed yet are reported with the time elapsed so
+   * far.
+   */
+  public void write(Path reportFile) throws IOException {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("goal", root.name);
+    report.put("traceId", traceId);
+    report.put(
+        "start", Instant.ofEpochMilli(TimeUnit.NANOSECONDS.toMillis(startEpochNanos)).toString());
+    report.put("durationMillis", root.getDurationMillis());
+    report.put("error", root.error);
+    List<Map<String, Object>> phases = new ArrayList<>();
+    for (Span span : spans) {
+      Map<String, Object> phase = new LinkedHashMap<>();
+      phase.put("name", span.name);
+      phase.put("parent", span.parent.name);
+      phase.put(
+          "startOffsetMillis",
+          TimeUnit.NANOSECONDS.toMillis(span.startTickerNanos - startTickerNanos));
+      phase.put("durationMillis", span.getDurationMillis());
+      phase.put("thread", span.thread);
+      phase.put("attributes", span.getAttributes());
+      phase.put("error", span.error);
+      phases.add(phase);
+    }
+    report.put("phases", phases);
+
+    Files.createDirectories(reportFile.getParent());
+    try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+      new GsonBuilder().setPrettyPrinting().serializeNulls().create().toJson(report, writer);
+    }
+  }
+
+  /**
+   * Appends the spans to {@code spansFile} as a line of OTLP/JSON, the format of the OpenTelemetry
+   * collector file exporter and receiver.
+   *
+   * @param serviceName the {@code service.name} resource attribute
+   */
+  public void appendOpenTelemetrySpans(Path spansFile, String serviceName) throws IOException {
+    List<Map<String, Object>> otlpSpans = new ArrayList<>();
+    otlpSpans.add(root.toOpenTelemetry());
+    for (Span span : spans) {
+      otlpSpans.add(span.toOpenTelemetry());
+    }
+    Map<String, Object> scopeSpans = new LinkedHashMap<>();
+    scopeSpans.put("scope", Collections.singletonMap("name", INSTRUMENTATION_SCOPE));
+    scopeSpans.put("spans", otlpSpans);
+    Map<String, Object> resourceSpans = new LinkedHashMap<>();
+    resourceSpans.put(
+        "resource",
+        Collections.singletonMap(
+            "attributes",
+            Collections.singletonList(openTelemetryAttribute("service.name", serviceName))));
+    resourceSpans.put("scopeSpans", Collections.singletonList(scopeSpans));
+
+    Files.createDirectories(spansFile.getParent());
+    String line =
+        new Gson()
+                .toJson(
+                    Collections.singletonMap(
+                        "resourceSpans", Collections.singletonList(resourceSpans)))
+            + System.lineSeparator();
+    Files.write(
+        spansFile,
+        line.getBytes(StandardCharsets.UTF_8),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  private static Map<String, Object> openTelemetryAttribute(String key, String value) {
+    Map<String, Object> attribute = new LinkedHashMap<>();
+    attribute.put("key", key);
+    attribute.put("value", Collections.singletonMap("stringValue", value));
+    return attribute;
+  }
+
+  private static String randomHex(int bytes) {
+    byte[] random = new byte[bytes];
+    RANDOM.nextBytes(random);
+    StringBuilder hex = new StringBuilder(bytes * 2);
+    for (byte b : random) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /** A timed phase of the goal. */
+  public class Span implements AutoCloseable {
+
+    private final String name;
+    private final Span parent;
+    private final String spanId = randomHex(8);
+    private final String thread = Thread.currentThread().getName();
+    private final long startTickerNanos = ticker.read();
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private volatile long endTickerNanos = -1;
+    private volatile String error;
+
+    private Span(String name, Span parent) {
+      this.name = name;
+      this.parent = parent;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /** Adds an attribute to the span, like the service deployed. */
+    public synchronized Span setAttribute(String key, String value) {
+      attributes.put(key, value);
+      return this;
+    }
+
+    synchronized Map<String, String> getAttributes() {
+      return new LinkedHashMap<>(attributes);
+    }
+
+    /** Marks the phase as failed by {@code failure}. */
+    public void setError(Throwable failure) {
+      error = failure.toString();
+    }
+
+    @Override
+    public void close() {
+      if (endTickerNanos < 0) {
+        endTickerNanos = ticker.read();
+      }
+      openSpans.get().remove(this);
+    }
+
+    long getDurationMillis() {
+      long end = endTickerNanos < 0 ? ticker.read() : endTickerNanos;
+      return TimeUnit.NANOSECONDS.toMillis(end - startTickerNanos);
+    }
+
+    private synchronized Map<String, Object> toOpenTelemetry() {
+      long end = endTickerNanos < 0 ? ticker.read() : endTickerNanos;
+      Map<String, Object> span = new LinkedHashMap<>();
+      span.put("traceId", traceId);
+      span.put("spanId", spanId);
+      if (parent != null) {
+        span.put("parentSpanId", parent.spanId);
+      }
+      span.put("name", name);
+      // SPAN_KIND_INTERNAL
+      span.put("kind", 1);
+      // OTLP/JSON encodes 64 bit integers as strings
+      span.put(
+          "startTimeUnixNano",
+          Long.toString(startEpochNanos + startTickerNanos - TimingReport.this.startTickerNanos));
+      span.put(
+          "endTimeUnixNano",
+          Long.toString(startEpochNanos + end - TimingReport.this.startTickerNanos));
+      List<Map<String, Object>> otlpAttributes = new ArrayList<>();
+      otlpAttributes.add(openTelemetryAttribute("thread.name", thread));
+      for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+        otlpAttributes.add(openTelemetryAttribute(attribute.getKey(), attribute.getValue()));
+      }
+      span.put("attributes", otlpAttributes);
+      if (error != null) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("code", 2);
+        status.put("message", error);
+        span.put("status", status);
+      }
+      return span;
+    }
+  }
+}
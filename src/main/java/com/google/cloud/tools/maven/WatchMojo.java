@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Syncs the compiled classes, resources and web application sources into the exploded WAR of a Dev
+ * App Server started by {@code appengine:start}, as they change, and makes the server reload the
+ * application. Runs until interrupted.
+ *
+ * <p>The Dev App Server 1 only reloads the application when started with the JVM flag {@code
+ * -Dappengine.fullscan.seconds}, for example {@code -Dappengine.fullscan.seconds=1}.
+ */
+@Mojo(name = "watch")
+public class WatchMojo extends CloudSdkMojo {
+
+  /** Directory of the compiled classes and resources, synced into WEB-INF/classes. */
+  @Parameter(
+    alias = "watch.classesDirectory",
+    defaultValue = "${project.build.outputDirectory}",
+    property = "app.watch.classesDirectory"
+  )
+  protected File classesDirectory;
+
+  /** Directory of the web application sources, synced into the root of the exploded WAR. */
+  @Parameter(
+    alias = "watch.webappDirectory",
+    defaultValue = "${basedir}/src/main/webapp",
+    property = "app.watch.webappDirectory"
+  )
+  protected File webappDirectory;
+
+  /** The exploded WAR served by the Dev App Server. */
+  @Parameter(
+    alias = "watch.explodedWarDirectory",
+    defaultValue = "${project.build.directory}/${project.build.finalName}",
+    property = "app.watch.explodedWarDirectory"
+  )
+  protected File explodedWarDirectory;
+
+  /**
+   * File of the exploded WAR touched after each sync to make the Dev App Server reload the
+   * application, relative to the exploded WAR.
+   */
+  @Parameter(
+    alias = "watch.reloadTrigger",
+    defaultValue = "WEB-INF/appengine-web.xml",
+    property = "app.watch.reloadTrigger"
+  )
+  protected String reloadTrigger;
+
+  /** Number of milliseconds without changes to wait for before syncing a batch of changes. */
+  @Parameter(alias = "watch.quietPeriod", defaultValue = "200", property = "app.watch.quietPeriod")
+  protected long quietPeriod;
+
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (!explodedWarDirectory.isDirectory()) {
+      throw new MojoExecutionException(
+          "Exploded WAR not found: "
+              + explodedWarDirectory
+              + ". Package the application and run appengine:start first.");
+    }
+    Path explodedWar = explodedWarDirectory.toPath();
+    Map<Path, Path> directories = new LinkedHashMap<>();
+    directories.put(classesDirectory.toPath(), explodedWar.resolve("WEB-INF").resolve("classes"));
+    if (webappDirectory != null && webappDirectory.isDirectory()) {
+      directories.put(webappDirectory.toPath(), explodedWar);
+    }
+
+    try (ExplodedWarSync sync =
+        new ExplodedWarSync(
+            directories,
+            reloadTrigger == null ? null : explodedWar.resolve(reloadTrigger),
+            quietPeriod,
+            getLog())) {
+      int synced = sync.syncAll();
+      getLog().info("Synced " + synced + " changed files to " + explodedWar);
+      getLog().info("Watching " + directories.keySet() + " for changes. Press Ctrl-C to stop.");
+      sync.watch();
+    } catch (IOException ex) {
+      throw new MojoExecutionException("Failed to sync the exploded WAR", ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.File;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AppEngineStagingConfigurationTest {
+
+  private StageMojo stageMojo;
+  private AppEngineStagingConfiguration configuration;
+
+  @Before
+  public void setUp() {
+    stageMojo = new StageMojo();
+    configuration = new AppEngineStagingConfiguration(stageMojo);
+  }
+
+  @Test
+  public void testDelegatesToMojo() {
+    File stagingDirectory = new File("staging");
+    stageMojo.setStagingDirectory(stagingDirectory);
+
+    Assert.assertSame(stageMojo, configuration.getStageMojo());
+    Assert.assertEquals(stagingDirectory, configuration.getStagingDirectory());
+  }
+
+  @Test
+  public void testJarSplittingDoneByPlugin() {
+    stageMojo.setJarSplitting(true, 10);
+
+    Assert.assertTrue(stageMojo.getEnableJarSplitting());
+    Assert.assertFalse(configuration.getEnableJarSplitting());
+  }
+
+  @Test
+  public void testJarClassesDoneByPlugin() {
+    stageMojo.setEnableJarClasses(true);
+
+    Assert.assertTrue(stageMojo.getEnableJarClasses());
+    Assert.assertFalse(configuration.getEnableJarClasses());
+  }
+}
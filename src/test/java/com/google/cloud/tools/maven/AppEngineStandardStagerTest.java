@@ -0,0 +1,520 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.cloud.tools.appengine.api.deploy.AppEngineStandardStaging;
+import com.google.cloud.tools.appengine.api.deploy.StageStandardConfiguration;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class AppEngineStandardStagerTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Mock private CloudSdkAppEngineFactory factoryMock;
+  @Mock private MavenProject mavenProject;
+  @Mock private AppEngineStandardStaging standardStagingMock;
+  @Mock private Log logMock;
+
+  @InjectMocks private StageMojo stageMojo;
+
+  private AppEngineStandardStager stager;
+  private Path source;
+  private Path staging;
+
+  @Before
+  public void setup() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    stageMojo.setStagingDirectory(tempFolder.newFolder("staging"));
+    stageMojo.setSourceDirectory(tempFolder.newFolder("source"));
+    source = stageMojo.getSourceDirectory().toPath();
+    staging = stageMojo.getStagingDirectory().toPath();
+    when(mavenProject.getProperties()).thenReturn(new Properties());
+    when(factoryMock.standardStaging()).thenReturn(standardStagingMock);
+
+    // pretend to be App Engine staging by copying the source directory
+    doAnswer(
+            invocation -> {
+              StageStandardConfiguration configuration =
+                  (StageStandardConfiguration) invocation.getArguments()[0];
+              FileUtils.copyDirectory(
+                  configuration.getSourceDirectory(), configuration.getStagingDirectory());
+              return null;
+            })
+        .when(standardStagingMock)
+        .stageStandard(Matchers.any(StageStandardConfiguration.class));
+
+    write("WEB-INF/appengine-web.xml", "<appengine-web-app></appengine-web-app>");
+    write("WEB-INF/web.xml", "<web-app/>");
+    write("WEB-INF/lib/a.jar", "a");
+    write("WEB-INF/lib/b.jar", "b");
+    write("WEB-INF/classes/A.class", "A");
+
+    stager = new AppEngineStandardStager(stageMojo);
+    stager.overrideAppEngineDirectory();
+  }
+
+  @Test
+  public void testStage_notIncremental() throws Exception {
+    stager.stage();
+    write("WEB-INF/lib/a.jar", "changed");
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertFalse(Files.exists(stager.getManifestFile()));
+  }
+
+  @Test
+  public void testStage_incremental() throws Exception {
+    stageMojo.setIncremental(true);
+    stager.stage();
+    Assert.assertTrue(Files.exists(stager.getManifestFile()));
+
+    write("WEB-INF/lib/a.jar", "changed");
+    write("WEB-INF/classes/B.class", "B");
+    Files.delete(source.resolve("WEB-INF/lib/b.jar"));
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    verify(logMock).info(contains("2 changed and 1 removed"));
+    Assert.assertEquals("changed", read("WEB-INF/lib/a.jar"));
+    Assert.assertEquals("B", read("WEB-INF/classes/B.class"));
+    Assert.assertFalse(Files.exists(staging.resolve("WEB-INF/lib/b.jar")));
+  }
+
+  @Test
+  public void testStage_incrementalJarWithJsps() throws Exception {
+    stageMojo.setIncremental(true);
+    write("index.jsp", "index");
+    stager.stage();
+
+    // the jar may hold TLDs or tag files used by the precompiled page
+    write("WEB-INF/lib/a.jar", "changed");
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+    verify(logMock).info(contains("WEB-INF/lib/a.jar require a full restage"));
+  }
+
+  @Test
+  public void testStage_failedRestageDeletesManifest() throws Exception {
+    stageMojo.setIncremental(true);
+    stager.stage();
+    write("WEB-INF/web.xml", "<web-app>changed</web-app>");
+    doThrow(new AppEngineException("failed"))
+        .when(standardStagingMock)
+        .stageStandard(StagingConfigurations.of(stageMojo));
+
+    try {
+      stager.stage();
+      Assert.fail();
+    } catch (RuntimeException ex) {
+      Assert.assertFalse(Files.exists(stager.getManifestFile()));
+    }
+  }
+
+  @Test
+  public void testStage_incrementalLinked() throws Exception {
+    stageMojo.setIncremental(true);
+    stageMojo.setCopyStrategy("link");
+    stager.stage();
+
+    write("WEB-INF/lib/a.jar", "changed");
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertTrue(
+        Files.isSameFile(
+            source.resolve("WEB-INF/lib/a.jar"), staging.resolve("WEB-INF/lib/a.jar")));
+  }
+
+  @Test
+  public void testStage_incrementalQuickstart() throws Exception {
+    stageMojo.setIncremental(true);
+    stageMojo.setEnableQuickstart(true);
+    stager.stage();
+    Assert.assertTrue(Files.exists(stager.getQuickstartCacheFile()));
+
+    write("WEB-INF/classes/A.class", "Ljava/lang/Object;");
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertEquals("Ljava/lang/Object;", read("WEB-INF/classes/A.class"));
+  }
+
+  @Test
+  public void testStage_incrementalQuickstartAnnotationAdded() throws Exception {
+    stageMojo.setIncremental(true);
+    stageMojo.setEnableQuickstart(true);
+    stager.stage();
+
+    write("WEB-INF/classes/A.class", "Ljavax/servlet/annotation/WebServlet;");
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+    verify(logMock).info(contains("WEB-INF/classes/A.class require a new quickstart-web.xml"));
+  }
+
+  @Test
+  public void testStage_incrementalQuickstartJarExcludedByOrdering() throws Exception {
+    write(
+        "WEB-INF/web.xml",
+        "<web-app><absolute-ordering><name>listed</name></absolute-ordering></web-app>");
+    stageMojo.setIncremental(true);
+    stageMojo.setEnableQuickstart(true);
+    stager.stage();
+
+    writeJarEntry("WEB-INF/lib/c.jar", "C.class", "Ljavax/servlet/annotation/WebServlet;");
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertTrue(Files.exists(staging.resolve("WEB-INF/lib/c.jar")));
+  }
+
+  @Test
+  public void testStage_incrementalQuickstartJarIncludedByOrdering() throws Exception {
+    write(
+        "WEB-INF/web.xml",
+        "<web-app><absolute-ordering><name>listed</name><others/></absolute-ordering></web-app>");
+    stageMojo.setIncremental(true);
+    stageMojo.setEnableQuickstart(true);
+    stager.stage();
+
+    writeJarEntry("WEB-INF/lib/c.jar", "C.class", "Ljavax/servlet/annotation/WebServlet;");
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+  }
+
+  @Test
+  public void testStage_incrementalJspClasses() throws Exception {
+    stageMojo.setIncremental(true);
+    stageMojo.setDisableJarJsps(true);
+    fakeJspCompilation();
+    write("index.jsp", "index");
+    write("other.jsp", "other");
+    stager.stage();
+
+    write("index.jsp", "changed index");
+    stager.stage();
+
+    // the full staging and one batch of JSPs
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    verify(standardStagingMock, times(2))
+        .stageStandard(Matchers.any(StageStandardConfiguration.class));
+    verify(logMock).info(contains("Recompiling 1 JSPs in 1 batches"));
+    // the batch is staged next to the staging directory, and deleted after
+    ArgumentCaptor<StageStandardConfiguration> configurations =
+        ArgumentCaptor.forClass(StageStandardConfiguration.class);
+    verify(standardStagingMock, times(2)).stageStandard(configurations.capture());
+    Path work = staging.resolveSibling("staging.jsps");
+    Assert.assertTrue(
+        configurations.getAllValues().get(1).getSourceDirectory().toPath().startsWith(work));
+    Assert.assertFalse(Files.exists(work));
+    Assert.assertEquals("changed index", read("index.jsp"));
+    Assert.assertEquals("changed index", read("WEB-INF/classes/org/apache/jsp/index_jsp.class"));
+    Assert.assertEquals("other", read("WEB-INF/classes/org/apache/jsp/other_jsp.class"));
+  }
+
+  @Test
+  public void testStage_incrementalJspJar() throws Exception {
+    stageMojo.setIncremental(true);
+    fakeJspCompilation();
+    write("index.jsp", "index");
+    write("other.jsp", "other");
+    stager.stage();
+
+    write("index.jsp", "changed index");
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    try (JarFile first =
+            new JarFile(staging.resolve("WEB-INF/lib/_ah_compiled_jsps-0000.jar").toFile());
+        JarFile second =
+            new JarFile(staging.resolve("WEB-INF/lib/_ah_compiled_jsps-0001.jar").toFile())) {
+      Assert.assertNull(first.getEntry("org/apache/jsp/index_jsp.class"));
+      Assert.assertNotNull(first.getEntry("org/apache/jsp/other_jsp.class"));
+      Assert.assertNotNull(second.getEntry("org/apache/jsp/index_jsp.class"));
+      Assert.assertNull(second.getEntry("org/apache/jsp/other_jsp.class"));
+    }
+  }
+
+  @Test
+  public void testStage_incrementalPageAdded() throws Exception {
+    stageMojo.setIncremental(true);
+    fakeJspCompilation();
+    stager.stage();
+
+    write("new.jsp", "new");
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+    verify(logMock).info(contains("new.jsp require a full restage"));
+  }
+
+  /** Makes the fake App Engine staging compile every page to a class named after it. */
+  private void fakeJspCompilation() throws Exception {
+    doAnswer(
+            invocation -> {
+              StageStandardConfiguration configuration =
+                  (StageStandardConfiguration) invocation.getArguments()[0];
+              Path from = configuration.getSourceDirectory().toPath();
+              Path to = configuration.getStagingDirectory().toPath();
+              FileUtils.copyDirectory(from.toFile(), to.toFile());
+              Path classes = to.resolve("WEB-INF/classes/org/apache/jsp");
+              Files.createDirectories(classes);
+              Files.createDirectories(to.resolve("WEB-INF/lib"));
+              try (DirectoryStream<Path> pages = Files.newDirectoryStream(from, "*.jsp")) {
+                for (Path page : pages) {
+                  String name = page.getFileName().toString().replace(".jsp", "_jsp.class");
+                  Files.copy(page, classes.resolve(name));
+                }
+              }
+              if (!configuration.getDisableJarJsps()) {
+                try (JarOutputStream output =
+                    new JarOutputStream(
+                        Files.newOutputStream(
+                            to.resolve("WEB-INF/lib/_ah_compiled_jsps-0000.jar")))) {
+                  try (DirectoryStream<Path> compiled = Files.newDirectoryStream(classes)) {
+                    for (Path file : compiled) {
+                      output.putNextEntry(
+                          new JarEntry("org/apache/jsp/" + file.getFileName().toString()));
+                      output.write(Files.readAllBytes(file));
+                      output.closeEntry();
+                    }
+                  }
+                }
+                FileUtils.deleteDirectory(to.resolve("WEB-INF/classes/org").toFile());
+              }
+              return null;
+            })
+        .when(standardStagingMock)
+        .stageStandard(Matchers.any(StageStandardConfiguration.class));
+  }
+
+  @Test
+  public void testStage_jarClasses() throws Exception {
+    stageMojo.setIncremental(true);
+    stageMojo.setEnableJarClasses(true);
+    stager.stage();
+
+    Path jar = staging.resolve("WEB-INF/lib/_ah_webinf_classes-0000.jar");
+    Assert.assertFalse(Files.exists(staging.resolve("WEB-INF/classes")));
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      Assert.assertNotNull(jarFile.getEntry("A.class"));
+    }
+    byte[] firstJar = Files.readAllBytes(jar);
+
+    // the jar is rebuilt without a full restage
+    write("WEB-INF/classes/B.class", "B");
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertFalse(Files.exists(staging.resolve("WEB-INF/classes/B.class")));
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      Assert.assertNotNull(jarFile.getEntry("B.class"));
+    }
+
+    // and identical to the first one when the classes are restored
+    Files.delete(source.resolve("WEB-INF/classes/B.class"));
+    stager.stage();
+    Assert.assertArrayEquals(firstJar, Files.readAllBytes(jar));
+  }
+
+  @Test
+  public void testStage_incrementalDescriptorChanged() throws Exception {
+    stageMojo.setIncremental(true);
+    stager.stage();
+
+    write("WEB-INF/web.xml", "<web-app></web-app>");
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+    verify(logMock).info(contains("WEB-INF/web.xml require a full restage"));
+  }
+
+  @Test
+  public void testStage_incrementalStagingDirectoryDeleted() throws Exception {
+    stageMojo.setIncremental(true);
+    stager.stage();
+
+    FileUtils.deleteDirectory(staging.toFile());
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertEquals("a", read("WEB-INF/lib/a.jar"));
+  }
+
+  @Test
+  public void testStage_restoredFromCache() throws Exception {
+    stageMojo.setCacheDirectory(tempFolder.newFolder("cache"), 1024);
+    stager.stage();
+
+    // a clean build loses the staging directory and its manifest
+    FileUtils.deleteDirectory(staging.toFile());
+    Files.delete(stager.getManifestFile());
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    verify(logMock).info(contains("from the staging cache"));
+    Assert.assertEquals("a", read("WEB-INF/lib/a.jar"));
+  }
+
+  @Test
+  public void testStage_cacheMiss() throws Exception {
+    stageMojo.setCacheDirectory(tempFolder.newFolder("cache"), 1024);
+    stager.stage();
+
+    write("WEB-INF/lib/a.jar", "changed");
+    stager.stage();
+
+    verify(standardStagingMock, times(2)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertEquals("changed", read("WEB-INF/lib/a.jar"));
+  }
+
+  @Test
+  public void testStageConfiguration() throws Exception {
+    write("WEB-INF/cron.xml", "<cronentries/>");
+    doAnswer(
+            invocation -> {
+              StageStandardConfiguration configuration =
+                  (StageStandardConfiguration) invocation.getArguments()[0];
+              Path descriptors = configuration.getSourceDirectory().toPath().resolve("WEB-INF");
+              Assert.assertTrue(Files.exists(descriptors.resolve("cron.xml")));
+              Assert.assertFalse(Files.exists(descriptors.resolve("lib")));
+              Assert.assertFalse(Files.exists(descriptors.resolve("classes")));
+              File cronYaml =
+                  new File(
+                      configuration.getStagingDirectory(), "WEB-INF/appengine-generated/cron.yaml");
+              FileUtils.writeStringToFile(cronYaml, "cron:", StandardCharsets.UTF_8);
+              return null;
+            })
+        .when(standardStagingMock)
+        .stageStandard(Matchers.any(StageStandardConfiguration.class));
+
+    stager.stageConfiguration();
+    stager.stageConfiguration();
+
+    verify(standardStagingMock, times(1))
+        .stageStandard(Matchers.any(StageStandardConfiguration.class));
+    Assert.assertEquals("cron:", read("WEB-INF/appengine-generated/cron.yaml"));
+    Assert.assertFalse(Files.exists(staging.resolve("WEB-INF/lib/a.jar")));
+  }
+
+  @Test
+  public void testStageConfiguration_descriptorChanged() throws Exception {
+    write("WEB-INF/cron.xml", "<cronentries/>");
+    stager.stageConfiguration();
+    write("WEB-INF/cron.xml", "<cronentries></cronentries>");
+    stager.stageConfiguration();
+
+    verify(standardStagingMock, times(2))
+        .stageStandard(Matchers.any(StageStandardConfiguration.class));
+  }
+
+  @Test
+  public void testStageConfiguration_afterFullStage() throws Exception {
+    stager.stage();
+    stager.stageConfiguration();
+
+    verify(standardStagingMock, times(1))
+        .stageStandard(Matchers.any(StageStandardConfiguration.class));
+    verify(standardStagingMock).stageStandard(StagingConfigurations.of(stageMojo));
+  }
+
+  @Test
+  public void testStage_jarSplitting() throws Exception {
+    stageMojo.setJarSplitting(true, 1);
+    stageMojo.setIncremental(true);
+    writeJar("WEB-INF/lib/big.jar", 3 * 512 * 1024);
+    stager.stage();
+
+    Assert.assertFalse(Files.exists(staging.resolve("WEB-INF/lib/big.jar")));
+    Assert.assertTrue(Files.exists(staging.resolve("WEB-INF/lib/big-0000.jar")));
+    Assert.assertTrue(Files.exists(staging.resolve("WEB-INF/lib/big-0001.jar")));
+
+    // a jar that shrinks replaces its fragments without a full restage
+    writeJar("WEB-INF/lib/big.jar", 1024);
+    stager.stage();
+
+    verify(standardStagingMock, times(1)).stageStandard(StagingConfigurations.of(stageMojo));
+    Assert.assertTrue(Files.exists(staging.resolve("WEB-INF/lib/big.jar")));
+    Assert.assertFalse(Files.exists(staging.resolve("WEB-INF/lib/big-0000.jar")));
+    Assert.assertFalse(Files.exists(staging.resolve("WEB-INF/lib/big-0001.jar")));
+  }
+
+  private void writeJar(String path, int size) throws IOException {
+    byte[] content = new byte[size];
+    new Random().nextBytes(content);
+    try (JarOutputStream output =
+        new JarOutputStream(Files.newOutputStream(source.resolve(path)))) {
+      for (int i = 0; i < 3; i++) {
+        output.putNextEntry(new JarEntry("Entry" + i + ".class"));
+        output.write(content, i * size / 3, size / 3);
+        output.closeEntry();
+      }
+    }
+  }
+
+  private void writeJarEntry(String path, String entry, String content) throws IOException {
+    try (JarOutputStream output =
+        new JarOutputStream(Files.newOutputStream(source.resolve(path)))) {
+      output.putNextEntry(new JarEntry(entry));
+      output.write(content.getBytes(StandardCharsets.UTF_8));
+      output.closeEntry();
+    }
+  }
+
+  private void write(String path, String content) throws IOException {
+    File file = source.resolve(path).toFile();
+    FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+  }
+
+  private String read(String path) throws IOException {
+    return new String(Files.readAllBytes(staging.resolve(path)), StandardCharsets.UTF_8);
+  }
+}
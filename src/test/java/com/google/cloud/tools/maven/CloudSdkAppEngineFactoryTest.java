@@ -18,6 +18,7 @@ package com.google.cloud.tools.maven;
 
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,6 +36,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Build;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
@@ -117,12 +120,18 @@ public class CloudSdkAppEngineFactoryTest {
     when(cloudSdkOperationsFactoryMock.newDownloader(CLOUD_SDK_VERSION))
         .thenReturn(cloudSdkDownloader);
 
+    when(mojoMock.getCloudSdkUpdateCheckInterval()).thenReturn(24);
+
     // invoke
     CloudSdk sdk =
         CloudSdkAppEngineFactory.defaultCloudSdk(mojoMock, cloudSdkOperationsFactoryMock);
 
     // verify
     Assert.assertEquals(INSTALL_SDK_PATH, sdk.getPath());
+    verify(cloudSdkDownloader).setUpdateCheck(TimeUnit.HOURS.toMillis(24), false);
+    verify(cloudSdkDownloader)
+        .setTimingSummaryFile(
+            Paths.get(buildMock.getDirectory()).resolve("cloud-sdk-provisioning.json"));
     verify(cloudSdkDownloader).downloadCloudSdk(logMock);
     verify(cloudSdkChecker, never()).checkCloudSdk(Mockito.any(CloudSdk.class));
   }
@@ -179,4 +188,39 @@ public class CloudSdkAppEngineFactoryTest {
     verify(cloudSdkDownloader, never()).downloadCloudSdk(logMock);
     verify(cloudSdkChecker, never()).checkCloudSdk(Mockito.any(CloudSdk.class));
   }
+
+  @Test
+  public void testGetGcloud_cloudSdkResolvedOnce() {
+    when(mojoMock.getCloudSdkHome()).thenReturn(null);
+    when(cloudSdkOperationsFactoryMock.newDownloader(null)).thenReturn(cloudSdkDownloader);
+
+    factory.getGcloud();
+    factory.getGcloud();
+
+    verify(cloudSdkDownloader, times(1)).downloadCloudSdk(logMock);
+  }
+
+  @Test
+  public void testWarmUp() throws InterruptedException {
+    when(mojoMock.getCloudSdkHome()).thenReturn(null);
+    when(cloudSdkOperationsFactoryMock.newDownloader(null)).thenReturn(cloudSdkDownloader);
+
+    factory.warmUp();
+    factory.getGcloud();
+
+    verify(cloudSdkDownloader, times(1)).downloadCloudSdk(logMock);
+  }
+
+  @Test
+  public void testGetGcloud_cloudSdkSharedBySession() {
+    MavenSession session = Mockito.mock(MavenSession.class);
+    when(mojoMock.getSession()).thenReturn(session);
+    when(mojoMock.getCloudSdkHome()).thenReturn(null);
+    when(cloudSdkOperationsFactoryMock.newDownloader(null)).thenReturn(cloudSdkDownloader);
+
+    factory.getGcloud();
+    new CloudSdkAppEngineFactory(mojoMock, cloudSdkOperationsFactoryMock).getGcloud();
+
+    verify(cloudSdkDownloader, times(1)).downloadCloudSdk(logMock);
+  }
 }
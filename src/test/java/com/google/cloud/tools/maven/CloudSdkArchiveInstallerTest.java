@@ -0,0 +1,255 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.mock;
+
+import com.google.cloud.tools.managedcloudsdk.OsInfo;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.stream.Stream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CloudSdkArchiveInstallerTest {
+
+  private static final String TOOLS_JAR =
+      "google-cloud-sdk/platform/google_appengine/google/appengine/tools/java/lib/"
+          + "appengine-tools-api.jar";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final Log log = mock(Log.class);
+  private Path sdkHome;
+
+  @Before
+  public void setup() throws IOException {
+    sdkHome = tempFolder.getRoot().toPath().resolve("managed/192.0.0/google-cloud-sdk");
+  }
+
+  @Test
+  public void testInstall_tarGz() throws IOException {
+    Path archive = newTarGz("sdk.tar.gz", true);
+
+    new CloudSdkArchiveInstaller(archive, sha256(archive), "192.0.0").install(sdkHome, log);
+
+    Assert.assertEquals(
+        "192.0.0", new String(Files.readAllBytes(sdkHome.resolve("VERSION")), "UTF-8"));
+    Assert.assertTrue(Files.isRegularFile(sdkHome.resolve(TOOLS_JAR.substring(17))));
+    Assert.assertTrue(Files.isSymbolicLink(sdkHome.resolve("bin/gcloud-link")));
+    Assert.assertEquals(
+        sdkHome.resolve("bin/gcloud").toRealPath(),
+        sdkHome.resolve("bin/gcloud-link").toRealPath());
+    assertExecutable(sdkHome.resolve("bin/gcloud"));
+    assertNoLeftovers();
+  }
+
+  @Test
+  public void testInstall_zip() throws IOException {
+    Path archive = tempFolder.getRoot().toPath().resolve("sdk.zip");
+    try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(archive.toFile())) {
+      addZipEntry(zip, "google-cloud-sdk/bin/gcloud", "#!/bin/sh", 0755);
+      addZipEntry(zip, "google-cloud-sdk/VERSION", "192.0.0", 0644);
+      addZipEntry(zip, TOOLS_JAR, "jar", 0644);
+    }
+
+    new CloudSdkArchiveInstaller(archive, sha256(archive), "192.0.0").install(sdkHome, log);
+
+    Assert.assertTrue(Files.isRegularFile(sdkHome.resolve("VERSION")));
+    assertExecutable(sdkHome.resolve("bin/gcloud"));
+    assertNoLeftovers();
+  }
+
+  @Test
+  public void testInstall_checksumFile() throws IOException {
+    Path archive = newTarGz("sdk.tar.gz", true);
+    Files.write(
+        tempFolder.getRoot().toPath().resolve("sdk.tar.gz.sha256"),
+        (sha256(archive) + "  sdk.tar.gz\n").getBytes(StandardCharsets.UTF_8));
+
+    new CloudSdkArchiveInstaller(archive, null, "192.0.0").install(sdkHome, log);
+
+    Assert.assertTrue(Files.isDirectory(sdkHome));
+  }
+
+  @Test
+  public void testInstall_checksumMismatch() throws IOException {
+    Path archive = newTarGz("sdk.tar.gz", true);
+    try {
+      new CloudSdkArchiveInstaller(archive, "0123abcd", "192.0.0").install(sdkHome, log);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("Checksum mismatch"));
+    }
+    Assert.assertFalse(Files.exists(sdkHome));
+  }
+
+  @Test
+  public void testInstall_noChecksum() throws IOException {
+    Path archive = newTarGz("sdk.tar.gz", true);
+    try {
+      new CloudSdkArchiveInstaller(archive, null, "192.0.0").install(sdkHome, log);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("No checksum"));
+    }
+  }
+
+  @Test
+  public void testInstall_missingAppEngineComponent() throws IOException {
+    Path archive = newTarGz("sdk.tar.gz", false);
+    try {
+      new CloudSdkArchiveInstaller(archive, sha256(archive), "192.0.0").install(sdkHome, log);
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().endsWith("app-engine-java Cloud SDK component"));
+    }
+    Assert.assertFalse(Files.exists(sdkHome));
+    assertNoLeftovers();
+  }
+
+  @Test
+  public void testExtract_entryOutsideTarget() throws IOException {
+    Path archive = tempFolder.getRoot().toPath().resolve("evil.tar.gz");
+    try (TarArchiveOutputStream tar = newTarOutputStream(archive)) {
+      addTarEntry(tar, "../evil", "evil", 0644);
+    }
+    try {
+      CloudSdkArchiveInstaller.extract(archive, tempFolder.newFolder("target").toPath());
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("Archive entry outside"));
+    }
+    Assert.assertFalse(Files.exists(tempFolder.getRoot().toPath().resolve("evil")));
+  }
+
+  @Test
+  public void testResolveArchive_mirror() throws Exception {
+    Path mirror = tempFolder.newFolder("mirror").toPath();
+    String releaseName =
+        CloudSdkArchiveInstaller.getReleaseName("192.0.0", OsInfo.getSystemOsInfo());
+    Files.write(mirror.resolve(releaseName), new byte[0]);
+
+    Assert.assertEquals(
+        mirror.resolve(releaseName),
+        new CloudSdkArchiveInstaller(mirror, null, "192.0.0").resolveArchive());
+  }
+
+  @Test
+  public void testResolveArchive_mirrorWithoutVersion() throws IOException {
+    try {
+      new CloudSdkArchiveInstaller(tempFolder.newFolder("mirror").toPath(), null, null)
+          .resolveArchive();
+      Assert.fail();
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("cloudSdkVersion must be configured"));
+    }
+  }
+
+  @Test
+  public void testGetReleaseName() {
+    Assert.assertEquals(
+        "google-cloud-sdk-192.0.0-linux-x86_64.tar.gz",
+        CloudSdkArchiveInstaller.getReleaseName(
+            "192.0.0", new OsInfo(OsInfo.Name.LINUX, OsInfo.Architecture.X86_64)));
+    Assert.assertEquals(
+        "google-cloud-sdk-192.0.0-darwin-x86.tar.gz",
+        CloudSdkArchiveInstaller.getReleaseName(
+            "192.0.0", new OsInfo(OsInfo.Name.MAC, OsInfo.Architecture.X86)));
+    Assert.assertEquals(
+        "google-cloud-sdk-192.0.0-windows-x86_64-bundled-python.zip",
+        CloudSdkArchiveInstaller.getReleaseName(
+            "192.0.0", new OsInfo(OsInfo.Name.WINDOWS, OsInfo.Architecture.X86_64)));
+  }
+
+  private Path newTarGz(String name, boolean withAppEngineJava) throws IOException {
+    Path archive = tempFolder.getRoot().toPath().resolve(name);
+    try (TarArchiveOutputStream tar = newTarOutputStream(archive)) {
+      TarArchiveEntry directory = new TarArchiveEntry("google-cloud-sdk/bin/");
+      tar.putArchiveEntry(directory);
+      tar.closeArchiveEntry();
+      addTarEntry(tar, "google-cloud-sdk/bin/gcloud", "#!/bin/sh", 0755);
+      addTarEntry(tar, "google-cloud-sdk/VERSION", "192.0.0", 0644);
+      if (withAppEngineJava) {
+        addTarEntry(tar, TOOLS_JAR, "jar", 0644);
+      }
+      TarArchiveEntry link =
+          new TarArchiveEntry("google-cloud-sdk/bin/gcloud-link", TarArchiveEntry.LF_SYMLINK);
+      link.setLinkName("gcloud");
+      tar.putArchiveEntry(link);
+      tar.closeArchiveEntry();
+    }
+    return archive;
+  }
+
+  private static TarArchiveOutputStream newTarOutputStream(Path archive) throws IOException {
+    OutputStream output = new GzipCompressorOutputStream(Files.newOutputStream(archive));
+    return new TarArchiveOutputStream(output);
+  }
+
+  private static void addTarEntry(TarArchiveOutputStream tar, String name, String content, int mode)
+      throws IOException {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    entry.setSize(bytes.length);
+    entry.setMode(mode);
+    tar.putArchiveEntry(entry);
+    tar.write(bytes);
+    tar.closeArchiveEntry();
+  }
+
+  private static void addZipEntry(ZipArchiveOutputStream zip, String name, String content, int mode)
+      throws IOException {
+    ZipArchiveEntry entry = new ZipArchiveEntry(name);
+    entry.setUnixMode(mode);
+    zip.putArchiveEntry(entry);
+    zip.write(content.getBytes(StandardCharsets.UTF_8));
+    zip.closeArchiveEntry();
+  }
+
+  private static String sha256(Path file) throws IOException {
+    return com.google.common.io.Files.asByteSource(file.toFile()).hash(Hashing.sha256()).toString();
+  }
+
+  private static void assertExecutable(Path file) throws IOException {
+    Assume.assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    Assert.assertTrue(
+        Files.getPosixFilePermissions(file).contains(PosixFilePermission.OWNER_EXECUTE));
+  }
+
+  private void assertNoLeftovers() throws IOException {
+    Path parent = sdkHome.getParent();
+    try (Stream<Path> files = Files.list(parent)) {
+      Assert.assertFalse(files.anyMatch(file -> file.getFileName().toString().startsWith(".")));
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.common.base.Ticker;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CloudSdkDownloaderProgressListenerTest {
+
+  @Mock private Log log;
+
+  private long nanos;
+  private CloudSdkDownloaderProgressListener listener;
+
+  @Before
+  public void setUp() {
+    listener = new CloudSdkDownloaderProgressListener("install", log, ticker(), true);
+  }
+
+  private Ticker ticker() {
+    return new Ticker() {
+      @Override
+      public long read() {
+        return nanos;
+      }
+    };
+  }
+
+  @Test
+  public void testUpdate_rateLimited() {
+    ProgressListener download = listener.newChild(100);
+    download.start("Downloading sdk.tar.gz", 4 * 1024 * 1024);
+
+    nanos += TimeUnit.SECONDS.toNanos(1);
+    download.update(1024 * 1024);
+    verify(log, never()).info(Matchers.contains("elapsed"));
+
+    nanos += TimeUnit.SECONDS.toNanos(4);
+    download.update(1024 * 1024);
+    download.update(1024);
+    verify(log, times(1))
+        .info("Downloading sdk.tar.gz: 50% (2.0 MB of 4.0 MB at 409.6 KB/s), 5 s elapsed");
+  }
+
+  @Test
+  public void testDone_logsDurationAndRate() {
+    ProgressListener download = listener.newChild(100);
+    download.start("Downloading sdk.tar.gz", 2 * 1024 * 1024);
+    download.update(2 * 1024 * 1024);
+    nanos += TimeUnit.SECONDS.toNanos(2);
+    download.done();
+
+    verify(log).info("Downloading sdk.tar.gz done in 2.0 s (2.0 MB at 1.0 MB/s)");
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGetSummary() {
+    listener.start("Installing Cloud SDK", 300);
+    ProgressListener download = listener.newChild(100);
+    download.start("Downloading sdk.tar.gz", 1000);
+    download.update(1000);
+    nanos += TimeUnit.SECONDS.toNanos(2);
+    download.done();
+    ProgressListener extract = listener.newChild(100);
+    extract.start("Extracting archive", ProgressListener.UNKNOWN);
+    nanos += TimeUnit.SECONDS.toNanos(1);
+    extract.done();
+    // never started
+    listener.newChild(100);
+    listener.done();
+
+    Map<String, Object> summary = listener.getSummary();
+    Assert.assertEquals("install", summary.get("phase"));
+    Assert.assertEquals(3000L, summary.get("durationMillis"));
+    Assert.assertEquals(true, summary.get("complete"));
+    Assert.assertFalse(summary.containsKey("bytes"));
+
+    List<Map<String, Object>> children = (List<Map<String, Object>>) summary.get("children");
+    Assert.assertEquals(2, children.size());
+    Assert.assertEquals(2000L, children.get(0).get("durationMillis"));
+    Assert.assertEquals(1000L, children.get(0).get("bytes"));
+    Assert.assertEquals(500L, children.get(0).get("bytesPerSecond"));
+    Assert.assertEquals("Extracting archive", children.get(1).get("message"));
+    Assert.assertFalse(children.get(1).containsKey("bytes"));
+  }
+
+  @Test
+  public void testDone_notDownloading() {
+    listener = new CloudSdkDownloaderProgressListener("update", log, ticker(), false);
+    ProgressListener child = listener.newChild(100);
+    child.start("Downloading components", 100);
+    child.update(100);
+    nanos += TimeUnit.SECONDS.toNanos(2);
+    child.done();
+
+    verify(log).info("Downloading components done in 2.0 s");
+  }
+}
@@ -16,22 +16,37 @@
 
 package com.google.cloud.tools.maven;
 
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.cloud.tools.managedcloudsdk.ManagedCloudSdk;
 import com.google.cloud.tools.managedcloudsdk.ManagedSdkVerificationException;
 import com.google.cloud.tools.managedcloudsdk.ManagedSdkVersionMismatchException;
+import com.google.cloud.tools.managedcloudsdk.ProgressListener;
+import com.google.cloud.tools.managedcloudsdk.command.CommandExitException;
 import com.google.cloud.tools.managedcloudsdk.components.SdkComponent;
 import com.google.cloud.tools.managedcloudsdk.components.SdkComponentInstaller;
 import com.google.cloud.tools.managedcloudsdk.components.SdkUpdater;
 import com.google.cloud.tools.managedcloudsdk.install.SdkInstaller;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
+import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -47,8 +62,14 @@ public class CloudSdkDownloaderTest {
 
   @InjectMocks private CloudSdkDownloader downloader;
 
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path sdkHome;
+
   @Before
   public void setup() {
+    sdkHome = tempFolder.getRoot().toPath().resolve("192.0.0/google-cloud-sdk");
+    when(managedCloudSdk.getSdkHome()).thenReturn(sdkHome);
     when(managedCloudSdk.newInstaller()).thenReturn(installer);
     when(managedCloudSdk.newComponentInstaller()).thenReturn(componentInstaller);
     when(managedCloudSdk.newUpdater()).thenReturn(updater);
@@ -83,4 +104,208 @@ public class CloudSdkDownloaderTest {
     verify(managedCloudSdk, never()).newComponentInstaller();
     verify(managedCloudSdk).newUpdater();
   }
+
+  @Test
+  public void testDownloadCloudSdk_fromArchive() throws Exception {
+    CloudSdkArchiveInstaller archiveInstaller = mock(CloudSdkArchiveInstaller.class);
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+
+    Assert.assertEquals(
+        sdkHome, new CloudSdkDownloader(managedCloudSdk, archiveInstaller).downloadCloudSdk(log));
+
+    verify(archiveInstaller).install(sdkHome, log);
+    verify(managedCloudSdk, never()).newInstaller();
+    verify(managedCloudSdk, never()).newComponentInstaller();
+    verify(managedCloudSdk, never()).isUpToDate();
+  }
+
+  @Test
+  public void testDownloadCloudSdk_fromArchiveInstalled() throws Exception {
+    CloudSdkArchiveInstaller archiveInstaller = mock(CloudSdkArchiveInstaller.class);
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+
+    new CloudSdkDownloader(managedCloudSdk, archiveInstaller).downloadCloudSdk(log);
+
+    verify(archiveInstaller, never()).install(Matchers.any(Path.class), Matchers.any(Log.class));
+    verify(managedCloudSdk, never()).isUpToDate();
+  }
+
+  @Test
+  public void testDownloadCloudSdk_recoversIncompleteInstall() throws Exception {
+    Files.createDirectories(sdkHome.resolve("bin"));
+    Files.createFile(sdkHome.getParent().resolve(".install-incomplete"));
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+
+    downloader.downloadCloudSdk(log);
+
+    Assert.assertFalse(Files.exists(sdkHome.resolve("bin")));
+    Assert.assertFalse(Files.exists(sdkHome.getParent().resolve(".install-incomplete")));
+    verify(installer).install(Matchers.any(), Matchers.any());
+  }
+
+  @Test
+  public void testDownloadCloudSdk_failedInstallMarkedIncomplete() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    doThrow(new IOException("network")).when(installer).install(Matchers.any(), Matchers.any());
+
+    try {
+      downloader.downloadCloudSdk(log);
+      Assert.fail();
+    } catch (RuntimeException ex) {
+      Assert.assertTrue(Files.exists(sdkHome.getParent().resolve(".install-incomplete")));
+    }
+  }
+
+  @Test
+  public void testDownloadCloudSdk_failedUpdateNotMarkedIncomplete() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(false);
+    doThrow(new CommandExitException(1, "network"))
+        .when(updater)
+        .update(Matchers.any(), Matchers.any());
+
+    try {
+      downloader.downloadCloudSdk(log);
+      Assert.fail();
+    } catch (RuntimeException ex) {
+      Assert.assertFalse(Files.exists(sdkHome.getParent().resolve(".install-incomplete")));
+    }
+  }
+
+  @Test
+  public void testDownloadCloudSdk_timingSummary() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+    doAnswer(
+            invocation -> {
+              ProgressListener listener = (ProgressListener) invocation.getArguments()[0];
+              listener.start("Installing Cloud SDK", 300);
+              ProgressListener download = listener.newChild(100);
+              download.start("Downloading https://example.com/sdk.tar.gz", 2048);
+              download.update(2048);
+              download.done();
+              listener.done();
+              return null;
+            })
+        .when(installer)
+        .install(Matchers.any(), Matchers.any());
+    Path summaryFile = tempFolder.getRoot().toPath().resolve("target/cloud-sdk-provisioning.json");
+    downloader.setTimingSummaryFile(summaryFile);
+
+    downloader.downloadCloudSdk(log);
+
+    String summary = new String(Files.readAllBytes(summaryFile), StandardCharsets.UTF_8);
+    Assert.assertTrue(summary.contains("\"totalMillis\""));
+    Assert.assertTrue(summary.contains("\"lockWaitMillis\""));
+    Assert.assertTrue(summary.contains("\"phase\": \"install\""));
+    Assert.assertTrue(summary.contains("\"bytes\": 2048"));
+  }
+
+  @Test
+  public void testDownloadCloudSdk_timingSummaryOnFailure() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(false);
+    doThrow(new IOException("network")).when(installer).install(Matchers.any(), Matchers.any());
+    Path summaryFile = tempFolder.getRoot().toPath().resolve("target/cloud-sdk-provisioning.json");
+    downloader.setTimingSummaryFile(summaryFile);
+
+    try {
+      downloader.downloadCloudSdk(log);
+      Assert.fail();
+    } catch (RuntimeException ex) {
+      String summary = new String(Files.readAllBytes(summaryFile), StandardCharsets.UTF_8);
+      Assert.assertTrue(summary.contains("\"phase\": \"install\""));
+      Assert.assertTrue(summary.contains("\"complete\": false"));
+    }
+  }
+
+  @Test
+  public void testDownloadCloudSdk_waitsForOtherBuild() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+    CloudSdkInstallLock lock =
+        CloudSdkInstallLock.acquire(sdkHome.getParent().resolve(".install.lock"), 1000, log);
+    Thread release =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(500);
+                lock.close();
+              } catch (InterruptedException | IOException ex) {
+                throw new RuntimeException(ex);
+              }
+            });
+    release.start();
+
+    downloader.downloadCloudSdk(log);
+    release.join();
+
+    verify(log).info(Matchers.startsWith("Waiting for another build"));
+  }
+
+  @Test
+  public void testDownloadCloudSdk_updateCheckSkippedWhenFresh() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+    downloader.setUpdateCheck(TimeUnit.HOURS.toMillis(24), false);
+
+    downloader.downloadCloudSdk(log);
+    downloader.downloadCloudSdk(log);
+
+    verify(managedCloudSdk, times(1)).isUpToDate();
+  }
+
+  @Test
+  public void testDownloadCloudSdk_updateCheckForced() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+
+    downloader.setUpdateCheck(TimeUnit.HOURS.toMillis(24), false);
+    downloader.downloadCloudSdk(log);
+    downloader.setUpdateCheck(TimeUnit.HOURS.toMillis(24), true);
+    downloader.downloadCloudSdk(log);
+
+    verify(managedCloudSdk, times(2)).isUpToDate();
+  }
+
+  @Test
+  public void testDownloadCloudSdk_updateCheckExpired() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(true);
+    Files.createDirectories(sdkHome.getParent());
+    long yesterday = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25);
+    Files.write(
+        sdkHome.getParent().resolve(".last-update-check"),
+        Long.toString(yesterday).getBytes(StandardCharsets.UTF_8));
+    downloader.setUpdateCheck(TimeUnit.HOURS.toMillis(24), false);
+
+    downloader.downloadCloudSdk(log);
+
+    verify(managedCloudSdk).isUpToDate();
+  }
+
+  @Test
+  public void testDownloadCloudSdk_updateCheckNotRecordedWhenUpdateFails() throws Exception {
+    when(managedCloudSdk.isInstalled()).thenReturn(true);
+    when(managedCloudSdk.hasComponent(SdkComponent.APP_ENGINE_JAVA)).thenReturn(true);
+    when(managedCloudSdk.isUpToDate()).thenReturn(false);
+    doThrow(new CommandExitException(1, "failed"))
+        .when(updater)
+        .update(Matchers.any(), Matchers.any());
+    downloader.setUpdateCheck(TimeUnit.HOURS.toMillis(24), false);
+
+    try {
+      downloader.downloadCloudSdk(log);
+      Assert.fail();
+    } catch (RuntimeException ex) {
+      Assert.assertFalse(Files.exists(sdkHome.getParent().resolve(".last-update-check")));
+    }
+  }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CloudSdkInstallLockTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final Log log = mock(Log.class);
+  private Path lockFile;
+
+  @Before
+  public void setup() {
+    lockFile = tempFolder.getRoot().toPath().resolve("192.0.0/.install.lock");
+  }
+
+  @Test
+  public void testAcquire() throws IOException {
+    try (CloudSdkInstallLock lock = CloudSdkInstallLock.acquire(lockFile, 1000, log)) {
+      String owner = new String(Files.readAllBytes(lockFile), StandardCharsets.UTF_8);
+      Assert.assertTrue(owner.contains(" since "));
+    }
+    // released
+    CloudSdkInstallLock.acquire(lockFile, 0, log).close();
+  }
+
+  @Test
+  public void testAcquire_timeout() throws IOException {
+    try (CloudSdkInstallLock lock = CloudSdkInstallLock.acquire(lockFile, 1000, log)) {
+      try {
+        CloudSdkInstallLock.acquire(lockFile, 300, log);
+        Assert.fail();
+      } catch (IOException ex) {
+        Assert.assertTrue(ex.getMessage().startsWith("Timed out"));
+      }
+    }
+  }
+
+  @Test
+  public void testAcquire_waitsForRelease() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> waiter;
+      try (CloudSdkInstallLock lock = CloudSdkInstallLock.acquire(lockFile, 1000, log)) {
+        waiter =
+            executor.submit(
+                () -> {
+                  CloudSdkInstallLock.acquire(lockFile, 5000, log).close();
+                  return null;
+                });
+        Thread.sleep(300);
+        Assert.assertFalse(waiter.isDone());
+      }
+      waiter.get();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -19,11 +19,16 @@ package com.google.cloud.tools.maven;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -38,6 +43,8 @@ public class CloudSdkMojoTest {
 
   @InjectMocks private CloudSdkMojoImpl mojo;
 
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Test
   public void testGetArtifactId() {
     final String ARTIFACT_ID = "appengine-maven-plugin";
@@ -67,6 +74,50 @@ public class CloudSdkMojoTest {
     assertEquals("this-is-a-test-packaging", mojo.getPackaging());
   }
 
+  @Test
+  public void testExecuteTimed() throws Exception {
+    mojo.setTimingReportDirectory(tempFolder.getRoot());
+    File spansFile = new File(tempFolder.getRoot(), "spans.jsonl");
+    mojo.setTimingSpansFile(spansFile);
+    when(mavenProject.getArtifactId()).thenReturn("my-app");
+
+    mojo.executeTimed(
+        () -> {
+          try (TimingReport.Span span = mojo.startSpan("stage")) {
+            assertNotNull(span);
+          }
+        });
+
+    assertNull(mojo.startSpan("after"));
+    String report =
+        new String(
+            Files.readAllBytes(tempFolder.getRoot().toPath().resolve("CloudSdkMojoImpl.json")),
+            StandardCharsets.UTF_8);
+    assertTrue(report.contains("\"goal\": \"CloudSdkMojoImpl\""));
+    assertTrue(report.contains("\"name\": \"stage\""));
+    String spans = new String(Files.readAllBytes(spansFile.toPath()), StandardCharsets.UTF_8);
+    assertTrue(spans.contains("\"stringValue\":\"my-app\""));
+  }
+
+  @Test
+  public void testExecuteTimed_failure() throws Exception {
+    mojo.setTimingReportDirectory(tempFolder.getRoot());
+
+    try {
+      mojo.executeTimed(
+          () -> {
+            throw new MojoExecutionException("failed");
+          });
+      fail();
+    } catch (MojoExecutionException ex) {
+      String report =
+          new String(
+              Files.readAllBytes(tempFolder.getRoot().toPath().resolve("CloudSdkMojoImpl.json")),
+              StandardCharsets.UTF_8);
+      assertTrue(report.contains("MojoExecutionException: failed"));
+    }
+  }
+
   static class CloudSdkMojoImpl extends CloudSdkMojo {
 
     @Override
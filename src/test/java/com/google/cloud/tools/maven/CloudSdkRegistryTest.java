@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.appengine.cloudsdk.CloudSdk;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.execution.MavenSession;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CloudSdkRegistryTest {
+
+  private final CloudSdkRegistry registry = new CloudSdkRegistry();
+  private final AtomicInteger resolutions = new AtomicInteger();
+  private final Path home = Paths.get("google-cloud-sdk");
+
+  private static List<Object> key(Path cloudSdkHome, String cloudSdkVersion) {
+    return Arrays.<Object>asList(cloudSdkHome, cloudSdkVersion);
+  }
+
+  private CloudSdk newCloudSdk() {
+    resolutions.incrementAndGet();
+    return mock(CloudSdk.class);
+  }
+
+  @Test
+  public void testResolve_once() throws Exception {
+    CloudSdk first = registry.resolve(key(home, "192.0.0"), this::newCloudSdk);
+    CloudSdk second = registry.resolve(key(home, "192.0.0"), this::newCloudSdk);
+
+    Assert.assertSame(first, second);
+    Assert.assertEquals(1, resolutions.get());
+  }
+
+  @Test
+  public void testResolve_perHomeAndVersion() throws Exception {
+    registry.resolve(key(home, "192.0.0"), this::newCloudSdk);
+    registry.resolve(key(home, null), this::newCloudSdk);
+    registry.resolve(key(null, "192.0.0"), this::newCloudSdk);
+    registry.resolve(key(null, null), this::newCloudSdk);
+    registry.resolve(key(null, null), this::newCloudSdk);
+
+    Assert.assertEquals(4, resolutions.get());
+  }
+
+  @Test
+  public void testResolve_concurrent() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      Callable<CloudSdk> slowResolver =
+          () -> {
+            Thread.sleep(100);
+            return newCloudSdk();
+          };
+      List<Future<CloudSdk>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> registry.resolve(key(null, null), slowResolver)));
+      }
+      for (Future<CloudSdk> result : results) {
+        Assert.assertSame(results.get(0).get(), result.get());
+      }
+      Assert.assertEquals(1, resolutions.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testResolve_failureNotKept() throws Exception {
+    try {
+      registry.resolve(
+          key(home, null),
+          () -> {
+            throw new RuntimeException("download failed");
+          });
+      Assert.fail();
+    } catch (ExecutionException ex) {
+      Assert.assertEquals("download failed", ex.getCause().getMessage());
+    }
+
+    registry.resolve(key(home, null), this::newCloudSdk);
+    Assert.assertEquals(1, resolutions.get());
+  }
+
+  @Test
+  public void testResolveInBackground() throws Exception {
+    registry.resolveInBackground(key(home, null), this::newCloudSdk);
+    registry.resolve(key(home, null), this::newCloudSdk);
+    registry.resolveInBackground(key(home, null), this::newCloudSdk);
+
+    Assert.assertEquals(1, resolutions.get());
+  }
+
+  @Test
+  public void testResolveInBackground_failureThrownOnce() throws Exception {
+    registry.resolveInBackground(
+        key(home, null),
+        () -> {
+          throw new RuntimeException("download failed");
+        });
+    try {
+      registry.resolve(key(home, null), this::newCloudSdk);
+      Assert.fail();
+    } catch (ExecutionException ex) {
+      Assert.assertEquals("download failed", ex.getCause().getMessage());
+    }
+    Assert.assertEquals(0, resolutions.get());
+
+    registry.resolve(key(home, null), this::newCloudSdk);
+    Assert.assertEquals(1, resolutions.get());
+  }
+
+  @Test
+  public void testKey() {
+    CloudSdkMojo mojo = mock(CloudSdkMojo.class);
+    when(mojo.getCloudSdkUpdateCheckInterval()).thenReturn(24);
+    List<Object> key = CloudSdkRegistry.key(mojo);
+
+    Assert.assertEquals(key, CloudSdkRegistry.key(mojo));
+    when(mojo.getCloudSdkArchive()).thenReturn(Paths.get("google-cloud-sdk.tar.gz"));
+    Assert.assertNotEquals(key, CloudSdkRegistry.key(mojo));
+    key = CloudSdkRegistry.key(mojo);
+    when(mojo.getCloudSdkUpdateCheckInterval()).thenReturn(1);
+    Assert.assertNotEquals(key, CloudSdkRegistry.key(mojo));
+    key = CloudSdkRegistry.key(mojo);
+    when(mojo.isCloudSdkForceUpdateCheck()).thenReturn(true);
+    Assert.assertNotEquals(key, CloudSdkRegistry.key(mojo));
+  }
+
+  @Test
+  public void testForSession() {
+    MavenSession session = mock(MavenSession.class);
+
+    Assert.assertSame(CloudSdkRegistry.forSession(session), CloudSdkRegistry.forSession(session));
+    Assert.assertNotSame(
+        CloudSdkRegistry.forSession(session),
+        CloudSdkRegistry.forSession(mock(MavenSession.class)));
+  }
+}
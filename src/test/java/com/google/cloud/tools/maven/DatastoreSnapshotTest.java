@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class DatastoreSnapshotTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Rule public ExpectedException expectedException = ExpectedException.none();
+
+  private Path datastore;
+  private Path storage;
+  private Map<String, Path> paths;
+  private DatastoreSnapshot snapshot;
+
+  @Before
+  public void setUp() throws IOException {
+    Path root = tempFolder.getRoot().toPath();
+    datastore = root.resolve("local_db.bin");
+    storage = root.resolve("storage");
+    paths =
+        ImmutableMap.of(DatastoreSnapshot.DATASTORE, datastore, DatastoreSnapshot.STORAGE, storage);
+    snapshot =
+        new DatastoreSnapshot(DatastoreSnapshot.getDirectory(root.resolve("target"), "seeded"));
+    write(datastore, "entities");
+    write(storage.resolve("blobs").resolve("a"), "blob");
+  }
+
+  @Test
+  public void testSave() throws IOException {
+    Assert.assertFalse(snapshot.exists());
+
+    Assert.assertEquals(2, snapshot.save(paths));
+
+    Assert.assertTrue(snapshot.exists());
+    Assert.assertEquals(
+        "entities", read(snapshot.getDirectory().resolve(DatastoreSnapshot.DATASTORE)));
+    Assert.assertEquals(
+        "blob",
+        read(snapshot.getDirectory().resolve(DatastoreSnapshot.STORAGE).resolve("blobs/a")));
+  }
+
+  @Test
+  public void testSave_replacesSnapshot() throws IOException {
+    snapshot.save(paths);
+    FileUtils.deleteDirectory(storage.toFile());
+
+    Assert.assertEquals(1, snapshot.save(paths));
+
+    Assert.assertFalse(Files.exists(snapshot.getDirectory().resolve(DatastoreSnapshot.STORAGE)));
+  }
+
+  @Test
+  public void testRestore() throws IOException {
+    snapshot.save(paths);
+    write(datastore, "changed entities");
+    write(storage.resolve("blobs").resolve("b"), "new blob");
+    write(storage.resolve("new").resolve("c"), "new directory");
+
+    Assert.assertEquals(3, snapshot.restore(paths));
+
+    Assert.assertEquals("entities", read(datastore));
+    Assert.assertEquals("blob", read(storage.resolve("blobs").resolve("a")));
+    Assert.assertFalse(Files.exists(storage.resolve("blobs").resolve("b")));
+    Assert.assertFalse(Files.exists(storage.resolve("new")));
+  }
+
+  @Test
+  public void testRestore_unchanged() throws IOException {
+    snapshot.save(paths);
+
+    Assert.assertEquals(0, snapshot.restore(paths));
+    Assert.assertEquals("entities", read(datastore));
+  }
+
+  @Test
+  public void testRestore_absentEntry() throws IOException {
+    Files.delete(datastore);
+    snapshot.save(paths);
+    write(datastore, "entities");
+
+    Assert.assertEquals(1, snapshot.restore(paths));
+
+    Assert.assertFalse(Files.exists(datastore));
+  }
+
+  @Test
+  public void testRestore_missingSnapshot() throws IOException {
+    expectedException.expect(IOException.class);
+    expectedException.expectMessage("Datastore snapshot not found");
+
+    snapshot.restore(paths);
+  }
+
+  @Test
+  public void testGetPaths() {
+    File service = tempFolder.getRoot();
+    File datastorePath = new File("datastore.bin");
+    File storagePath = new File("storage");
+
+    Assert.assertEquals(
+        ImmutableMap.of(
+            DatastoreSnapshot.DATASTORE,
+            service.toPath().resolve("WEB-INF/appengine-generated/local_db.bin")),
+        DatastoreSnapshot.getPaths(
+            SupportedDevServerVersion.V1,
+            Collections.singletonList(service),
+            datastorePath,
+            storagePath));
+    Assert.assertEquals(
+        ImmutableMap.of(
+            DatastoreSnapshot.DATASTORE,
+            datastorePath.toPath(),
+            DatastoreSnapshot.STORAGE,
+            storagePath.toPath()),
+        DatastoreSnapshot.getPaths(
+            SupportedDevServerVersion.V2ALPHA,
+            Collections.singletonList(service),
+            datastorePath,
+            storagePath));
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import java.util.concurrent.CountDownLatch;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Matchers;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultProcessOutputLineListenerTest {
+
+  @Mock private Log log;
+
+  @Test
+  public void testOnOutputLine_writtenInOrder() {
+    DefaultProcessOutputLineListener listener = new DefaultProcessOutputLineListener(log);
+    for (int i = 0; i < 300; i++) {
+      listener.onOutputLine("line " + i);
+    }
+    listener.close();
+
+    InOrder inOrder = inOrder(log);
+    for (int i = 0; i < 300; i++) {
+      inOrder.verify(log).info("GCLOUD: line " + i);
+    }
+    Assert.assertEquals(0, listener.getQueueDepth());
+    Assert.assertEquals(0, listener.getDroppedLines());
+  }
+
+  @Test
+  public void testOnOutputLine_overwritesOldestWhenFull() throws InterruptedException {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              writing.countDown();
+              release.await();
+              return null;
+            })
+        .when(log)
+        .info("GCLOUD: first");
+    DefaultProcessOutputLineListener listener = new DefaultProcessOutputLineListener(log, 2);
+
+    listener.onOutputLine("first");
+    writing.await();
+    listener.onOutputLine("second");
+    listener.onOutputLine("third");
+    listener.onOutputLine("fourth");
+    listener.onOutputLine("fifth");
+
+    Assert.assertEquals(3, listener.getQueueDepth());
+    Assert.assertEquals(2, listener.getMaxQueueDepth());
+    Assert.assertEquals(2, listener.getDroppedLines());
+
+    release.countDown();
+    listener.close();
+
+    InOrder inOrder = inOrder(log);
+    inOrder.verify(log).info("GCLOUD: first");
+    inOrder.verify(log).warn(Matchers.startsWith("GCLOUD: 2 lines of output dropped"));
+    inOrder.verify(log).info("GCLOUD: fourth");
+    inOrder.verify(log).info("GCLOUD: fifth");
+    inOrder.verify(log).warn("2 lines of Cloud SDK output were dropped in total");
+    inOrder
+        .verify(log)
+        .debug("Cloud SDK output buffer: at most 2 of 2 lines queued, 2 lines dropped");
+    verify(log, never()).info("GCLOUD: second");
+    verify(log, never()).info("GCLOUD: third");
+    Assert.assertEquals(0, listener.getQueueDepth());
+  }
+
+  @Test
+  public void testPublishTo() {
+    DefaultProcessOutputLineListener listener = new DefaultProcessOutputLineListener(log);
+    listener.onOutputLine("line");
+    listener.close();
+    TimingReport.Span span = mock(TimingReport.Span.class);
+
+    listener.publishTo(span);
+
+    verify(span).setAttribute("output.max-queue-depth", "1");
+    verify(span).setAttribute("output.dropped-lines", "0");
+  }
+
+  @Test
+  public void testOnOutputLine_afterClose() {
+    DefaultProcessOutputLineListener listener = new DefaultProcessOutputLineListener(log);
+    listener.close();
+
+    listener.onOutputLine("late");
+
+    verify(log).info("GCLOUD: late");
+  }
+
+  @Test
+  public void testWrap_closesAfterProcess() throws Exception {
+    DefaultProcessOutputLineListener listener = new DefaultProcessOutputLineListener(log);
+    ProcessHandler handler =
+        process -> {
+          for (int i = 0; i < 100; i++) {
+            listener.onOutputLine("line " + i);
+          }
+        };
+
+    listener.wrap(handler).handleProcess(mock(Process.class));
+
+    verify(log).info("GCLOUD: line 99");
+    Assert.assertEquals(0, listener.getQueueDepth());
+  }
+}
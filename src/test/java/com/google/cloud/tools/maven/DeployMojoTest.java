@@ -17,6 +17,10 @@
 package com.google.cloud.tools.maven;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -96,7 +100,7 @@ public class DeployMojoTest {
 
     // verify
     assertEquals(1, deployMojo.getDeployables().size());
-    verify(standardStagingMock).stageStandard(deployMojo);
+    verify(standardStagingMock).stageStandard(StagingConfigurations.of(deployMojo));
     verify(deploymentMock).deploy(deployMojo);
   }
 
@@ -118,4 +122,37 @@ public class DeployMojoTest {
     verify(flexibleStagingMock).stageFlexible(deployMojo);
     verify(deploymentMock).deploy(deployMojo);
   }
+
+  @Test
+  public void testDeployFlexible_recordsManifest() throws Exception {
+    when(project.getPackaging()).thenReturn("jar");
+    when(factoryMock.flexibleStaging()).thenReturn(flexibleStagingMock);
+    when(factoryMock.deployment()).thenReturn(deploymentMock);
+    File manifests = tempFolder.newFolder("manifests");
+    deployMojo.setManifestDirectory(manifests);
+
+    deployMojo.execute();
+
+    assertTrue(new File(manifests, "project/default.sha1").exists());
+    verify(log)
+        .info(
+            "Deploying service default: no previous deployment recorded, 0 files (0.0 KB) to deploy");
+  }
+
+  @Test
+  public void testDeployFlexible_failedDeploymentNotRecorded() throws Exception {
+    when(project.getPackaging()).thenReturn("jar");
+    when(factoryMock.flexibleStaging()).thenReturn(flexibleStagingMock);
+    when(factoryMock.deployment()).thenReturn(deploymentMock);
+    doThrow(new AppEngineException("failed")).when(deploymentMock).deploy(deployMojo);
+    File manifests = tempFolder.newFolder("manifests");
+    deployMojo.setManifestDirectory(manifests);
+
+    try {
+      deployMojo.execute();
+      fail();
+    } catch (MojoExecutionException ex) {
+      assertFalse(new File(manifests, "project/default.sha1").exists());
+    }
+  }
 }
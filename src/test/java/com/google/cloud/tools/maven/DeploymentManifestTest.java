@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class DeploymentManifestTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path manifests;
+  private Path staging;
+
+  @Before
+  public void setup() throws IOException {
+    manifests = tempFolder.newFolder("manifests").toPath();
+    staging = tempFolder.newFolder("staging").toPath();
+    write("app.yaml", "runtime: java8\nservice: backend\n");
+    write("WEB-INF/lib/a.jar", "a");
+    write("WEB-INF/lib/b.jar", "b");
+  }
+
+  @Test
+  public void testScan_noPrevious() throws IOException {
+    DeploymentManifest manifest = DeploymentManifest.scan(manifests, "p", "backend", staging);
+
+    Assert.assertFalse(manifest.hasPrevious());
+    Assert.assertEquals(3, manifest.getChanged().size());
+    Assert.assertTrue(manifest.getRemoved().isEmpty());
+    Assert.assertEquals(manifest.getTotalSize(), manifest.getChangedSize());
+    Assert.assertEquals(manifests.resolve("p/backend.sha1"), manifest.getManifestFile());
+  }
+
+  @Test
+  public void testScan_changedSinceSave() throws IOException {
+    DeploymentManifest.scan(manifests, "p", "backend", staging).save();
+    write("WEB-INF/lib/a.jar", "changed");
+    Files.delete(staging.resolve("WEB-INF/lib/b.jar"));
+    write("WEB-INF/lib/c.jar", "c");
+
+    DeploymentManifest manifest = DeploymentManifest.scan(manifests, "p", "backend", staging);
+
+    Assert.assertTrue(manifest.hasPrevious());
+    Assert.assertEquals(2, manifest.getChanged().size());
+    Assert.assertTrue(manifest.getChanged().contains("WEB-INF/lib/a.jar"));
+    Assert.assertTrue(manifest.getChanged().contains("WEB-INF/lib/c.jar"));
+    Assert.assertEquals(1, manifest.getRemoved().size());
+    Assert.assertEquals(8, manifest.getChangedSize());
+    Assert.assertTrue(manifest.describe().startsWith("2 of 3 files changed"));
+  }
+
+  @Test
+  public void testScan_perProjectAndService() throws IOException {
+    DeploymentManifest.scan(manifests, "p", "backend", staging).save();
+
+    Assert.assertFalse(DeploymentManifest.scan(manifests, "q", "backend", staging).hasPrevious());
+    Assert.assertFalse(DeploymentManifest.scan(manifests, "p", "default", staging).hasPrevious());
+    Assert.assertFalse(DeploymentManifest.scan(manifests, null, "backend", staging).hasPrevious());
+  }
+
+  @Test
+  public void testScan_sha1() throws IOException {
+    DeploymentManifest.scan(manifests, "p", "backend", staging).save();
+
+    // sha1 of "a"
+    Assert.assertTrue(
+        new String(Files.readAllBytes(manifests.resolve("p/backend.sha1")), StandardCharsets.UTF_8)
+            .contains("86f7e437faa5a7fce15d1ddcb9eaeaea377667b8\t1\t"));
+  }
+
+  @Test
+  public void testScan_deployMojo() throws MojoExecutionException {
+    AbstractDeployMojo deployMojo = Mockito.mock(AbstractDeployMojo.class);
+    Mockito.when(deployMojo.getLog()).thenReturn(Mockito.mock(Log.class));
+    Mockito.when(deployMojo.getManifestDirectory()).thenReturn(manifests.toFile());
+    Mockito.when(deployMojo.getStagingDirectory()).thenReturn(staging.toFile());
+    Mockito.when(deployMojo.getProject()).thenReturn("p");
+
+    DeploymentManifest manifest = DeploymentManifest.scan(deployMojo);
+    manifest.record();
+
+    Assert.assertEquals(manifests.resolve("p/backend.sha1"), manifest.getManifestFile());
+    Assert.assertTrue(Files.exists(manifest.getManifestFile()));
+  }
+
+  @Test
+  public void testScan_deployMojoDisabled() throws MojoExecutionException {
+    AbstractDeployMojo deployMojo = Mockito.mock(AbstractDeployMojo.class);
+    Mockito.when(deployMojo.getManifestDirectory()).thenReturn(null);
+
+    Assert.assertNull(DeploymentManifest.scan(deployMojo));
+  }
+
+  @Test
+  public void testReadService() throws IOException {
+    Assert.assertEquals("backend", DeploymentManifest.readService(staging.resolve("app.yaml")));
+
+    write("app.yaml", "runtime: java8\nmodule: 'legacy'\n");
+    Assert.assertEquals("legacy", DeploymentManifest.readService(staging.resolve("app.yaml")));
+
+    write("app.yaml", "runtime: java8\n");
+    Assert.assertEquals("default", DeploymentManifest.readService(staging.resolve("app.yaml")));
+    Assert.assertEquals("default", DeploymentManifest.readService(staging.resolve("none.yaml")));
+  }
+
+  private void write(String path, String content) throws IOException {
+    Path file = staging.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeterministicJarWriterTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path classes;
+  private byte[] random = new byte[100000];
+
+  @Before
+  public void setup() throws IOException {
+    classes = tempFolder.newFolder("classes").toPath();
+    new Random(0).nextBytes(random);
+    write("com/example/A.class", "class A".getBytes(StandardCharsets.UTF_8));
+    write("com/example/B.class", new byte[100000]);
+    write("random.bin", random);
+    write("empty.txt", new byte[0]);
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    Path jar = tempFolder.getRoot().toPath().resolve("classes.jar");
+    new DeterministicJarWriter().write(classes, jar);
+
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      Assert.assertEquals(6, jarFile.size());
+      Assert.assertTrue(jarFile.getEntry("com/").isDirectory());
+      Assert.assertTrue(jarFile.getEntry("com/example/").isDirectory());
+      Assert.assertEquals("class A", new String(read(jarFile, "com/example/A.class")));
+      Assert.assertEquals(ZipEntry.DEFLATED, jarFile.getEntry("com/example/B.class").getMethod());
+      Assert.assertArrayEquals(new byte[100000], read(jarFile, "com/example/B.class"));
+      // incompressible content is stored
+      Assert.assertEquals(ZipEntry.STORED, jarFile.getEntry("random.bin").getMethod());
+      Assert.assertArrayEquals(random, read(jarFile, "random.bin"));
+      Assert.assertEquals(0, read(jarFile, "empty.txt").length);
+    }
+  }
+
+  @Test
+  public void testWrite_reproducible() throws IOException {
+    Path first = tempFolder.getRoot().toPath().resolve("first.jar");
+    Path second = tempFolder.getRoot().toPath().resolve("second.jar");
+    new DeterministicJarWriter().write(classes, first);
+    Files.setLastModifiedTime(
+        classes.resolve("com/example/A.class"), FileTime.fromMillis(123456789000L));
+    new DeterministicJarWriter(-1, 1).write(classes, second);
+
+    Assert.assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+  }
+
+  @Test
+  public void testWrite_zip64() throws IOException {
+    SortedMap<String, Path> entries = new TreeMap<>();
+    for (int i = 0; i < 70000; i++) {
+      entries.put("file" + i + ".txt", classes.resolve("empty.txt"));
+    }
+    Path jar = tempFolder.getRoot().toPath().resolve("large.jar");
+    new DeterministicJarWriter().write(entries, jar);
+
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      Assert.assertEquals(70000, jarFile.size());
+      Assert.assertNotNull(jarFile.getEntry("file69999.txt"));
+    }
+  }
+
+  private void write(String path, byte[] content) throws IOException {
+    Path file = classes.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content);
+  }
+
+  private static byte[] read(JarFile jarFile, String name) throws IOException {
+    try (InputStream input = jarFile.getInputStream(jarFile.getEntry(name))) {
+      return ByteStreams.toByteArray(input);
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Strings;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class DevServerLogWriterTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final Log log = Mockito.mock(Log.class);
+  private Path logFile;
+
+  @Before
+  public void setUp() {
+    logFile = DevServerLogWriter.getLogFile(tempFolder.getRoot().toPath());
+  }
+
+  @Test
+  public void testOnOutputLine() throws IOException {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, DevServerLogWriter.Rotation.NONE, log);
+    writer.onOutputLine("first");
+    writer.onOutputLine("second");
+
+    Assert.assertTrue(DevServerLogWriter.close(logFile));
+
+    Assert.assertEquals(
+        Arrays.asList("first", "second"), Files.readAllLines(logFile, StandardCharsets.UTF_8));
+    Assert.assertFalse(DevServerLogWriter.close(logFile));
+  }
+
+  @Test
+  public void testOnOutputLine_flushedPeriodically() throws Exception {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, DevServerLogWriter.Rotation.NONE, log);
+    writer.onOutputLine("line");
+
+    Thread.sleep(1500);
+
+    Assert.assertEquals(
+        Collections.singletonList("line"), Files.readAllLines(logFile, StandardCharsets.UTF_8));
+    writer.close();
+  }
+
+  @Test
+  public void testClose_closesConsoleListener() throws IOException {
+    DefaultProcessOutputLineListener consoleListener = new DefaultProcessOutputLineListener(log, 1);
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, DevServerLogWriter.Rotation.NONE, log);
+    writer.closeWith(consoleListener);
+
+    Assert.assertTrue(DevServerLogWriter.close(logFile));
+    consoleListener.onOutputLine("after stop");
+
+    Mockito.verify(log).info("GCLOUD: after stop");
+  }
+
+  @Test
+  public void testRotate_bySize() throws IOException {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, new DevServerLogWriter.Rotation(1000, 0, 2, false), log);
+    for (int i = 0; i < 4; i++) {
+      writer.onOutputLine(i + Strings.repeat("x", 999));
+    }
+    writer.onOutputLine("current");
+    writer.close();
+
+    Assert.assertFalse(Files.exists(writer.getSegment(1)));
+    Assert.assertFalse(Files.exists(writer.getSegment(2)));
+    Assert.assertTrue(readLines(writer.getSegment(3)).get(0).startsWith("2"));
+    Assert.assertTrue(readLines(writer.getSegment(4)).get(0).startsWith("3"));
+    Assert.assertEquals(Collections.singletonList("current"), readLines(logFile));
+  }
+
+  @Test
+  public void testRotate_bySizeInBytes() throws IOException {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, new DevServerLogWriter.Rotation(1000, 0, 0, false), log);
+    // 500 characters, 1000 bytes
+    writer.onOutputLine(Strings.repeat("\u00e9", 500));
+    writer.onOutputLine("current");
+    writer.close();
+
+    Assert.assertTrue(Files.exists(writer.getSegment(1)));
+    Assert.assertEquals(Collections.singletonList("current"), readLines(logFile));
+  }
+
+  @Test
+  public void testRotate_moveFailed() throws IOException {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, new DevServerLogWriter.Rotation(10, 0, 0, false), log);
+    // a segment that cannot be replaced
+    Files.createDirectories(writer.getSegment(1).resolve("busy"));
+
+    writer.onOutputLine("0123456789");
+    writer.onOutputLine("9876543210");
+    writer.close();
+
+    Assert.assertEquals(Arrays.asList("0123456789", "9876543210"), readLines(logFile));
+    Mockito.verify(log, Mockito.times(1)).warn(Mockito.startsWith("Failed to rotate"));
+  }
+
+  @Test
+  public void testRotate_compressed() throws IOException {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, new DevServerLogWriter.Rotation(10, 0, 0, true), log);
+    writer.onOutputLine("0123456789");
+    writer.close();
+
+    Path segment = writer.getSegment(1);
+    Assert.assertFalse(Files.exists(segment));
+    try (InputStream in =
+        new GZIPInputStream(
+            Files.newInputStream(segment.resolveSibling(segment.getFileName() + ".gz")))) {
+      Assert.assertEquals(
+          "0123456789" + System.lineSeparator(), IOUtils.toString(in, StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testRotate_byAge() throws Exception {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, new DevServerLogWriter.Rotation(0, 1, 0, false), log);
+    writer.onOutputLine("old");
+
+    // rotated on the next periodic flush
+    Thread.sleep(1500);
+    writer.onOutputLine("new");
+    writer.close();
+
+    Assert.assertEquals(Collections.singletonList("old"), readLines(writer.getSegment(1)));
+    Assert.assertEquals(Collections.singletonList("new"), readLines(logFile));
+  }
+
+  @Test
+  public void testOpen_deletesPreviousSegments() throws IOException {
+    DevServerLogWriter writer =
+        DevServerLogWriter.open(logFile, new DevServerLogWriter.Rotation(1, 0, 0, false), log);
+    writer.onOutputLine("rotated");
+    Assert.assertTrue(Files.exists(writer.getSegment(1)));
+
+    writer = DevServerLogWriter.open(logFile, DevServerLogWriter.Rotation.NONE, log);
+    writer.close();
+
+    Assert.assertFalse(Files.exists(writer.getSegment(1)));
+    Assert.assertEquals(Collections.emptyList(), readLines(logFile));
+  }
+
+  private static List<String> readLines(Path file) throws IOException {
+    return Files.readAllLines(file, StandardCharsets.UTF_8);
+  }
+}
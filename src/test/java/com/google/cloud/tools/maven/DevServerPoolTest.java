@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DevServerPoolTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testAllocate() throws IOException {
+    Path buildDirectory = tempFolder.getRoot().toPath();
+
+    DevServerPool pool = DevServerPool.allocate(null, 3, buildDirectory);
+
+    Assert.assertEquals(3, pool.getInstances().size());
+    Set<Integer> ports = new HashSet<>();
+    for (DevServerPool.Instance instance : pool.getInstances()) {
+      ports.add(instance.getPorts().getPort());
+      ports.add(instance.getPorts().getAdminPort());
+      ports.add(instance.getPorts().getApiPort());
+    }
+    Assert.assertEquals(9, ports.size());
+    DevServerPool.Instance second = pool.getInstances().get(1);
+    Assert.assertEquals(1, second.getIndex());
+    Assert.assertEquals(
+        buildDirectory.resolve("dev-appserver-out").resolve("instance-1"), second.getDirectory());
+    Assert.assertEquals(second.getDirectory().resolve("storage"), second.getStoragePath());
+    Assert.assertEquals(second.getDirectory().resolve("local_db.bin"), second.getDatastorePath());
+    Assert.assertEquals(second.getDirectory().resolve("dev_appserver.out"), second.getLogFile());
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    Path file = DevServerPool.getFile(tempFolder.getRoot().toPath());
+    Assert.assertNull(DevServerPool.load(file));
+
+    newPool().save(file);
+    DevServerPool loaded = DevServerPool.load(file);
+
+    Assert.assertEquals(2, loaded.getInstances().size());
+    DevServerPool.Instance second = loaded.getInstances().get(1);
+    Assert.assertEquals(1, second.getIndex());
+    Assert.assertEquals(41010, second.getPorts().getPort());
+    Assert.assertEquals(41012, second.getPorts().getApiPort());
+    Assert.assertEquals(tempFolder.getRoot().toPath().resolve("b"), second.getDirectory());
+  }
+
+  @Test
+  public void testPublish() {
+    Properties properties = new Properties();
+
+    newPool().publish(properties);
+
+    Assert.assertEquals(
+        "http://localhost:41000,http://127.0.0.1:41010",
+        properties.getProperty("app.devserver.endpoints"));
+    Assert.assertEquals("2", properties.getProperty("app.devserver.pool.size"));
+  }
+
+  @Test
+  public void testGetEndpoint_anyAddress() {
+    DevServerPool.Instance instance =
+        new DevServerPool.Instance(0, new DevServerPorts("0.0.0.0", 41000, 41001, 41002), "a");
+
+    Assert.assertEquals("http://localhost:41000", instance.getEndpoint());
+  }
+
+  private DevServerPool newPool() {
+    Path root = tempFolder.getRoot().toPath();
+    return new DevServerPool(
+        ImmutableList.of(
+            new DevServerPool.Instance(
+                0, new DevServerPorts(null, 41000, 41001, 41002), root.resolve("a").toString()),
+            new DevServerPool.Instance(
+                1,
+                new DevServerPorts("127.0.0.1", 41010, 41011, 41012),
+                root.resolve("b").toString())));
+  }
+}
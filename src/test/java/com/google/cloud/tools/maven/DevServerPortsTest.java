@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DevServerPortsTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testAllocate() throws IOException {
+    DevServerPorts ports = DevServerPorts.allocate(null);
+
+    Assert.assertNull(ports.getHost());
+    Assert.assertTrue(ports.getPort() > 0);
+    Assert.assertNotEquals(ports.getPort(), ports.getAdminPort());
+    Assert.assertNotEquals(ports.getPort(), ports.getApiPort());
+    Assert.assertNotEquals(ports.getAdminPort(), ports.getApiPort());
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    Path file = DevServerPorts.getFile(tempFolder.getRoot().toPath());
+    Assert.assertNull(DevServerPorts.load(file));
+
+    new DevServerPorts("localhost", 41000, 41001, 41002).save(file);
+    DevServerPorts loaded = DevServerPorts.load(file);
+
+    Assert.assertEquals("localhost", loaded.getHost());
+    Assert.assertEquals(41000, loaded.getPort());
+    Assert.assertEquals(41001, loaded.getAdminPort());
+    Assert.assertEquals(41002, loaded.getApiPort());
+  }
+
+  @Test
+  public void testPublish() {
+    Properties properties = new Properties();
+
+    new DevServerPorts(null, 41000, 41001, 41002).publish(properties);
+
+    Assert.assertEquals("41000", properties.getProperty("app.devserver.allocated.port"));
+    Assert.assertEquals("41001", properties.getProperty("app.devserver.allocated.adminPort"));
+    Assert.assertEquals("41002", properties.getProperty("app.devserver.allocated.apiPort"));
+  }
+}
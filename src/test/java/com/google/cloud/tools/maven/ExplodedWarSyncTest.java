@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExplodedWarSyncTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path classes;
+  private Path explodedWar;
+  private Path trigger;
+  private ExplodedWarSync sync;
+
+  @Before
+  public void setUp() throws IOException {
+    classes = tempFolder.newFolder("classes").toPath();
+    explodedWar = tempFolder.newFolder("war").toPath();
+    trigger = explodedWar.resolve("WEB-INF/appengine-web.xml");
+    Files.createDirectories(trigger.getParent());
+    Files.write(trigger, "<appengine-web-app/>".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(trigger, FileTime.fromMillis(0));
+    sync =
+        new ExplodedWarSync(
+            ImmutableMap.of(classes, explodedWar.resolve("WEB-INF/classes")),
+            trigger,
+            50,
+            mock(Log.class));
+  }
+
+  @Test
+  public void testSync() throws IOException {
+    Path changed = write(classes.resolve("com/example/A.class"), "a");
+    Path removed = explodedWar.resolve("WEB-INF/classes/com/example/B.class");
+    write(removed, "b");
+
+    Assert.assertEquals(
+        2, sync.sync(Arrays.asList(changed, classes.resolve("com/example/B.class"))));
+
+    Assert.assertEquals("a", read(explodedWar.resolve("WEB-INF/classes/com/example/A.class")));
+    Assert.assertFalse(Files.exists(removed));
+    Assert.assertFalse(
+        Files.exists(explodedWar.resolve("WEB-INF/classes/com/example/.copy-A.class")));
+  }
+
+  @Test
+  public void testSyncAll() throws IOException {
+    write(classes.resolve("A.class"), "a");
+    write(classes.resolve("res/app.properties"), "x=1");
+
+    Assert.assertEquals(2, sync.syncAll());
+    Assert.assertEquals(0, sync.syncAll());
+
+    write(classes.resolve("A.class"), "a2");
+    Assert.assertEquals(1, sync.syncAll());
+    Assert.assertEquals("a2", read(explodedWar.resolve("WEB-INF/classes/A.class")));
+  }
+
+  @Test
+  public void testWatch() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> watching =
+          executor.submit(
+              () -> {
+                sync.watch();
+                return null;
+              });
+      // let the watch service register the directories
+      Thread.sleep(500);
+
+      write(classes.resolve("com/example/A.class"), "a");
+
+      Path synced = explodedWar.resolve("WEB-INF/classes/com/example/A.class");
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+      while (!Files.exists(synced) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(100);
+      }
+      Assert.assertEquals("a", read(synced));
+      while (Files.getLastModifiedTime(trigger).toMillis() == 0
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(100);
+      }
+      Assert.assertNotEquals(0, Files.getLastModifiedTime(trigger).toMillis());
+
+      sync.close();
+      watching.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static Path write(Path file, String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}
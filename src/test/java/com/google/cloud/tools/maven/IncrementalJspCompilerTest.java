@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalJspCompilerTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private StageMojo stageMojo = new StageMojo();
+  private Path source;
+  private IncrementalJspCompiler compiler;
+
+  @Before
+  public void setup() throws IOException {
+    stageMojo.setSourceDirectory(tempFolder.newFolder("source"));
+    source = stageMojo.getSourceDirectory().toPath();
+    compiler = new IncrementalJspCompiler(stageMojo);
+
+    write("index.jsp", "<%@ include file=\"/WEB-INF/jspf/header.jspf\" %>");
+    write("admin/users.jsp", "<jsp:directive.include file=\"../WEB-INF/jspf/menu.jspf\"/>");
+    write("WEB-INF/jspf/header.jspf", "<%@ include file='menu.jspf' %>");
+    write("WEB-INF/jspf/menu.jspf", "<ul></ul>");
+    write("tags.jsp", "<%@ taglib prefix=\"t\" tagdir=\"/WEB-INF/tags\" %>");
+    write("WEB-INF/tags/box.tag", "<div></div>");
+    write("plain.jsp", "<html></html>");
+  }
+
+  @Test
+  public void testIsJspSource() {
+    Assert.assertTrue(IncrementalJspCompiler.isJspSource("index.jsp"));
+    Assert.assertTrue(IncrementalJspCompiler.isJspSource("WEB-INF/tags/box.tag"));
+    Assert.assertTrue(IncrementalJspCompiler.isJspSource("WEB-INF/jspf/menu.jspf"));
+    Assert.assertFalse(IncrementalJspCompiler.isJspSource("WEB-INF/classes/index.jsp"));
+    Assert.assertFalse(IncrementalJspCompiler.isJspSource("index.html"));
+    Assert.assertTrue(IncrementalJspCompiler.isPage("index.jsp"));
+    Assert.assertFalse(IncrementalJspCompiler.isPage("WEB-INF/jspf/menu.jspf"));
+  }
+
+  @Test
+  public void testResolve() {
+    Assert.assertEquals("a/b.jspf", IncrementalJspCompiler.resolve("a/page.jsp", "b.jspf"));
+    Assert.assertEquals("b.jspf", IncrementalJspCompiler.resolve("a/page.jsp", "../b.jspf"));
+    Assert.assertEquals("c/b.jspf", IncrementalJspCompiler.resolve("a/page.jsp", "/c/b.jspf"));
+    Assert.assertEquals("b.jspf", IncrementalJspCompiler.resolve("page.jsp", "b.jspf"));
+  }
+
+  @Test
+  public void testFindStalePages_page() throws IOException {
+    Assert.assertEquals(
+        ImmutableSet.of("plain.jsp"),
+        compiler.findStalePages(manifest(), ImmutableSet.of("plain.jsp")));
+  }
+
+  @Test
+  public void testFindStalePages_transitiveInclude() throws IOException {
+    Assert.assertEquals(
+        ImmutableSet.of("admin/users.jsp", "index.jsp"),
+        compiler.findStalePages(manifest(), ImmutableSet.of("WEB-INF/jspf/menu.jspf")));
+  }
+
+  @Test
+  public void testFindStalePages_tagFile() throws IOException {
+    Assert.assertEquals(
+        ImmutableSet.of("tags.jsp"),
+        compiler.findStalePages(manifest(), ImmutableSet.of("WEB-INF/tags/box.tag")));
+  }
+
+  @Test
+  public void testFindStalePages_removedTagFile() throws IOException {
+    Assert.assertEquals(
+        ImmutableSet.of("tags.jsp"),
+        compiler.findStalePages(manifest(), ImmutableSet.of("WEB-INF/tags/removed.tag")));
+  }
+
+  private StagingManifest manifest() throws IOException {
+    return StagingManifest.scan(source, "", null);
+  }
+
+  private void write(String path, String content) throws IOException {
+    Path file = source.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
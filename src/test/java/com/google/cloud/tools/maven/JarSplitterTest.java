@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarSplitterTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path lib;
+
+  @Before
+  public void setup() throws IOException {
+    lib = tempFolder.newFolder("lib").toPath();
+  }
+
+  @Test
+  public void testSplitAll() throws IOException {
+    List<String> entries = writeJar(lib.resolve("big.jar"), 20, 1000);
+    writeJar(lib.resolve("small.jar"), 1, 1000);
+
+    new JarSplitter(5000, null).splitAll(lib);
+
+    Assert.assertFalse(Files.exists(lib.resolve("big.jar")));
+    Assert.assertTrue(Files.exists(lib.resolve("small.jar")));
+    Assert.assertFalse(Files.exists(lib.resolve("small-0000.jar")));
+
+    List<Path> fragments = JarSplitter.findFragments(lib.resolve("big.jar"));
+    Assert.assertTrue(fragments.size() > 1);
+    Assert.assertTrue(Files.exists(lib.resolve("big-0000.jar")));
+    List<String> splitEntries = new ArrayList<>();
+    for (Path fragment : fragments) {
+      Assert.assertTrue(Files.size(fragment) <= 5000);
+      try (JarFile jarFile = new JarFile(fragment.toFile())) {
+        Assert.assertEquals(
+            "test", jarFile.getManifest().getMainAttributes().getValue("Created-By"));
+        for (JarEntry entry : Collections.list(jarFile.entries())) {
+          if (!entry.getName().equals(JarFile.MANIFEST_NAME)) {
+            splitEntries.add(entry.getName());
+          }
+        }
+      }
+    }
+    splitEntries.sort(null);
+    Assert.assertEquals(entries, splitEntries);
+  }
+
+  @Test
+  public void testSplit_excludes() throws IOException {
+    writeJar(lib.resolve("big.jar"), 10, 1000);
+
+    new JarSplitter(5000, "1.class, 2.class").split(lib.resolve("big.jar"));
+
+    for (Path fragment : JarSplitter.findFragments(lib.resolve("big.jar"))) {
+      try (JarFile jarFile = new JarFile(fragment.toFile())) {
+        Assert.assertNull(jarFile.getEntry("Entry1.class"));
+        Assert.assertNull(jarFile.getEntry("Entry2.class"));
+      }
+    }
+  }
+
+  @Test
+  public void testSplit_entryLargerThanMaxSize() throws IOException {
+    writeJar(lib.resolve("big.jar"), 2, 10000);
+
+    new JarSplitter(5000, null).split(lib.resolve("big.jar"));
+
+    Assert.assertEquals(2, JarSplitter.findFragments(lib.resolve("big.jar")).size());
+  }
+
+  @Test
+  public void testSplit_storedEntries() throws IOException {
+    Path jar = lib.resolve("big.jar");
+    Random random = new Random(0);
+    try (OutputStream output = Files.newOutputStream(jar);
+        JarOutputStream jarOutput = new JarOutputStream(output, new Manifest())) {
+      for (int i = 0; i < 10; i++) {
+        byte[] content = new byte[1500];
+        random.nextBytes(content);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        JarEntry entry = new JarEntry("Entry" + i + ".class");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCrc(crc.getValue());
+        jarOutput.putNextEntry(entry);
+        jarOutput.write(content);
+        jarOutput.closeEntry();
+      }
+    }
+
+    new JarSplitter(5000, null).split(jar);
+
+    int entryCount = 0;
+    for (Path fragment : JarSplitter.findFragments(jar)) {
+      Assert.assertTrue(Files.size(fragment) <= 5000);
+      try (JarFile jarFile = new JarFile(fragment.toFile())) {
+        entryCount += jarFile.size() - 1;
+      }
+    }
+    Assert.assertEquals(10, entryCount);
+  }
+
+  @Test
+  public void testFindFragments() throws IOException {
+    for (String name : Arrays.asList("a-0000.jar", "a-0001.jar", "a-b-0000.jar", "a-1.jar")) {
+      Files.createFile(lib.resolve(name));
+    }
+
+    List<Path> fragments = JarSplitter.findFragments(lib.resolve("a.jar"));
+
+    fragments.sort(null);
+    Assert.assertEquals(
+        Arrays.asList(lib.resolve("a-0000.jar"), lib.resolve("a-0001.jar")), fragments);
+  }
+
+  /** Writes a jar of incompressible entries and returns the sorted entry names. */
+  private static List<String> writeJar(Path jar, int entryCount, int entrySize) throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue("Created-By", "test");
+    Random random = new Random(entryCount);
+    List<String> names = new ArrayList<>();
+    try (OutputStream output = Files.newOutputStream(jar);
+        JarOutputStream jarOutput = new JarOutputStream(output, manifest)) {
+      for (int i = 0; i < entryCount; i++) {
+        byte[] content = new byte[entrySize];
+        random.nextBytes(content);
+        String name = "Entry" + i + ".class";
+        jarOutput.putNextEntry(new JarEntry(name));
+        jarOutput.write(content);
+        jarOutput.closeEntry();
+        names.add(name);
+      }
+    }
+    names.sort(null);
+    return names;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandler;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessHandlerException;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+public class ProcessStartupMetricsTest {
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final ProcessStartupMetrics metrics = new ProcessStartupMetrics(ticker);
+  private final Log log = mock(Log.class);
+  private final Process process = mock(Process.class);
+
+  @Test
+  public void testMeasure_untilFirstOutput() throws ProcessHandlerException {
+    ProcessStartupMetrics.Measurement measurement = metrics.newMeasurement(log);
+    ProcessHandler handler = mock(ProcessHandler.class);
+    doAnswer(
+            invocation -> {
+              ticker.advance(2000);
+              measurement.onOutputLine("first");
+              ticker.advance(5000);
+              measurement.onOutputLine("second");
+              return null;
+            })
+        .when(handler)
+        .handleProcess(process);
+
+    measurement.wrap(handler).handleProcess(process);
+
+    verify(handler).handleProcess(process);
+    Assert.assertEquals(1, metrics.getProcesses());
+    Assert.assertEquals(2000, metrics.getStartupMillis());
+    verify(log).debug("Cloud SDK process startup took 2.0 s");
+  }
+
+  @Test
+  public void testMeasure_noOutput() throws ProcessHandlerException {
+    ProcessStartupMetrics.Measurement measurement = metrics.newMeasurement(log);
+    ProcessHandler handler = mock(ProcessHandler.class);
+    doAnswer(
+            invocation -> {
+              ticker.advance(3000);
+              throw new ProcessHandlerException(new Exception("failed"));
+            })
+        .when(handler)
+        .handleProcess(process);
+
+    try {
+      measurement.wrap(handler).handleProcess(process);
+      Assert.fail();
+    } catch (ProcessHandlerException ex) {
+      // expected
+    }
+
+    Assert.assertEquals(0, metrics.getProcesses());
+    Assert.assertEquals(1, metrics.getSilentProcesses());
+    Assert.assertEquals(0, metrics.getStartupMillis());
+    verify(log).debug("Cloud SDK process ran 3.0 s without output");
+  }
+
+  @Test
+  public void testMeasure_summedOverProcesses() throws ProcessHandlerException {
+    for (int i = 0; i < 3; i++) {
+      ProcessStartupMetrics.Measurement measurement = metrics.newMeasurement(log);
+      measurement
+          .wrap(
+              process -> {
+                ticker.advance(1000);
+                measurement.onOutputLine("line");
+              })
+          .handleProcess(process);
+    }
+
+    Assert.assertEquals(3, metrics.getProcesses());
+    Assert.assertEquals(3000, metrics.getStartupMillis());
+    verify(log, never()).info(Matchers.anyString());
+  }
+
+  @Test
+  public void testLogTotal_oncePerNewProcesses() throws ProcessHandlerException {
+    ProcessStartupMetrics.Measurement measurement = metrics.newMeasurement(log);
+    measurement
+        .wrap(
+            process -> {
+              ticker.advance(1000);
+              measurement.onOutputLine("line");
+            })
+        .handleProcess(process);
+    metrics.newMeasurement(log).wrap(process -> ticker.advance(500)).handleProcess(process);
+
+    metrics.logTotal(log);
+    metrics.logTotal(log);
+
+    verify(log)
+        .info(
+            "Cloud SDK process startup took 1.0 s over the 1 processes of this build,"
+                + " not counting 1 processes without output");
+  }
+
+  private static class FakeTicker extends Ticker {
+
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long millis) {
+      nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class QuickstartScannerTest {
+
+  private static final String ANNOTATED_CLASS = "Êþº¾Ljavax/servlet/annotation/WebServlet;";
+  private static final String PLAIN_CLASS = "Êþº¾Ljava/lang/Object;";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path source;
+
+  @Before
+  public void setup() throws IOException {
+    source = tempFolder.newFolder("source").toPath();
+  }
+
+  @Test
+  public void testIsScanned() {
+    Assert.assertTrue(QuickstartScanner.isScanned("WEB-INF/classes/com/example/A.class"));
+    Assert.assertTrue(QuickstartScanner.isScanned("WEB-INF/lib/a.jar"));
+    Assert.assertFalse(QuickstartScanner.isScanned("WEB-INF/lib/nested/a.jar"));
+    Assert.assertFalse(QuickstartScanner.isScanned("WEB-INF/classes/logging.properties"));
+    Assert.assertFalse(QuickstartScanner.isScanned("index.jsp"));
+  }
+
+  @Test
+  public void testScanJar() throws IOException {
+    Assert.assertEquals(
+        EnumSet.of(QuickstartScanner.Feature.ANNOTATIONS),
+        QuickstartScanner.scanJar(writeJar("annotated.jar", "A.class", ANNOTATED_CLASS)).features);
+    Assert.assertEquals(
+        EnumSet.noneOf(QuickstartScanner.Feature.class),
+        QuickstartScanner.scanJar(writeJar("plain.jar", "A.class", PLAIN_CLASS)).features);
+    Assert.assertEquals(
+        EnumSet.of(QuickstartScanner.Feature.CONTAINER_INITIALIZER),
+        QuickstartScanner.scanJar(
+                writeJar(
+                    "initializer.jar",
+                    "META-INF/services/javax.servlet.ServletContainerInitializer",
+                    "com.example.Initializer"))
+            .features);
+    Assert.assertEquals(
+        EnumSet.of(QuickstartScanner.Feature.WEB_RESOURCES),
+        QuickstartScanner.scanJar(writeJar("taglib.jar", "META-INF/c.tld", "<taglib/>")).features);
+  }
+
+  @Test
+  public void testScanJar_webFragment() throws IOException {
+    QuickstartScanner.JarScan scan =
+        QuickstartScanner.scanJar(
+            writeJar(
+                "fragment.jar",
+                "META-INF/web-fragment.xml",
+                "<web-fragment><name> library </name></web-fragment>"));
+
+    Assert.assertEquals(EnumSet.of(QuickstartScanner.Feature.WEB_FRAGMENT), scan.features);
+    Assert.assertEquals("library", scan.fragmentName);
+  }
+
+  @Test
+  public void testScan_cached() throws IOException {
+    writeJar("annotated.jar", "A.class", ANNOTATED_CLASS);
+    writeJar(
+        "fragment.jar", "META-INF/web-fragment.xml", "<web-fragment><name>f</name></web-fragment>");
+    write("WEB-INF/classes/B.class", PLAIN_CLASS);
+    StagingManifest manifest = StagingManifest.scan(source, "", null);
+    String jarHash = manifest.getEntries().get("WEB-INF/lib/annotated.jar").getHash();
+    String fragmentHash = manifest.getEntries().get("WEB-INF/lib/fragment.jar").getHash();
+    String classHash = manifest.getEntries().get("WEB-INF/classes/B.class").getHash();
+
+    Path cacheFile = tempFolder.getRoot().toPath().resolve("quickstart");
+    QuickstartScanner scanner = new QuickstartScanner(cacheFile);
+    Assert.assertNull(scanner.getFeatures("WEB-INF/lib/annotated.jar", jarHash));
+    scanner.scan(source, manifest);
+    scanner.save(manifest);
+
+    // the cached results are used even though the files are gone
+    Files.delete(source.resolve("WEB-INF/lib/annotated.jar"));
+    Files.delete(source.resolve("WEB-INF/lib/fragment.jar"));
+    Files.delete(source.resolve("WEB-INF/classes/B.class"));
+    QuickstartScanner cached = new QuickstartScanner(cacheFile);
+    cached.scan(source, manifest);
+    Assert.assertEquals(
+        EnumSet.of(QuickstartScanner.Feature.ANNOTATIONS),
+        cached.getFeatures("WEB-INF/lib/annotated.jar", jarHash));
+    Assert.assertNull(cached.getFragmentName(jarHash));
+    Assert.assertEquals("f", cached.getFragmentName(fragmentHash));
+    Assert.assertEquals(
+        EnumSet.noneOf(QuickstartScanner.Feature.class),
+        cached.getFeatures("WEB-INF/classes/B.class", classHash));
+  }
+
+  @Test
+  public void testGetFeatures_unscannedFiles() throws IOException {
+    QuickstartScanner scanner = new QuickstartScanner(tempFolder.getRoot().toPath().resolve("q"));
+    Assert.assertEquals(
+        EnumSet.of(QuickstartScanner.Feature.CONTAINER_INITIALIZER),
+        scanner.getFeatures(
+            "WEB-INF/classes/META-INF/services/javax.servlet.ServletContainerInitializer", "x"));
+    Assert.assertEquals(
+        EnumSet.noneOf(QuickstartScanner.Feature.class),
+        scanner.getFeatures("WEB-INF/classes/logging.properties", "x"));
+  }
+
+  private Path writeJar(String name, String entry, String content) throws IOException {
+    Path jar = source.resolve("WEB-INF/lib").resolve(name);
+    Files.createDirectories(jar.getParent());
+    try (OutputStream output = Files.newOutputStream(jar);
+        ZipOutputStream zipOutput = new ZipOutputStream(output)) {
+      zipOutput.putNextEntry(new ZipEntry(entry));
+      zipOutput.write(content.getBytes(StandardCharsets.ISO_8859_1));
+      zipOutput.closeEntry();
+    }
+    return jar;
+  }
+
+  private void write(String path, String content) throws IOException {
+    Path file = source.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReactorDeploymentTest {
+
+  private static final String PLUGIN_KEY = "com.google.cloud.tools:appengine-maven-plugin";
+  private static final String GOAL = "deployAllParallel";
+
+  @Test
+  public void testDeploy() throws Exception {
+    AppEngineDeployer first = mock(AppEngineDeployer.class);
+    AppEngineDeployer second = mock(AppEngineDeployer.class);
+    ReactorDeployment deployment = new ReactorDeployment(2, 2);
+    deployment.add("first", first);
+    deployment.add("second", second);
+
+    List<ReactorDeployment.Result> results = deployment.deploy();
+
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals("first", results.get(0).getService());
+    Assert.assertEquals("second", results.get(1).getService());
+    Assert.assertTrue(results.get(0).isSuccess());
+    Assert.assertTrue(results.get(1).isSuccess());
+    verify(first).prepareDeployAll();
+    verify(first).deployPrepared();
+    verify(second).prepareDeployAll();
+    verify(second).deployPrepared();
+  }
+
+  @Test
+  public void testDeploy_stagingFailure() throws Exception {
+    AppEngineDeployer failing = mock(AppEngineDeployer.class);
+    AppEngineDeployer other = mock(AppEngineDeployer.class);
+    MojoExecutionException failure = new MojoExecutionException("staging failed");
+    doThrow(failure).when(failing).prepareDeployAll();
+    ReactorDeployment deployment = new ReactorDeployment(2, 2);
+    deployment.add("failing", failing);
+    deployment.add("other", other);
+
+    List<ReactorDeployment.Result> results = deployment.deploy();
+
+    Assert.assertFalse(results.get(0).isSuccess());
+    Assert.assertSame(failure, results.get(0).getFailure());
+    Assert.assertTrue(results.get(1).isSuccess());
+    verify(failing, never()).deployPrepared();
+    verify(other).deployPrepared();
+  }
+
+  @Test
+  public void testDeploy_deploymentFailure() throws Exception {
+    AppEngineDeployer failing = mock(AppEngineDeployer.class);
+    doThrow(new RuntimeException("deployment failed")).when(failing).deployPrepared();
+    ReactorDeployment deployment = new ReactorDeployment(1, 1);
+    deployment.add("failing", failing);
+
+    List<ReactorDeployment.Result> results = deployment.deploy();
+
+    Assert.assertFalse(results.get(0).isSuccess());
+    Assert.assertEquals("deployment failed", results.get(0).getFailure().getMessage());
+  }
+
+  @Test
+  public void testDeploy_limitsConcurrentDeployments() throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    ReactorDeployment deployment = new ReactorDeployment(4, 2);
+    for (int i = 0; i < 6; i++) {
+      AppEngineDeployer deployer = mock(AppEngineDeployer.class);
+      doAnswer(
+              invocation -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(50);
+                running.decrementAndGet();
+                return null;
+              })
+          .when(deployer)
+          .deployPrepared();
+      deployment.add("service" + i, deployer);
+    }
+
+    List<ReactorDeployment.Result> results = deployment.deploy();
+
+    Assert.assertEquals(6, results.size());
+    Assert.assertTrue(maxRunning.get() <= 2);
+  }
+
+  @Test
+  public void testFindExecutingProjects_trailingModuleWithoutGoal() {
+    MavenProject app = newProject("app", true);
+    MavenProject docs = newProject("docs", false);
+    MavenSession session = newSession(Collections.singletonList("deploy"), app, docs);
+
+    Set<String> projects =
+        ReactorDeployment.findExecutingProjects(session, PLUGIN_KEY, "appengine", GOAL);
+
+    Assert.assertEquals(Collections.singleton(app.getId()), projects);
+  }
+
+  @Test
+  public void testFindExecutingProjects_commandLineGoal() {
+    MavenProject app = newProject("app", false);
+    MavenProject parent = newProject("parent", false);
+    MavenSession session =
+        newSession(Collections.singletonList("appengine:deployAllParallel"), parent, app);
+
+    Set<String> projects =
+        ReactorDeployment.findExecutingProjects(session, PLUGIN_KEY, "appengine", GOAL);
+
+    Assert.assertEquals(ImmutableSet.of(parent.getId(), app.getId()), projects);
+  }
+
+  @Test
+  public void testComplete_waitsForEveryExecutingProject() {
+    ReactorDeployment deployment =
+        new ReactorDeployment(1, 1, ImmutableSet.of("g:first:war:1", "g:second:war:1"));
+
+    Assert.assertFalse(deployment.complete("g:second:war:1"));
+    // a project that does not run the goal, like a trailing parent POM, is not waited for
+    Assert.assertFalse(deployment.complete("g:parent:pom:1"));
+    Assert.assertTrue(deployment.complete("g:first:war:1"));
+    Assert.assertFalse(deployment.complete("g:first:war:1"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAdd_afterDeploy() throws Exception {
+    ReactorDeployment deployment = new ReactorDeployment(1, 1);
+    deployment.deploy();
+
+    deployment.add("late", mock(AppEngineDeployer.class));
+  }
+
+  private static MavenProject newProject(String artifactId, boolean bindsGoal) {
+    Model model = new Model();
+    model.setGroupId("com.example");
+    model.setArtifactId(artifactId);
+    model.setVersion("1.0");
+    model.setBuild(new Build());
+    if (bindsGoal) {
+      PluginExecution execution = new PluginExecution();
+      execution.addGoal(GOAL);
+      Plugin plugin = new Plugin();
+      plugin.setGroupId("com.google.cloud.tools");
+      plugin.setArtifactId("appengine-maven-plugin");
+      plugin.addExecution(execution);
+      model.getBuild().addPlugin(plugin);
+    }
+    return new MavenProject(model);
+  }
+
+  private static MavenSession newSession(List<String> goals, MavenProject... projects) {
+    MavenSession session = mock(MavenSession.class);
+    when(session.getGoals()).thenReturn(goals);
+    when(session.getProjects()).thenReturn(Arrays.asList(projects));
+    return session;
+  }
+}
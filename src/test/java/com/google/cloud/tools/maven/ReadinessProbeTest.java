@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReadinessProbeTest {
+
+  @Mock private Log log;
+
+  private HttpServer server;
+  private final AtomicInteger requests = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    // unavailable for the first 3 requests
+    server.createContext(
+        "/_ah/health",
+        exchange -> {
+          exchange.sendResponseHeaders(requests.incrementAndGet() <= 3 ? 503 : 200, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/broken",
+        exchange -> {
+          exchange.sendResponseHeaders(500, -1);
+          exchange.close();
+        });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testAwait() throws Exception {
+    ReadinessProbe probe =
+        new ReadinessProbe(Collections.singletonList(url("/_ah/health")), log, null, 1);
+
+    probe.await(10000);
+
+    Assert.assertEquals(4, requests.get());
+  }
+
+  @Test
+  public void testAwait_notFoundServes() throws Exception {
+    new ReadinessProbe(Collections.singletonList(url("/missing")), log, null, 1).await(10000);
+  }
+
+  @Test
+  public void testAwait_timeout() throws Exception {
+    ReadinessProbe probe =
+        new ReadinessProbe(Collections.singletonList(url("/broken")), log, null, 1);
+
+    try {
+      probe.await(100);
+      Assert.fail();
+    } catch (MojoExecutionException ex) {
+      Assert.assertTrue(ex.getMessage().endsWith("/broken within 0 seconds: status 500"));
+    }
+  }
+
+  @Test
+  public void testAwait_timeoutReportsPendingUrl() throws Exception {
+    ReadinessProbe probe =
+        new ReadinessProbe(Arrays.asList(url("/broken"), url("/missing")), log, null, 1);
+
+    try {
+      probe.await(100);
+      Assert.fail();
+    } catch (MojoExecutionException ex) {
+      Assert.assertTrue(ex.getMessage().endsWith("/broken within 0 seconds: status 500"));
+    }
+  }
+
+  @Test
+  public void testAwait_processExited() throws Exception {
+    Process process = Mockito.mock(Process.class);
+    Mockito.when(process.isAlive()).thenReturn(false);
+    Mockito.when(process.exitValue()).thenReturn(1);
+    ReadinessProbe probe =
+        new ReadinessProbe(Collections.singletonList(url("/_ah/health")), log, process, 1);
+
+    try {
+      probe.await(10000);
+      Assert.fail();
+    } catch (MojoExecutionException ex) {
+      Assert.assertTrue(ex.getMessage().startsWith("The Dev App Server exited with code 1"));
+    }
+  }
+
+  @Test
+  public void testGetUrl() throws Exception {
+    Assert.assertEquals(
+        new URL("http://localhost:8080/_ah/health"),
+        ReadinessProbe.getUrl(null, 8080, "_ah/health"));
+    Assert.assertEquals(
+        new URL("http://localhost:8081/"), ReadinessProbe.getUrl("0.0.0.0", 8081, "/"));
+    Assert.assertEquals(
+        new URL("http://example.com:8082/app"), ReadinessProbe.getUrl("example.com", 8082, "/app"));
+  }
+
+  private URL url(String path) throws IOException {
+    return ReadinessProbe.getUrl("localhost", server.getAddress().getPort(), path);
+  }
+}
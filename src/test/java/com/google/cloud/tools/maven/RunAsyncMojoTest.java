@@ -17,21 +17,36 @@
 package com.google.cloud.tools.maven;
 
 import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.cloud.tools.appengine.api.AppEngineException;
+import com.google.cloud.tools.appengine.api.devserver.RunConfiguration;
 import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
+import com.google.common.base.Joiner;
+import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
@@ -56,7 +71,12 @@ public class RunAsyncMojoTest extends AbstractDevServerTest {
     // wire up
     runAsyncMojo.devserverVersion = version;
     setUpAppEngineWebXml();
-    when(factoryMock.devServerRunAsync(START_SUCCESS_TIMEOUT, mockVersion))
+    when(factoryMock.devServerRunAsync(
+            Matchers.eq(START_SUCCESS_TIMEOUT),
+            Matchers.eq(mockVersion),
+            Matchers.any(DevServerLogWriter.Rotation.class),
+            Matchers.any(Path.class),
+            Matchers.any()))
         .thenReturn(devServerMock);
     runAsyncMojo.startSuccessTimeout = START_SUCCESS_TIMEOUT;
 
@@ -68,4 +88,135 @@ public class RunAsyncMojoTest extends AbstractDevServerTest {
     verify(logMock).info(contains("25 seconds"));
     verify(logMock).info(contains("started"));
   }
+
+  @Test
+  public void testRunAsync_readinessPaths() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/_ah/health",
+        exchange -> {
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    server.start();
+    try {
+      runAsyncMojo.devserverVersion = "1";
+      runAsyncMojo.startSuccessTimeout = 25;
+      runAsyncMojo.port = server.getAddress().getPort();
+      runAsyncMojo.readinessPaths = Collections.singletonList("/_ah/health");
+      setUpAppEngineWebXml();
+      when(factoryMock.devServerRunAsync(
+              Matchers.eq(0),
+              Matchers.eq(SupportedDevServerVersion.V1),
+              Matchers.any(DevServerLogWriter.Rotation.class),
+              Matchers.any(Path.class),
+              Matchers.any()))
+          .thenReturn(devServerMock);
+
+      runAsyncMojo.execute();
+
+      verify(devServerMock).run(runAsyncMojo);
+      verify(logMock).info(contains("Dev App Server ready in"));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testRunAsync_autoPorts() throws Exception {
+    runAsyncMojo.devserverVersion = "1";
+    runAsyncMojo.autoPorts = true;
+    setUpAppEngineWebXml();
+    when(mavenProjectMock.getProperties()).thenReturn(new Properties());
+    when(factoryMock.devServerRunAsync(
+            Matchers.anyInt(),
+            Matchers.eq(SupportedDevServerVersion.V1),
+            Matchers.any(DevServerLogWriter.Rotation.class),
+            Matchers.any(Path.class),
+            Matchers.any()))
+        .thenReturn(devServerMock);
+
+    runAsyncMojo.execute();
+
+    DevServerPorts saved =
+        DevServerPorts.load(
+            DevServerPorts.getFile(Paths.get(mavenProjectMock.getBuild().getDirectory())));
+    Assert.assertEquals(runAsyncMojo.getPort().intValue(), saved.getPort());
+    Assert.assertEquals(runAsyncMojo.getApiPort().intValue(), saved.getApiPort());
+  }
+
+  @Test
+  @Parameters({"1,V1", "2-alpha,V2ALPHA"})
+  public void testRunAsync_instances(String version, SupportedDevServerVersion mockVersion)
+      throws Exception {
+    runAsyncMojo.devserverVersion = version;
+    runAsyncMojo.startSuccessTimeout = 25;
+    runAsyncMojo.instances = 2;
+    runAsyncMojo.autoPorts = true;
+    runAsyncMojo.jvmFlags = Collections.singletonList("-Xmx512m");
+    setUpAppEngineWebXml();
+    Properties properties = new Properties();
+    when(mavenProjectMock.getProperties()).thenReturn(properties);
+    when(factoryMock.devServerRunAsync(
+            Matchers.eq(25),
+            Matchers.eq(mockVersion),
+            Matchers.any(DevServerLogWriter.Rotation.class),
+            Matchers.any(Path.class),
+            Matchers.any()))
+        .thenReturn(devServerMock);
+
+    runAsyncMojo.execute();
+
+    ArgumentCaptor<RunConfiguration> configurations =
+        ArgumentCaptor.forClass(RunConfiguration.class);
+    verify(devServerMock, times(2)).run(configurations.capture());
+    DevServerPool pool =
+        DevServerPool.load(
+            DevServerPool.getFile(Paths.get(mavenProjectMock.getBuild().getDirectory())));
+    Assert.assertEquals(2, pool.getInstances().size());
+    Assert.assertEquals(
+        Joiner.on(',').join(pool.getEndpoints()),
+        properties.getProperty("app.devserver.endpoints"));
+    Set<Integer> ports = new HashSet<>();
+    for (RunConfiguration configuration : configurations.getAllValues()) {
+      ports.add(configuration.getPort());
+      Assert.assertEquals(runAsyncMojo.getServices(), configuration.getServices());
+      Assert.assertEquals("-Xmx512m", configuration.getJvmFlags().get(0));
+      if (mockVersion == SupportedDevServerVersion.V2ALPHA) {
+        Assert.assertNotNull(configuration.getStoragePath());
+        Assert.assertNotNull(configuration.getAdminPort());
+      } else {
+        Assert.assertTrue(
+            configuration.getJvmFlags().get(1).startsWith("-Ddatastore.backing_store="));
+        Assert.assertNull(configuration.getAdminPort());
+      }
+    }
+    Assert.assertEquals(2, ports.size());
+    verify(logMock).info(contains("2 Dev App Servers ready in"));
+    // the stop goal reads the pool file, not the ports of a single server
+    Assert.assertFalse(
+        Files.exists(
+            DevServerPorts.getFile(Paths.get(mavenProjectMock.getBuild().getDirectory()))));
+  }
+
+  @Test
+  public void testGetInstanceConfiguration() {
+    runAsyncMojo.clearDatastore = true;
+    runAsyncMojo.environment = Collections.singletonMap("KEY", "value");
+    DevServerPool.Instance instance =
+        new DevServerPool.Instance(
+            3, new DevServerPorts("127.0.0.1", 41000, 41001, 41002), "instance-3");
+
+    RunConfiguration configuration =
+        runAsyncMojo.getInstanceConfiguration(SupportedDevServerVersion.V2ALPHA, instance);
+
+    Assert.assertEquals("127.0.0.1", configuration.getHost());
+    Assert.assertEquals(41000, configuration.getPort().intValue());
+    Assert.assertEquals(41001, configuration.getAdminPort().intValue());
+    Assert.assertEquals(41002, configuration.getApiPort().intValue());
+    Assert.assertEquals(instance.getStoragePath().toFile(), configuration.getStoragePath());
+    Assert.assertEquals(instance.getDatastorePath().toFile(), configuration.getDatastorePath());
+    Assert.assertTrue(configuration.getClearDatastore());
+    Assert.assertEquals("value", configuration.getEnvironment().get("KEY"));
+  }
 }
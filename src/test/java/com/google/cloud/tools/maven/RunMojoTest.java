@@ -18,6 +18,8 @@ package com.google.cloud.tools.maven;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -31,9 +33,14 @@ import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerV
 import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Properties;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 import org.apache.maven.model.Build;
@@ -98,6 +105,51 @@ public class RunMojoTest extends AbstractDevServerTest {
     verify(devServerMock).run(runMojo);
   }
 
+  @Test
+  public void testRun_autoPorts() throws Exception {
+    runMojo.devserverVersion = "1";
+    runMojo.autoPorts = true;
+    runMojo.port = 8080;
+    setUpAppEngineWebXml();
+    Properties properties = new Properties();
+    when(mavenProjectMock.getProperties()).thenReturn(properties);
+    when(factoryMock.devServerRunSync(SupportedDevServerVersion.V1)).thenReturn(devServerMock);
+
+    runMojo.execute();
+
+    verify(devServerMock).run(runMojo);
+    assertNotEquals(8080, runMojo.getPort().intValue());
+    assertEquals(
+        runMojo.getPort().toString(), properties.getProperty("app.devserver.allocated.port"));
+    assertEquals(
+        runMojo.getAdminPort().toString(),
+        properties.getProperty("app.devserver.allocated.adminPort"));
+    // only appengine:start saves the ports for appengine:stop
+    assertFalse(
+        Files.exists(
+            DevServerPorts.getFile(Paths.get(mavenProjectMock.getBuild().getDirectory()))));
+  }
+
+  @Test
+  public void testRun_restoreSnapshot() throws Exception {
+    runMojo.devserverVersion = "2-alpha";
+    runMojo.restoreSnapshot = "seeded";
+    setUpAppEngineWebXml();
+    Path buildDirectory = Paths.get(mavenProjectMock.getBuild().getDirectory());
+    Path datastore = buildDirectory.resolve("datastore.bin");
+    runMojo.datastorePath = datastore.toFile();
+    Files.write(datastore, "entities".getBytes(StandardCharsets.UTF_8));
+    new DatastoreSnapshot(DatastoreSnapshot.getDirectory(buildDirectory, "seeded"))
+        .save(Collections.singletonMap(DatastoreSnapshot.DATASTORE, datastore));
+    Files.write(datastore, "changed entities".getBytes(StandardCharsets.UTF_8));
+    when(factoryMock.devServerRunSync(SupportedDevServerVersion.V2ALPHA)).thenReturn(devServerMock);
+
+    runMojo.execute();
+
+    verify(devServerMock).run(runMojo);
+    assertEquals("entities", new String(Files.readAllBytes(datastore), StandardCharsets.UTF_8));
+  }
+
   @Test
   @Parameters({"1,V1", "2-alpha,V2ALPHA"})
   public void testRun_servicesIsUsed(String version, SupportedDevServerVersion mockVersion)
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class SnapshotMojoTest {
+
+  @Mock private MavenProject projectMock;
+
+  @Mock private Build buildMock;
+
+  @InjectMocks private SnapshotMojo snapshotMojo;
+
+  @InjectMocks private RestoreMojo restoreMojo;
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Rule public ExpectedException expectedException = ExpectedException.none();
+
+  private Path datastore;
+
+  @Before
+  public void setUp() throws IOException {
+    MockitoAnnotations.initMocks(this);
+    when(projectMock.getBuild()).thenReturn(buildMock);
+    when(buildMock.getDirectory()).thenReturn(tempFolder.getRoot().getAbsolutePath());
+    when(buildMock.getFinalName()).thenReturn("artifact");
+    for (AbstractSnapshotMojo mojo : new AbstractSnapshotMojo[] {snapshotMojo, restoreMojo}) {
+      mojo.devserverVersion = "1";
+      mojo.snapshot = "seeded";
+    }
+    datastore =
+        tempFolder.getRoot().toPath().resolve("artifact/WEB-INF/appengine-generated/local_db.bin");
+    Files.createDirectories(datastore.getParent());
+    Files.write(datastore, "entities".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testSnapshotAndRestore() throws Exception {
+    snapshotMojo.execute();
+    Files.write(datastore, "changed entities".getBytes(StandardCharsets.UTF_8));
+
+    restoreMojo.execute();
+
+    Assert.assertEquals(
+        Collections.singletonList("entities"),
+        Files.readAllLines(datastore, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testRestore_missingSnapshot() throws MojoExecutionException {
+    expectedException.expect(MojoExecutionException.class);
+    expectedException.expectMessage("Failed to restore datastore snapshot seeded");
+
+    restoreMojo.execute();
+  }
+
+  @Test
+  public void testSnapshot_noStoragePath() throws MojoExecutionException {
+    snapshotMojo.devserverVersion = "2-alpha";
+
+    expectedException.expect(MojoExecutionException.class);
+    expectedException.expectMessage("Set storagePath or datastorePath");
+
+    snapshotMojo.execute();
+  }
+}
@@ -87,7 +87,7 @@ public class StageMojoTest {
     stageMojo.execute();
 
     // verify
-    verify(standardStagingMock).stageStandard(stageMojo);
+    verify(standardStagingMock).stageStandard(StagingConfigurations.of(stageMojo));
     verify(logMock).info(contains("standard"));
   }
 
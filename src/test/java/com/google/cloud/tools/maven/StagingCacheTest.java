@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StagingCacheTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path cacheDirectory;
+  private Path staging;
+
+  @Before
+  public void setup() throws IOException {
+    cacheDirectory = tempFolder.newFolder("cache").toPath();
+    staging = tempFolder.newFolder("staging").toPath();
+    write(staging, "app.yaml", "runtime: java8");
+    write(staging, "WEB-INF/lib/a.jar", "aaaa");
+    write(staging, "WEB-INF/lib/copy-of-a.jar", "aaaa");
+  }
+
+  @Test
+  public void testStoreAndRestore() throws IOException {
+    StagingCache cache = new StagingCache(cacheDirectory, Long.MAX_VALUE);
+    cache.store("key", staging);
+
+    Path restored = tempFolder.newFolder("restored").toPath();
+    Assert.assertTrue(cache.restore("key", restored));
+
+    Assert.assertEquals("runtime: java8", read(restored, "app.yaml"));
+    Assert.assertEquals("aaaa", read(restored, "WEB-INF/lib/a.jar"));
+    Assert.assertEquals("aaaa", read(restored, "WEB-INF/lib/copy-of-a.jar"));
+  }
+
+  @Test
+  public void testRestore_unknownKey() throws IOException {
+    StagingCache cache = new StagingCache(cacheDirectory, Long.MAX_VALUE);
+    cache.store("key", staging);
+
+    Path restored = tempFolder.newFolder("restored").toPath();
+    Assert.assertFalse(cache.restore("other-key", restored));
+    Assert.assertEquals(0, restored.toFile().list().length);
+  }
+
+  @Test
+  public void testRestore_survivesDeletedStagingDirectory() throws IOException {
+    StagingCache cache = new StagingCache(cacheDirectory, Long.MAX_VALUE);
+    cache.store("key", staging);
+    FileUtils.deleteDirectory(staging.toFile());
+
+    Path restored = tempFolder.newFolder("restored").toPath();
+    Assert.assertTrue(cache.restore("key", restored));
+    Assert.assertEquals("aaaa", read(restored, "WEB-INF/lib/a.jar"));
+  }
+
+  @Test
+  public void testEvict_leastRecentlyUsedFirst() throws IOException {
+    StagingCache cache = new StagingCache(cacheDirectory, Long.MAX_VALUE);
+    cache.store("key", staging);
+    Path otherStaging = tempFolder.newFolder("other-staging").toPath();
+    write(otherStaging, "WEB-INF/lib/b.jar", "bbbbbbbb");
+    cache.store("other-key", otherStaging);
+    // make the first entry look older
+    Files.setLastModifiedTime(
+        cacheDirectory.resolve("index").resolve("key"), FileTime.fromMillis(0));
+
+    new StagingCache(cacheDirectory, 10).evict();
+
+    Assert.assertFalse(cache.restore("key", tempFolder.newFolder("restored").toPath()));
+    Assert.assertTrue(cache.restore("other-key", tempFolder.newFolder("other-restored").toPath()));
+    Assert.assertFalse(Files.exists(cacheDirectory.resolve("index").resolve("key")));
+    Assert.assertTrue(Files.exists(cacheDirectory.resolve("index").resolve("other-key")));
+  }
+
+  @Test
+  public void testEvict_oldStagedFilesStoredLast() throws IOException {
+    StagingCache cache = new StagingCache(cacheDirectory, Long.MAX_VALUE);
+    cache.store("key", staging);
+    // the staged files of the newest entry are old, like jars copied from the local repository
+    Path otherStaging = tempFolder.newFolder("other-staging").toPath();
+    write(otherStaging, "WEB-INF/lib/b.jar", "bbbbbbbb");
+    Files.setLastModifiedTime(otherStaging.resolve("WEB-INF/lib/b.jar"), FileTime.fromMillis(0));
+    Files.setLastModifiedTime(staging.resolve("app.yaml"), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(staging.resolve("WEB-INF/lib/a.jar"), FileTime.fromMillis(1000));
+    cache.store("other-key", otherStaging);
+
+    new StagingCache(cacheDirectory, 10).evict();
+
+    Assert.assertTrue(cache.restore("other-key", tempFolder.newFolder("other-restored").toPath()));
+  }
+
+  @Test
+  public void testStoreAndRestore_keepsLinkedFileTimes() throws IOException {
+    FileTime old = FileTime.fromMillis(1000);
+    for (String path :
+        Arrays.asList("app.yaml", "WEB-INF/lib/a.jar", "WEB-INF/lib/copy-of-a.jar")) {
+      Files.setLastModifiedTime(staging.resolve(path), old);
+    }
+    StagingCache cache = new StagingCache(cacheDirectory, Long.MAX_VALUE);
+    cache.store("key", staging);
+    Path restored = tempFolder.newFolder("restored").toPath();
+    Assert.assertTrue(cache.restore("key", restored));
+
+    Assert.assertEquals(old, Files.getLastModifiedTime(staging.resolve("WEB-INF/lib/a.jar")));
+    Assert.assertEquals(old, Files.getLastModifiedTime(restored.resolve("WEB-INF/lib/a.jar")));
+  }
+
+  @Test
+  public void testStoreAndRestore_copied() throws IOException {
+    StagingCache cache = new StagingCache(cacheDirectory, Long.MAX_VALUE, false);
+    cache.store("key", staging);
+    Path restored = tempFolder.newFolder("restored").toPath();
+    Assert.assertTrue(cache.restore("key", restored));
+
+    // modifying a staging directory in place leaves the cache intact
+    write(staging, "WEB-INF/lib/a.jar", "modified");
+    write(restored, "app.yaml", "modified");
+
+    Path restoredAgain = tempFolder.newFolder("restored-again").toPath();
+    Assert.assertTrue(cache.restore("key", restoredAgain));
+    Assert.assertEquals("runtime: java8", read(restoredAgain, "app.yaml"));
+    Assert.assertEquals("aaaa", read(restoredAgain, "WEB-INF/lib/a.jar"));
+  }
+
+  private static void write(Path root, String path, String content) throws IOException {
+    Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path root, String path) throws IOException {
+    return new String(Files.readAllBytes(root.resolve(path)), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.cloud.tools.appengine.api.deploy.StageStandardConfiguration;
+import org.mockito.Matchers;
+
+/** Argument matchers for the configurations App Engine staging is called with. */
+public class StagingConfigurations {
+
+  /** Matches the configuration a full staging of {@code stageMojo} is called with. */
+  public static StageStandardConfiguration of(AbstractStageMojo stageMojo) {
+    return Matchers.argThat(
+        configuration ->
+            configuration != null
+                && configuration.getClass() == AppEngineStagingConfiguration.class
+                && ((AppEngineStagingConfiguration) configuration).getStageMojo() == stageMojo);
+  }
+
+  /** Matches the configuration a configuration-only staging of {@code stageMojo} is called with. */
+  public static StageStandardConfiguration partialOf(AbstractStageMojo stageMojo) {
+    return Matchers.argThat(
+        configuration ->
+            configuration instanceof PartialStageConfiguration
+                && ((PartialStageConfiguration) configuration).getStageMojo() == stageMojo);
+  }
+}
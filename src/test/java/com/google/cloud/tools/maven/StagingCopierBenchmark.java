@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Stopwatch;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Compares the time {@link StagingCopier} takes to copy an exploded WAR with each strategy, and
+ * with the sequential copy of {@link FileUtils#copyDirectory}. Not run as part of the tests.
+ *
+ * <p>Usage: {@code StagingCopierBenchmark [parent directory] [file count] [file size in KB]}. The
+ * files are written to a new temporary directory under the parent directory, or under the default
+ * temporary directory, which is deleted afterwards.
+ */
+public class StagingCopierBenchmark {
+
+  private static final int ITERATIONS = 5;
+
+  public static void main(String[] args) throws IOException {
+    int fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int fileSize = (args.length > 2 ? Integer.parseInt(args[2]) : 64) * 1024;
+    // only this directory is deleted, never the one given as an argument
+    Path work =
+        args.length > 0
+            ? Files.createTempDirectory(Paths.get(args[0]), "staging-benchmark")
+            : Files.createTempDirectory("staging-benchmark");
+
+    try {
+      Path source = work.resolve("source");
+      Random random = new Random(0);
+      byte[] content = new byte[fileSize];
+      for (int i = 0; i < fileCount; i++) {
+        random.nextBytes(content);
+        Path file = source.resolve("WEB-INF/lib/dir" + (i % 50) + "/file" + i + ".jar");
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+      }
+      System.out.println(
+          "Copying " + fileCount + " files of " + fileSize / 1024 + " KB, best of " + ITERATIONS);
+
+      report(
+          "FileUtils.copyDirectory",
+          work,
+          target -> FileUtils.copyDirectory(source.toFile(), target.toFile()));
+      for (StagingCopier.Strategy strategy : StagingCopier.Strategy.values()) {
+        StagingCopier copier = new StagingCopier(strategy);
+        report("StagingCopier " + strategy, work, target -> copier.copyDirectory(source, target));
+      }
+    } finally {
+      FileUtils.deleteDirectory(work.toFile());
+    }
+  }
+
+  private static void report(String name, Path work, CopyTask task) throws IOException {
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < ITERATIONS; i++) {
+      Path target = work.resolve("target");
+      FileUtils.deleteDirectory(target.toFile());
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      task.copyTo(target);
+      best = Math.min(best, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+    System.out.println(String.format("%-30s %6d ms", name, best));
+  }
+
+  private interface CopyTask {
+    void copyTo(Path target) throws IOException;
+  }
+}
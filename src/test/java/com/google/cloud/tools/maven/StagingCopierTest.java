@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StagingCopierTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path source;
+  private Path target;
+
+  @Before
+  public void setup() throws IOException {
+    source = tempFolder.newFolder("source").toPath();
+    target = tempFolder.newFolder("target").toPath();
+    write(source.resolve("WEB-INF/web.xml"), "<web-app/>");
+    write(source.resolve("WEB-INF/lib/a.jar"), "a");
+    write(source.resolve("index.html"), "<html/>");
+  }
+
+  @Test
+  public void testCopyDirectory_copy() throws IOException {
+    new StagingCopier(StagingCopier.Strategy.COPY).copyDirectory(source, target);
+
+    Assert.assertEquals("a", read(target.resolve("WEB-INF/lib/a.jar")));
+    Assert.assertEquals("<html/>", read(target.resolve("index.html")));
+    Assert.assertFalse(
+        Files.isSameFile(source.resolve("index.html"), target.resolve("index.html")));
+  }
+
+  @Test
+  public void testCopyDirectory_link() throws IOException {
+    new StagingCopier(StagingCopier.Strategy.LINK).copyDirectory(source, target);
+
+    Assert.assertEquals("<web-app/>", read(target.resolve("WEB-INF/web.xml")));
+    Assert.assertEquals("a", read(target.resolve("WEB-INF/lib/a.jar")));
+    Assert.assertTrue(Files.isSameFile(source.resolve("index.html"), target.resolve("index.html")));
+  }
+
+  @Test
+  public void testCopyAll_replacesExisting() throws IOException {
+    write(target.resolve("WEB-INF/lib/a.jar"), "old");
+
+    new StagingCopier(StagingCopier.Strategy.LINK)
+        .copyAll(source, target, Arrays.asList("WEB-INF/lib/a.jar"));
+
+    Assert.assertEquals("a", read(target.resolve("WEB-INF/lib/a.jar")));
+    Assert.assertFalse(Files.exists(target.resolve("index.html")));
+  }
+
+  @Test
+  public void testCopyIfChanged() throws IOException {
+    Path file = target.resolve("WEB-INF/lib/a.jar");
+
+    Assert.assertTrue(StagingCopier.copyIfChanged(source.resolve("WEB-INF/lib/a.jar"), file));
+    Assert.assertEquals("a", read(file));
+    Assert.assertEquals(
+        Files.getLastModifiedTime(source.resolve("WEB-INF/lib/a.jar")),
+        Files.getLastModifiedTime(file));
+    Assert.assertFalse(StagingCopier.copyIfChanged(source.resolve("WEB-INF/lib/a.jar"), file));
+
+    write(source.resolve("WEB-INF/lib/a.jar"), "changed");
+    Assert.assertTrue(StagingCopier.copyIfChanged(source.resolve("WEB-INF/lib/a.jar"), file));
+    Assert.assertEquals("changed", read(file));
+    Assert.assertFalse(Files.exists(target.resolve("WEB-INF/lib/.copy-a.jar")));
+  }
+
+  @Test
+  public void testForName() {
+    Assert.assertEquals(StagingCopier.Strategy.LINK, StagingCopier.forName("link").getStrategy());
+    Assert.assertEquals(StagingCopier.Strategy.COPY, StagingCopier.forName("COPY").getStrategy());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testForName_unknown() {
+    StagingCopier.forName("symlink");
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}
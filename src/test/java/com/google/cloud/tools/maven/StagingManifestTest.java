@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StagingManifestTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path root;
+
+  @Before
+  public void setup() throws IOException {
+    root = tempFolder.newFolder("root").toPath();
+    write("WEB-INF/web.xml", "<web-app/>");
+    write("WEB-INF/lib/a.jar", "a");
+    write("index.html", "hello");
+  }
+
+  @Test
+  public void testScan() throws IOException {
+    StagingManifest manifest = StagingManifest.scan(root, "options", null);
+
+    Assert.assertEquals("options", manifest.getOptions());
+    Assert.assertEquals(
+        ImmutableSortedSet.of("WEB-INF/web.xml", "WEB-INF/lib/a.jar", "index.html"),
+        manifest.getEntries().keySet());
+    Assert.assertEquals(5, manifest.getEntries().get("index.html").getSize());
+  }
+
+  @Test
+  public void testChangedAndRemoved() throws IOException {
+    StagingManifest previous = StagingManifest.scan(root, "options", null);
+    write("WEB-INF/lib/a.jar", "changed");
+    write("WEB-INF/lib/b.jar", "b");
+    Files.delete(root.resolve("index.html"));
+
+    StagingManifest current = StagingManifest.scan(root, "options", previous);
+
+    Assert.assertEquals(
+        ImmutableSortedSet.of("WEB-INF/lib/a.jar", "WEB-INF/lib/b.jar"),
+        current.getChangedSince(previous));
+    Assert.assertEquals(ImmutableSortedSet.of("index.html"), current.getRemovedSince(previous));
+  }
+
+  @Test
+  public void testTouchedFileIsNotChanged() throws IOException {
+    StagingManifest previous = StagingManifest.scan(root, "options", null);
+    Files.setLastModifiedTime(
+        root.resolve("index.html"), FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+    StagingManifest current = StagingManifest.scan(root, "options", previous);
+
+    Assert.assertTrue(current.getChangedSince(previous).isEmpty());
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    StagingManifest manifest = StagingManifest.scan(root, "a,b,", null);
+    Path manifestFile = tempFolder.getRoot().toPath().resolve("out").resolve("staging.manifest");
+
+    manifest.save(manifestFile);
+    StagingManifest loaded = StagingManifest.load(manifestFile);
+
+    Assert.assertEquals("a,b,", loaded.getOptions());
+    Assert.assertEquals(manifest.getEntries(), loaded.getEntries());
+  }
+
+  @Test
+  public void testLoad_missing() throws IOException {
+    Assert.assertNull(StagingManifest.load(tempFolder.getRoot().toPath().resolve("missing")));
+  }
+
+  @Test
+  public void testLoad_corrupt() throws IOException {
+    Path manifestFile = tempFolder.newFile("corrupt.manifest").toPath();
+    Files.write(manifestFile, "garbage".getBytes(StandardCharsets.UTF_8));
+
+    Assert.assertNull(StagingManifest.load(manifestFile));
+  }
+
+  private void write(String path, String content) throws IOException {
+    Path file = root.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -17,22 +17,38 @@
 package com.google.cloud.tools.maven;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.cloud.tools.appengine.api.AppEngineException;
 import com.google.cloud.tools.appengine.api.devserver.AppEngineDevServer;
+import com.google.cloud.tools.appengine.api.devserver.StopConfiguration;
 import com.google.cloud.tools.maven.CloudSdkAppEngineFactory.SupportedDevServerVersion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
+import org.apache.maven.model.Build;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -49,13 +65,21 @@ public class StopMojoTest {
 
   @Mock private AppEngineDevServer devServerMock;
 
+  @Mock private MavenProject projectMock;
+
+  @Mock private Build buildMock;
+
   @InjectMocks private StopMojo stopMojo;
 
   @Rule public ExpectedException expectedException = ExpectedException.none();
 
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Before
   public void setUp() {
     MockitoAnnotations.initMocks(this);
+    when(projectMock.getBuild()).thenReturn(buildMock);
+    when(buildMock.getDirectory()).thenReturn(tempFolder.getRoot().getAbsolutePath());
   }
 
   @Test
@@ -84,6 +108,86 @@ public class StopMojoTest {
     verify(devServerMock).stop(stopMojo);
   }
 
+  @Test
+  public void testStop_closesLogWriter() throws Exception {
+    stopMojo.devserverVersion = "1";
+    when(factoryMock.devServerStop(SupportedDevServerVersion.V1)).thenReturn(devServerMock);
+    Path logFile = DevServerLogWriter.getLogFile(tempFolder.getRoot().toPath());
+    DevServerLogWriter.open(logFile, DevServerLogWriter.Rotation.NONE, stopMojo.getLog())
+        .onOutputLine("started");
+
+    stopMojo.execute();
+
+    assertEquals(
+        Collections.singletonList("started"), Files.readAllLines(logFile, StandardCharsets.UTF_8));
+    assertFalse(DevServerLogWriter.close(logFile));
+  }
+
+  @Test
+  public void testStop_savedPorts() throws Exception {
+    stopMojo.devserverVersion = "1";
+    when(factoryMock.devServerStop(SupportedDevServerVersion.V1)).thenReturn(devServerMock);
+    Path portsFile = DevServerPorts.getFile(tempFolder.getRoot().toPath());
+    new DevServerPorts("127.0.0.1", 41000, 41001, 41002).save(portsFile);
+
+    stopMojo.execute();
+
+    verify(devServerMock).stop(stopMojo);
+    assertEquals("127.0.0.1", stopMojo.getAdminHost());
+    assertEquals(41000, stopMojo.getAdminPort().intValue());
+    assertFalse(Files.exists(portsFile));
+  }
+
+  @Test
+  public void testStop_explicitPortKeepsSavedPorts() throws Exception {
+    stopMojo.devserverVersion = "1";
+    stopMojo.port = 8080;
+    when(factoryMock.devServerStop(SupportedDevServerVersion.V1)).thenReturn(devServerMock);
+    Path portsFile = DevServerPorts.getFile(tempFolder.getRoot().toPath());
+    new DevServerPorts("127.0.0.1", 41000, 41001, 41002).save(portsFile);
+
+    stopMojo.execute();
+
+    verify(devServerMock).stop(stopMojo);
+    assertEquals(8080, stopMojo.getAdminPort().intValue());
+    assertTrue(Files.exists(portsFile));
+  }
+
+  @Test
+  @Parameters({"1,V1,41000,41010", "2-alpha,V2ALPHA,41001,41011"})
+  public void testStop_pool(
+      String version, SupportedDevServerVersion mockVersion, int firstPort, int secondPort)
+      throws Exception {
+    stopMojo.devserverVersion = version;
+    when(factoryMock.devServerStop(mockVersion)).thenReturn(devServerMock);
+    Path root = tempFolder.getRoot().toPath();
+    Path poolFile = DevServerPool.getFile(root);
+    new DevServerPool(
+            ImmutableList.of(
+                new DevServerPool.Instance(
+                    0, new DevServerPorts(null, 41000, 41001, 41002), root.resolve("a").toString()),
+                new DevServerPool.Instance(
+                    1,
+                    new DevServerPorts(null, 41010, 41011, 41012),
+                    root.resolve("b").toString())))
+        .save(poolFile);
+    Path logFile = root.resolve("b").resolve("dev_appserver.out");
+    DevServerLogWriter.open(logFile, DevServerLogWriter.Rotation.NONE, stopMojo.getLog());
+
+    stopMojo.execute();
+
+    ArgumentCaptor<StopConfiguration> configurations =
+        ArgumentCaptor.forClass(StopConfiguration.class);
+    verify(devServerMock, times(2)).stop(configurations.capture());
+    Set<Integer> ports = new HashSet<>();
+    for (StopConfiguration configuration : configurations.getAllValues()) {
+      ports.add(configuration.getAdminPort());
+    }
+    assertEquals(ImmutableSet.of(firstPort, secondPort), ports);
+    assertFalse(Files.exists(poolFile));
+    assertFalse(DevServerLogWriter.close(logFile));
+  }
+
   @Test
   @Parameters({"host,adminhost,1,host", "host,adminhost,2-alpha,adminhost"})
   public void testGetAdminHost(String host, String adminHost, String version, String expected)
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import com.google.common.base.Ticker;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TimingReportTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private long nanos;
+  private TimingReport report;
+
+  @Before
+  public void setUp() {
+    report =
+        new TimingReport(
+            "deploy",
+            new Ticker() {
+              @Override
+              public long read() {
+                return nanos;
+              }
+            });
+  }
+
+  @Test
+  public void testWrite() throws IOException {
+    try (TimingReport.Span stage = report.start("stage")) {
+      nanos += TimeUnit.MILLISECONDS.toNanos(100);
+      try (TimingReport.Span staging = report.start("appengine-staging")) {
+        staging.setAttribute("service", "default");
+        nanos += TimeUnit.MILLISECONDS.toNanos(300);
+      }
+    }
+    try (TimingReport.Span upload = report.start("upload")) {
+      upload.setError(new RuntimeException("quota"));
+      nanos += TimeUnit.MILLISECONDS.toNanos(600);
+    }
+    report.getRoot().close();
+
+    Path reportFile = tempFolder.getRoot().toPath().resolve("timings/deploy.json");
+    report.write(reportFile);
+
+    JsonObject json = parse(reportFile);
+    Assert.assertEquals("deploy", json.get("goal").getAsString());
+    Assert.assertEquals(1000, json.get("durationMillis").getAsLong());
+    JsonArray phases = json.getAsJsonArray("phases");
+    Assert.assertEquals(3, phases.size());
+    assertPhase(phases.get(0).getAsJsonObject(), "stage", "deploy", 0, 400);
+    JsonObject staging = phases.get(1).getAsJsonObject();
+    assertPhase(staging, "appengine-staging", "stage", 100, 300);
+    Assert.assertEquals(
+        "default", staging.getAsJsonObject("attributes").get("service").getAsString());
+    JsonObject upload = phases.get(2).getAsJsonObject();
+    assertPhase(upload, "upload", "deploy", 400, 600);
+    Assert.assertEquals("java.lang.RuntimeException: quota", upload.get("error").getAsString());
+  }
+
+  @Test
+  public void testStart_otherThreadChildOfGoal() throws Exception {
+    try (TimingReport.Span stage = report.start("stage")) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try (TimingReport.Span span = report.start("jar-split")) {
+                  // nothing to time
+                }
+              });
+      thread.start();
+      thread.join();
+    }
+
+    Path reportFile = tempFolder.getRoot().toPath().resolve("deploy.json");
+    report.write(reportFile);
+
+    JsonArray phases = parse(reportFile).getAsJsonArray("phases");
+    Assert.assertEquals("deploy", phases.get(1).getAsJsonObject().get("parent").getAsString());
+  }
+
+  @Test
+  public void testAppendOpenTelemetrySpans() throws IOException {
+    try (TimingReport.Span stage = report.start("stage")) {
+      nanos += TimeUnit.MILLISECONDS.toNanos(5);
+    }
+    report.getRoot().close();
+    Path spansFile = tempFolder.getRoot().toPath().resolve("spans.jsonl");
+
+    report.appendOpenTelemetrySpans(spansFile, "my-app");
+    report.appendOpenTelemetrySpans(spansFile, "my-app");
+
+    List<String> lines = Files.readAllLines(spansFile, StandardCharsets.UTF_8);
+    Assert.assertEquals(2, lines.size());
+    JsonObject resourceSpans =
+        new JsonParser()
+            .parse(lines.get(0))
+            .getAsJsonObject()
+            .getAsJsonArray("resourceSpans")
+            .get(0)
+            .getAsJsonObject();
+    Assert.assertEquals(
+        "my-app",
+        resourceSpans
+            .getAsJsonObject("resource")
+            .getAsJsonArray("attributes")
+            .get(0)
+            .getAsJsonObject()
+            .getAsJsonObject("value")
+            .get("stringValue")
+            .getAsString());
+    JsonArray spans =
+        resourceSpans.getAsJsonArray("scopeSpans").get(0).getAsJsonObject().getAsJsonArray("spans");
+    JsonObject root = spans.get(0).getAsJsonObject();
+    JsonObject stage = spans.get(1).getAsJsonObject();
+    Assert.assertEquals("deploy", root.get("name").getAsString());
+    Assert.assertFalse(root.has("parentSpanId"));
+    Assert.assertEquals(32, stage.get("traceId").getAsString().length());
+    Assert.assertEquals(root.get("traceId"), stage.get("traceId"));
+    Assert.assertEquals(root.get("spanId"), stage.get("parentSpanId"));
+    Assert.assertEquals(
+        TimeUnit.MILLISECONDS.toNanos(5),
+        stage.get("endTimeUnixNano").getAsLong() - stage.get("startTimeUnixNano").getAsLong());
+  }
+
+  private static JsonObject parse(Path file) throws IOException {
+    return new JsonParser()
+        .parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+        .getAsJsonObject();
+  }
+
+  private static void assertPhase(
+      JsonObject phase, String name, String parent, long startOffsetMillis, long durationMillis) {
+    Assert.assertEquals(name, phase.get("name").getAsString());
+    Assert.assertEquals(parent, phase.get("parent").getAsString());
+    Assert.assertEquals(startOffsetMillis, phase.get("startOffsetMillis").getAsLong());
+    Assert.assertEquals(durationMillis, phase.get("durationMillis").getAsLong());
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Google LLC. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.maven;
+
+import java.io.File;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class WatchMojoTest {
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Rule public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void testExecute_noExplodedWar() throws MojoExecutionException {
+    WatchMojo watchMojo = new WatchMojo();
+    watchMojo.explodedWarDirectory = new File(tempFolder.getRoot(), "missing");
+
+    expectedException.expect(MojoExecutionException.class);
+    expectedException.expectMessage("Exploded WAR not found");
+
+    watchMojo.execute();
+  }
+}
@@ -9,6 +9,7 @@ import com.google.cloud.tools.appengine.api.deploy.AppEngineDeployment;
 import com.google.cloud.tools.appengine.api.deploy.AppEngineStandardStaging;
 import com.google.cloud.tools.maven.AbstractDeployMojo;
 import com.google.cloud.tools.maven.CloudSdkAppEngineFactory;
+import com.google.cloud.tools.maven.StagingConfigurations;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import java.io.File;
@@ -66,7 +67,7 @@ public class SingleYamlStandardDeployTestHelper<M extends AbstractDeployMojo>
   @Override
   public void after() {
     try {
-      verify(standardStagingMock).stageStandard(mojo);
+      verify(standardStagingMock).stageStandard(StagingConfigurations.partialOf(mojo));
     } catch (AppEngineException ex) {
       Assert.fail(ex.getMessage());
     }